@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmarks.SyntheticDataset.Encoding;
+import org.weasis.dicom.codec.DicomMediaIO;
+
+/**
+ * Reading of the pixel data of a 512x512 CT image with
+ * {@link DicomMediaIO#readRaster(int, javax.imageio.ImageReadParam)} for each transfer syntax (parsing of the header
+ * included).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({ "RAW", "RLE", "JPEG", "JPEG_LS", "JPEG_2000" })
+    public Encoding encoding;
+
+    private File dir;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticDataset.registerCodecs();
+        dir = SyntheticDataset.createTempDir("decode"); //$NON-NLS-1$
+        file = SyntheticDataset.writeDicom(dir, 0, 1, encoding);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticDataset.delete(dir);
+    }
+
+    @Benchmark
+    public Raster readRaster() throws IOException {
+        DicomMediaIO reader = new DicomMediaIO(file);
+        try {
+            return reader.readRaster(0, reader.getDefaultReadParam());
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.image.Raster;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.jai.LookupTableJAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.operator.LookupDescriptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.image.LutShape;
+import org.weasis.core.api.image.util.ImageToolkit;
+import org.weasis.dicom.codec.utils.DicomImageUtils;
+import org.weasis.dicom.codec.utils.LutCache;
+
+/**
+ * Application of the modality and VOI lookup tables on a 12 bits CT image: the two successive lookups, the single
+ * lookup of the fused table and the creation of the VOI table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LutBenchmark {
+
+    private static final double WINDOW = 400.0;
+    private static final double LEVEL = 40.0;
+
+    private PlanarImage source;
+    private LookupTableJAI modalityLut;
+    private LookupTableJAI voiLut;
+    private LookupTableJAI fusedLut;
+    private int minValue;
+    private int maxValue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = PlanarImage.wrapRenderedImage(SyntheticDataset.createImage(0, 1));
+        modalityLut = DicomImageUtils.createRescaleRampLut(SyntheticDataset.RESCALE_INTERCEPT, 1.0,
+            SyntheticDataset.BITS_STORED, false, true, 16);
+        minValue = modalityLut.lookup(0, modalityLut.getOffset());
+        maxValue = modalityLut.lookup(0, modalityLut.getOffset() + modalityLut.getNumEntries() - 1);
+        voiLut = DicomImageUtils.createWindowLevelLut(LutShape.LINEAR, WINDOW, LEVEL, minValue, maxValue, 8, false,
+            false);
+        fusedLut = LutCache.getFusedLut(modalityLut, voiLut);
+    }
+
+    @Benchmark
+    public Raster modalityThenVoi() {
+        PlanarImage modality = LookupDescriptor.create(source, modalityLut, ImageToolkit.NOCACHE_HINT);
+        return LookupDescriptor.create(modality, voiLut, ImageToolkit.NOCACHE_HINT).getData();
+    }
+
+    @Benchmark
+    public Raster fused() {
+        return LookupDescriptor.create(source, fusedLut, ImageToolkit.NOCACHE_HINT).getData();
+    }
+
+    @Benchmark
+    public LookupTableJAI createVoiLut() {
+        return DicomImageUtils.createWindowLevelLut(LutShape.LINEAR, WINDOW, LEVEL, minValue, maxValue, 8, false,
+            false);
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.dicom.viewer2d.mpr.MprVolume;
+
+/**
+ * Reslicing of a stack of axial CT images into the coronal and the sagittal volumes of the MPR (the volumes are
+ * memory-mapped files) and reading of a reconstructed slice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MprBenchmark {
+
+    @Param({ "64" })
+    public int nbSlices;
+
+    private File dir;
+    private DataBuffer[] stack;
+    private MprVolume coronal;
+    private MprVolume sagittal;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        stack = new DataBuffer[nbSlices];
+        for (int i = 0; i < nbSlices; i++) {
+            stack[i] = SyntheticDataset.createImage(i, nbSlices).getRaster().getDataBuffer();
+        }
+        int size = SyntheticDataset.SIZE;
+        dir = SyntheticDataset.createTempDir("mpr"); //$NON-NLS-1$
+        int type = DataBuffer.TYPE_USHORT;
+        coronal = new MprVolume(new File(dir, "coronal.raw"), size, nbSlices, size, type); //$NON-NLS-1$
+        sagittal = new MprVolume(new File(dir, "sagittal.raw"), size, nbSlices, size, type); //$NON-NLS-1$
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        coronal.dispose();
+        sagittal.dispose();
+        SyntheticDataset.delete(dir);
+    }
+
+    @Benchmark
+    public MprVolume coronal() throws IOException {
+        for (int i = 0; i < nbSlices; i++) {
+            coronal.writeRows(stack[i], i);
+        }
+        return coronal;
+    }
+
+    @Benchmark
+    public MprVolume sagittal() throws IOException {
+        for (int i = 0; i < nbSlices; i++) {
+            sagittal.writeRotatedRows(stack[i], i, 1);
+        }
+        return sagittal;
+    }
+
+    @Benchmark
+    public DataBuffer readSlice() {
+        return coronal.readSlice(SyntheticDataset.SIZE / 2, DataBuffer.TYPE_USHORT);
+    }
+}
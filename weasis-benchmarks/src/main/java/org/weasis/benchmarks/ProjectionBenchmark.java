@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.weasis.core.api.image.op.SlabZprojection;
+import org.weasis.core.api.image.util.PixelStatistics;
+
+/**
+ * Z-projections of a stack of CT images: the thick slabs of the whole stack and the projection of the whole stack in a
+ * single image (MIP). The min/max of a projection is also measured as it is required for the display.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param({ "64" })
+    public int nbSlices;
+
+    @Param({ "MAX", "MEAN" })
+    public SlabZprojection.Mode mode;
+
+    private Raster[] stack;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        stack = new Raster[nbSlices];
+        for (int i = 0; i < nbSlices; i++) {
+            stack[i] = SyntheticDataset.createImage(i, nbSlices).getRaster();
+        }
+        image = SyntheticDataset.createImage(0, 1);
+    }
+
+    @Benchmark
+    public void thickSlabs(Blackhole blackhole) {
+        SlabZprojection op = new SlabZprojection(mode, 5, null);
+        op.compute(nbSlices, i -> stack[i], 0, nbSlices - 1,
+            (index, first, last, raster) -> blackhole.consume(raster.getSample(0, 0, 0)));
+    }
+
+    @Benchmark
+    public void wholeStack(Blackhole blackhole) {
+        int center = nbSlices / 2;
+        SlabZprojection op = new SlabZprojection(mode, nbSlices, null);
+        op.compute(nbSlices, i -> stack[i], center, center, (index, first, last, raster) -> blackhole.consume(raster));
+    }
+
+    @Benchmark
+    public double[] minMax() {
+        return PixelStatistics.getMinMax(image, null, null);
+    }
+}
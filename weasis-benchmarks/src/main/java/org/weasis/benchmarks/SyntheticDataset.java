@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+import org.weasis.jpeg.NativeJLSImageReaderSpi;
+import org.weasis.jpeg.NativeJLSImageWriterSpi;
+import org.weasis.jpeg.NativeJPEGImageReaderSpi;
+import org.weasis.openjpeg.NativeJ2kImageReaderSpi;
+import org.weasis.openjpeg.NativeJ2kImageWriterSpi;
+
+import com.sun.media.imageioimpl.common.ImageioUtil;
+
+/**
+ * Generates the synthetic CT datasets of the benchmarks: a 12 bits phantom (air, soft tissue, bone ring and inserts
+ * changing along the stack) with a deterministic noise, so the compressed sizes are close to real images.
+ */
+public final class SyntheticDataset {
+
+    public static final int SIZE = 512;
+    public static final int BITS_STORED = 12;
+    public static final double RESCALE_INTERCEPT = -1024.0;
+
+    public enum Encoding {
+        RAW(UID.ExplicitVRLittleEndian), RLE(UID.RLELossless), JPEG(UID.JPEGBaseline1),
+        JPEG_LS(UID.JPEGLSLossless), JPEG_2000(UID.JPEG2000LosslessOnly);
+
+        private final String transferSyntax;
+
+        Encoding(String transferSyntax) {
+            this.transferSyntax = transferSyntax;
+        }
+
+        public String getTransferSyntax() {
+            return transferSyntax;
+        }
+    }
+
+    private static final String STUDY_UID = UIDUtils.createUID();
+    private static final String SERIES_UID = UIDUtils.createUID();
+    private static boolean codecsRegistered = false;
+
+    private SyntheticDataset() {
+    }
+
+    /**
+     * Registers the native codecs as their OSGi activators do in the application.
+     */
+    public static synchronized void registerCodecs() {
+        if (!codecsRegistered) {
+            ImageioUtil.registerServiceProviderPriority(NativeJPEGImageReaderSpi.class, ImageReaderSpi.class,
+                "jpeg"); //$NON-NLS-1$
+            ImageioUtil.registerServiceProvider(NativeJLSImageReaderSpi.class);
+            ImageioUtil.registerServiceProvider(NativeJLSImageWriterSpi.class);
+            ImageioUtil.registerServiceProviderPriority(NativeJ2kImageReaderSpi.class, ImageReaderSpi.class,
+                "jpeg2000"); //$NON-NLS-1$
+            codecsRegistered = true;
+        }
+    }
+
+    /**
+     * @return the stored values (unsigned 12 bits) of the slice of a stack
+     */
+    public static short[] createSlice(int width, int height, int index, int nbSlices) {
+        Random random = new Random(31L * index + nbSlices);
+        short[] data = new short[width * height];
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        // Inserts growing and shrinking along the stack
+        double insert = 0.05 + 0.1 * Math.sin(Math.PI * (index + 0.5) / Math.max(1, nbSlices));
+        for (int y = 0; y < height; y++) {
+            double dy = (y - cy) / cy;
+            for (int x = 0; x < width; x++) {
+                double dx = (x - cx) / cx;
+                double body = (dx * dx) / 0.81 + (dy * dy) / 0.49;
+                int hu;
+                if (body > 1.0) {
+                    hu = -1000;
+                } else if (body > 0.85) {
+                    hu = 1000;
+                } else {
+                    double ix = dx - 0.3;
+                    double ix2 = dx + 0.3;
+                    if (ix * ix + dy * dy < insert * insert) {
+                        hu = 300;
+                    } else if (ix2 * ix2 + dy * dy < insert * insert) {
+                        hu = -500;
+                    } else {
+                        hu = 40;
+                    }
+                }
+                int val = hu - (int) RESCALE_INTERCEPT + (int) Math.round(random.nextGaussian() * 10.0);
+                data[y * width + x] = (short) Math.max(0, Math.min((1 << BITS_STORED) - 1, val));
+            }
+        }
+        return data;
+    }
+
+    public static ColorModel createColorModel(int bits) {
+        return new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] { bits }, false, false,
+            Transparency.OPAQUE, bits > 8 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_BYTE);
+    }
+
+    /**
+     * @return a 12 bits image of the slice of a stack
+     */
+    public static BufferedImage createImage(int index, int nbSlices) {
+        short[] data = createSlice(SIZE, SIZE, index, nbSlices);
+        WritableRaster raster = Raster.createWritableRaster(
+            new PixelInterleavedSampleModel(DataBuffer.TYPE_USHORT, SIZE, SIZE, 1, SIZE, new int[] { 0 }),
+            new DataBufferUShort(data, data.length), null);
+        return new BufferedImage(createColorModel(BITS_STORED), raster, false, null);
+    }
+
+    private static BufferedImage to8Bits(BufferedImage img) {
+        BufferedImage dst = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Raster src = img.getRaster();
+        WritableRaster out = dst.getRaster();
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                out.setSample(x, y, 0, src.getSample(x, y, 0) >> (BITS_STORED - 8));
+            }
+        }
+        return dst;
+    }
+
+    public static File createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    public static void delete(File dir) {
+        if (dir != null) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    delete(f);
+                }
+            }
+            if (!dir.delete()) {
+                dir.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Writes the slice of a stack in a DICOM file with the given encoding. JPEG baseline is limited to 8 bits, so the
+     * values are reduced to 8 bits for this encoding.
+     */
+    public static File writeDicom(File dir, int index, int nbSlices, Encoding encoding) throws IOException {
+        BufferedImage img = createImage(index, nbSlices);
+        int bits = BITS_STORED;
+        if (encoding == Encoding.JPEG) {
+            img = to8Bits(img);
+            bits = 8;
+        }
+
+        String iuid = UIDUtils.createUID();
+        Attributes ds = new Attributes();
+        ds.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        ds.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+        ds.setString(Tag.StudyInstanceUID, VR.UI, STUDY_UID);
+        ds.setString(Tag.SeriesInstanceUID, VR.UI, SERIES_UID);
+        ds.setString(Tag.Modality, VR.CS, "CT"); //$NON-NLS-1$
+        ds.setString(Tag.PatientID, VR.LO, "BENCHMARK"); //$NON-NLS-1$
+        ds.setString(Tag.PatientName, VR.PN, "Benchmark^Phantom"); //$NON-NLS-1$
+        ds.setInt(Tag.InstanceNumber, VR.IS, index + 1);
+        ds.setDouble(Tag.ImagePositionPatient, VR.DS, -125.0, -125.0, index * 1.25);
+        ds.setDouble(Tag.ImageOrientationPatient, VR.DS, 1.0, 0.0, 0.0, 0.0, 1.0, 0.0);
+        ds.setDouble(Tag.PixelSpacing, VR.DS, 0.5, 0.5);
+        ds.setDouble(Tag.SliceThickness, VR.DS, 1.25);
+        ds.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        ds.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2"); //$NON-NLS-1$
+        ds.setInt(Tag.Rows, VR.US, SIZE);
+        ds.setInt(Tag.Columns, VR.US, SIZE);
+        ds.setInt(Tag.BitsAllocated, VR.US, bits > 8 ? 16 : 8);
+        ds.setInt(Tag.BitsStored, VR.US, bits);
+        ds.setInt(Tag.HighBit, VR.US, bits - 1);
+        ds.setInt(Tag.PixelRepresentation, VR.US, 0);
+        if (bits > 8) {
+            ds.setDouble(Tag.RescaleIntercept, VR.DS, RESCALE_INTERCEPT);
+            ds.setDouble(Tag.RescaleSlope, VR.DS, 1.0);
+            ds.setDouble(Tag.WindowCenter, VR.DS, 40.0);
+            ds.setDouble(Tag.WindowWidth, VR.DS, 400.0);
+        }
+
+        if (encoding == Encoding.RAW) {
+            short[] data = ((DataBufferUShort) img.getRaster().getDataBuffer()).getData();
+            byte[] bytes = new byte[data.length * 2];
+            for (int i = 0; i < data.length; i++) {
+                bytes[2 * i] = (byte) data[i];
+                bytes[2 * i + 1] = (byte) (data[i] >> 8);
+            }
+            ds.setBytes(Tag.PixelData, VR.OW, bytes);
+        } else {
+            byte[] frame = encoding == Encoding.RLE ? encodeRle(img) : encode(img, encoding);
+            Fragments fragments = ds.newFragments(Tag.PixelData, VR.OB, 2);
+            // Empty basic offset table
+            fragments.add(new byte[0]);
+            fragments.add(frame);
+        }
+
+        File file = new File(dir, encoding.name() + "-" + index + ".dcm"); //$NON-NLS-1$ //$NON-NLS-2$
+        Attributes fmi = ds.createFileMetaInformation(encoding.getTransferSyntax());
+        try (DicomOutputStream out = new DicomOutputStream(file)) {
+            out.writeDataset(fmi, ds);
+        }
+        return file;
+    }
+
+    private static ImageWriter getWriter(Encoding encoding) throws IOException {
+        switch (encoding) {
+            case JPEG_LS:
+                return new NativeJLSImageWriterSpi().createWriterInstance();
+            case JPEG_2000:
+                return new NativeJ2kImageWriterSpi().createWriterInstance();
+            case JPEG:
+                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg"); //$NON-NLS-1$
+                if (writers.hasNext()) {
+                    return writers.next();
+                }
+                throw new IOException("No JPEG writer"); //$NON-NLS-1$
+            default:
+                throw new IllegalArgumentException("No image writer for " + encoding); //$NON-NLS-1$
+        }
+    }
+
+    private static byte[] encode(BufferedImage img, Encoding encoding) throws IOException {
+        ImageWriter writer = getWriter(encoding);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(img, null, null), null);
+        } finally {
+            writer.dispose();
+        }
+        return padToEvenLength(bytes.toByteArray());
+    }
+
+    /**
+     * Encodes a 16 bits image with the DICOM RLE (PS 3.5 Annex G): one segment for the high bytes and one for the low
+     * bytes, each row being packed separately.
+     */
+    static byte[] encodeRle(BufferedImage img) throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        short[] data = ((DataBufferUShort) img.getRaster().getDataBuffer()).getData();
+        byte[] row = new byte[width];
+        ByteArrayOutputStream[] segments = { new ByteArrayOutputStream(), new ByteArrayOutputStream() };
+        for (int s = 0; s < segments.length; s++) {
+            int shift = s == 0 ? 8 : 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = (byte) (data[y * width + x] >> shift);
+                }
+                packBits(row, segments[s]);
+            }
+            if (segments[s].size() % 2 != 0) {
+                segments[s].write(0);
+            }
+        }
+
+        byte[] header = new byte[64];
+        int offset = header.length;
+        writeInt(header, 0, segments.length);
+        for (int s = 0; s < segments.length; s++) {
+            writeInt(header, 4 * (s + 1), offset);
+            offset += segments[s].size();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(offset);
+        out.write(header);
+        for (ByteArrayOutputStream segment : segments) {
+            segment.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    static void packBits(byte[] src, ByteArrayOutputStream out) {
+        int len = src.length;
+        int i = 0;
+        while (i < len) {
+            int run = 1;
+            while (i + run < len && run < 128 && src[i + run] == src[i]) {
+                run++;
+            }
+            if (run > 1) {
+                out.write(1 - run);
+                out.write(src[i]);
+                i += run;
+            } else {
+                // Literal sequence until the beginning of the next run
+                int start = i++;
+                while (i < len && i - start < 128 && (i + 1 >= len || src[i] != src[i + 1])) {
+                    i++;
+                }
+                out.write(i - start - 1);
+                out.write(src, start, i - start);
+            }
+        }
+    }
+
+    private static void writeInt(byte[] b, int off, int val) {
+        b[off] = (byte) val;
+        b[off + 1] = (byte) (val >> 8);
+        b[off + 2] = (byte) (val >> 16);
+        b[off + 3] = (byte) (val >> 24);
+    }
+
+    private static byte[] padToEvenLength(byte[] b) {
+        if (b.length % 2 == 0) {
+            return b;
+        }
+        byte[] padded = new byte[b.length + 1];
+        System.arraycopy(b, 0, padded, 0, b.length);
+        return padded;
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmarks;
+
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.jai.PlanarImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.image.ImageOpNode;
+import org.weasis.core.api.image.ZoomOp;
+
+/**
+ * {@link ZoomOp} of a 12 bits CT image for each interpolation (0: nearest, 1: bilinear, 2: bicubic, 3: bicubic2).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ZoomBenchmark {
+
+    @Param({ "0", "1", "2", "3" })
+    public int interpolation;
+
+    @Param({ "0.5", "2.0" })
+    public double ratio;
+
+    private PlanarImage source;
+    private ZoomOp zoom;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = PlanarImage.wrapRenderedImage(SyntheticDataset.createImage(0, 1));
+        zoom = new ZoomOp();
+        zoom.setParam(ZoomOp.P_RATIO_X, ratio);
+        zoom.setParam(ZoomOp.P_RATIO_Y, ratio);
+        zoom.setParam(ZoomOp.P_INTERPOLATION, interpolation);
+    }
+
+    @Benchmark
+    public Raster zoom() throws Exception {
+        zoom.setParam(ImageOpNode.Param.INPUT_IMG, source);
+        zoom.process();
+        return ((RenderedImage) zoom.getParam(ImageOpNode.Param.OUTPUT_IMG)).getData();
+    }
+}
@@ -36,6 +36,7 @@ class MemoryStreamSegment extends StreamSegment {
         ByteBuffer buffer = ByteBuffer.allocateDirect(segLength[segment]);
         buffer.order(ByteOrder.nativeOrder());
         buffer.put(inputStream);
+        buffer.rewind();
         return buffer;
     }
 
@@ -14,16 +14,28 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 
 public abstract class NativeImage {
 
+    /*
+     * Direct output buffers kept for the next decodings, shared by all the threads. The direct memory is outside the
+     * heap and the image cache, so the total size of the pooled buffers is limited.
+     */
+    private static final long MAX_POOL_SIZE = 32L * 1024 * 1024;
+    private static final List<ByteBuffer> DIRECT_BUFFER_POOL = new ArrayList<>();
+    private static long pooledBytes = 0L;
+
     // Descriptor of file fragment corresponding to an image
     private StreamSegment streamSegment;
     private String filepath;
@@ -31,6 +43,11 @@ public abstract class NativeImage {
 
     protected Buffer inputBuffer;
     protected Buffer outputBuffer;
+    // Size of the output buffer when the decoded image is a region or a reduced resolution, 0 for the full image
+    private int outputWidth;
+    private int outputHeight;
+    // Direct memory of the output buffer, returned to the pool when the data has been copied into the Java heap
+    private ByteBuffer directOutputBuffer;
 
     public NativeImage() {
     }
@@ -79,6 +96,22 @@ public abstract class NativeImage {
         this.outputBuffer = outputBuffer;
     }
 
+    /**
+     * Sets the size of the decoded image when it is different from the size of the image parameters.
+     */
+    public void setOutputSize(int width, int height) {
+        this.outputWidth = width;
+        this.outputHeight = height;
+    }
+
+    public int getOutputWidth() {
+        return outputWidth > 0 ? outputWidth : imageParameters == null ? 0 : imageParameters.getWidth();
+    }
+
+    public int getOutputHeight() {
+        return outputHeight > 0 ? outputHeight : imageParameters == null ? 0 : imageParameters.getHeight();
+    }
+
     public void fillInputBuffer(Object array, int offset, int length) {
         inputBuffer = getBuffer(array, offset, length);
     }
@@ -103,10 +136,80 @@ public abstract class NativeImage {
         return buffer;
     }
 
+    /**
+     * Allocates the direct memory for the output of the native decoder. The smallest pooled buffer which is large
+     * enough is reused.
+     *
+     * @param size
+     *            the size in bytes
+     * @return the output buffer with the position 0 and the limit equal to the size
+     */
     public ByteBuffer allocateDirectByteBuffer(int size) {
-        // For large buffer, It is slower due to the way of the JVM allocates this kind of memory (fragmented).
-        outputBuffer = ByteBuffer.allocateDirect(size);
-        return (ByteBuffer) outputBuffer;
+        releaseOutputBuffer();
+        ByteBuffer buffer = takePooledBuffer(size);
+        if (buffer != null) {
+            buffer.clear();
+            buffer.limit(size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            // For large buffer, It is slower due to the way of the JVM allocates this kind of memory (fragmented).
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        // Set as output buffer by the codec when the decoding is successful
+        directOutputBuffer = buffer;
+        return buffer;
+    }
+
+    /**
+     * Removes the output buffer. The direct memory is returned to the pool for the next decodings, so it must not be
+     * read after this call.
+     */
+    public void releaseOutputBuffer() {
+        outputBuffer = null;
+        ByteBuffer buffer = directOutputBuffer;
+        directOutputBuffer = null;
+        if (buffer != null) {
+            poolBuffer(buffer);
+        }
+    }
+
+    private static synchronized ByteBuffer takePooledBuffer(int size) {
+        int index = -1;
+        for (int i = 0; i < DIRECT_BUFFER_POOL.size(); i++) {
+            int capacity = DIRECT_BUFFER_POOL.get(i).capacity();
+            if (capacity >= size && (index < 0 || capacity < DIRECT_BUFFER_POOL.get(index).capacity())) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer buffer = DIRECT_BUFFER_POOL.remove(index);
+        pooledBytes -= buffer.capacity();
+        return buffer;
+    }
+
+    private static synchronized void poolBuffer(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > MAX_POOL_SIZE) {
+            return;
+        }
+        // Release smaller buffers to keep the largest ones, which are the most expensive to allocate
+        long smallerBytes = 0L;
+        for (ByteBuffer b : DIRECT_BUFFER_POOL) {
+            if (b.capacity() < capacity) {
+                smallerBytes += b.capacity();
+            }
+        }
+        if (pooledBytes - smallerBytes + capacity > MAX_POOL_SIZE) {
+            return;
+        }
+        DIRECT_BUFFER_POOL.sort(Comparator.comparingInt(ByteBuffer::capacity));
+        while (pooledBytes + capacity > MAX_POOL_SIZE) {
+            pooledBytes -= DIRECT_BUFFER_POOL.remove(0).capacity();
+        }
+        DIRECT_BUFFER_POOL.add(buffer);
+        pooledBytes += capacity;
     }
 
     public static void writeByteBuffer(ImageOutputStream ouputStream, ByteBuffer outBuf, int bytesWritten)
@@ -34,6 +34,7 @@ import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
@@ -49,6 +50,9 @@ import org.slf4j.LoggerFactory;
 public abstract class NativeImageReader extends ImageReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(NativeImageReader.class);
 
+    // Total of bytes copied from the direct buffers of the native decoders into the Java heap
+    private static final AtomicLong COPIED_BYTES = new AtomicLong();
+
     // The position of the byte after the last byte read so far.
     protected long highMark = Long.MIN_VALUE;
 
@@ -427,11 +431,20 @@ public abstract class NativeImageReader extends ImageReader {
         return null;
     }
 
+    /**
+     * @return the number of bytes copied from the direct memory of the native decoders into the Java heap since the
+     *         start of the application. The decoders writing into a Java array require no copy.
+     */
+    public static long getCopiedBytes() {
+        return COPIED_BYTES.get();
+    }
+
     protected static DataBuffer createDataBuffer(NativeImage img) {
         DataBuffer db = null;
         if (img != null) {
             ImageParameters p = img.getImageParameters();
             if (p != null && img.getOutputBuffer() != null) {
+                long copiedBytes = 0L;
                 int dataOffset = p.getDataOffset();
                 Buffer buf = img.getOutputBuffer();
                 buf.rewind();
@@ -444,11 +457,9 @@ public abstract class NativeImageReader extends ImageReader {
                     if (buf.hasArray()) {
                         byteData = (byte[]) buf.array();
                     } else {
-                        ByteBuffer byteBuffer = (ByteBuffer) buf;
                         byteData = new byte[limit];
-                        for (int i = 0; i < byteData.length; i++) {
-                            byteData[i] = byteBuffer.get();
-                        }
+                        ((ByteBuffer) buf).get(byteData);
+                        copiedBytes = limit;
                     }
                     db = new DataBufferByte(byteData, byteData.length - dataOffset, dataOffset);
                     // } else {
@@ -469,13 +480,10 @@ public abstract class NativeImageReader extends ImageReader {
                     short[] shortData;
                     if (buf.hasArray()) {
                         shortData = (short[]) buf.array();
-
                     } else {
-                        ShortBuffer byteBuffer = (ShortBuffer) buf;
                         shortData = new short[limit];
-                        for (int i = 0; i < shortData.length; i++) {
-                            shortData[i] = byteBuffer.get();
-                        }
+                        ((ShortBuffer) buf).get(shortData);
+                        copiedBytes = limit * 2L;
                     }
                     // By default short buffer is unsigned, must be explicitly set before to be signed short.
                     // If not, RectifyUShortToShortDataDescriptor will fix this issue
@@ -485,17 +493,34 @@ public abstract class NativeImageReader extends ImageReader {
                         db = new DataBufferUShort(shortData, shortData.length - dataOffset, dataOffset);
                     }
                 }
-                img.outputBuffer = null;
+                // The direct memory can be reused by the next decoding
+                img.releaseOutputBuffer();
+                COPIED_BYTES.addAndGet(copiedBytes);
+                LOGGER.debug("Bytes copied from the native output buffer: {}", copiedBytes); //$NON-NLS-1$
             }
         }
         return db;
     }
 
+    /**
+     * @return true if the codec decodes only the source region and applies the source subsampling of the read
+     *         parameters. Otherwise the image is always decoded entirely.
+     */
+    protected boolean isPartialDecodingSupported() {
+        return false;
+    }
+
+    /**
+     * Returns an image decoded when its tiles are required when the codec can decode a part of the image. The image
+     * keeps a copy of the compressed data, so its tiles can be requested from any thread after this call, even when
+     * the input of this reader has changed or has been closed. The other codecs decode the whole image immediately.
+     */
     @Override
     public synchronized RenderedImage readAsRenderedImage(int imageIndex, ImageReadParam param) throws IOException {
-        return read(imageIndex, param);
-        // TODO must be validated as the image reading concurrency is outside the pool thread
-        // return new NativeRenderedImage(this, param, imageIndex);
+        if (isPartialDecodingSupported()) {
+            return new NativeRenderedImage(this, param, imageIndex);
+        }
+        return read(imageIndex, param == null ? getDefaultReadParam() : param);
     }
 
     @Override
@@ -514,6 +539,10 @@ public abstract class NativeImageReader extends ImageReader {
         ImageTypeSpecifier type = createImageType(img.getImageParameters(), null, null, null, null, null);
         // Create a new raster and copy the data.
         SampleModel sm = type.getSampleModel();
+        if (img.getOutputWidth() != sm.getWidth() || img.getOutputHeight() != sm.getHeight()) {
+            // Region or reduced resolution
+            sm = sm.createCompatibleSampleModel(img.getOutputWidth(), img.getOutputHeight());
+        }
         WritableRaster raster = Raster.createWritableRaster(sm, db, param.getDestinationOffset());
 
         long stop = System.currentTimeMillis();
@@ -556,7 +585,7 @@ public abstract class NativeImageReader extends ImageReader {
     }
 
     @Override
-    public void setInput(Object input, boolean seekForwardOnly, boolean ignoreMetadata) {
+    public synchronized void setInput(Object input, boolean seekForwardOnly, boolean ignoreMetadata) {
         super.setInput(input, seekForwardOnly, ignoreMetadata);
         if (input != null && !(input instanceof ImageInputStream)) {
                 throw new IllegalArgumentException("input is not an ImageInputStream!");
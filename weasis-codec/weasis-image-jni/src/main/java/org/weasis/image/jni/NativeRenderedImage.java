@@ -14,104 +14,195 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 
 import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sun.media.imageioimpl.common.SignedDataImageParam;
 import com.sun.media.imageioimpl.common.SimpleRenderedImage;
 
+/**
+ * Image decoded by tiles when they are required. Each tile is decoded from the region of the source image it covers,
+ * and the source subsampling of the read parameters reduces the size of the image and of its tiles.
+ *
+ * The compressed image is copied when building this image and decoded by a reader owned by this image, so the tiles
+ * can be requested by several threads and after the input of the original reader has been changed or closed. The
+ * decoded tiles are kept with soft references.
+ */
 public class NativeRenderedImage extends SimpleRenderedImage {
     private static final Logger LOGGER = LoggerFactory.getLogger(NativeRenderedImage.class);
 
-    private Raster currentTile;
-    private Point currentTileGrid;
-
-    private NativeImageReader reader;
-    private ImageReadParam param = null;
-    private int imageIndex;
-
+    private final NativeImageReader tileReader;
+    private final boolean signedData;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int periodX;
+    private final int periodY;
+    private final SoftReference<Raster>[] tiles;
+
+    /**
+     * @param reader
+     *            the reader of the compressed image, its input must be set
+     * @param param
+     *            the read parameters, can be null
+     * @param imageIndex
+     *            the index of the image in the input of the reader
+     * @throws IOException
+     *             when the compressed image cannot be read
+     */
+    @SuppressWarnings("unchecked")
     public NativeRenderedImage(NativeImageReader reader, ImageReadParam param, int imageIndex) throws IOException {
-        this.reader = reader;
-        this.param = param;
-        this.imageIndex = imageIndex;
-
-        ImageParameters params = reader.getInfoImage(imageIndex, param);
+        // Copy the parameters, the param object can be modified by the caller after this call
+        this.signedData = param instanceof SignedDataImageParam && ((SignedDataImageParam) param).isSignedData();
+        boolean partial = reader.isPartialDecodingSupported();
+        this.periodX = param == null || !partial ? 1 : Math.max(1, param.getSourceXSubsampling());
+        this.periodY = param == null || !partial ? 1 : Math.max(1, param.getSourceYSubsampling());
+
+        ImageParameters params;
+        byte[] data;
+        synchronized (reader) {
+            params = reader.getInfoImage(imageIndex, param);
+            reader.seekToImage(imageIndex);
+            data = readRemainingBytes((ImageInputStream) reader.getInput());
+        }
+        this.tileReader = createReader(reader.getOriginatingProvider());
+        // The copied image is the first one of the new input
+        tileReader.setInput(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
 
-        this.tileWidth = params.getTileWidth();
-        this.tileHeight = params.getTileHeight();
-        this.tileGridXOffset = params.getTileGridXOffset();
-        this.tileGridYOffset = params.getTileGridYOffset();
+        this.sourceWidth = params.getWidth();
+        this.sourceHeight = params.getHeight();
 
-        this.width = params.getWidth();
-        this.height = params.getHeight();
+        this.width = (sourceWidth + periodX - 1) / periodX;
+        this.height = (sourceHeight + periodY - 1) / periodY;
         this.minX = 0;
         this.minY = 0;
 
-        if (tileWidth < 64 || tileHeight < 64) {
+        int tw = params.getTileWidth();
+        int th = params.getTileHeight();
+        int offsetX = params.getTileGridXOffset();
+        int offsetY = params.getTileGridYOffset();
+        // The tiles of the source must be aligned on the subsampling grid
+        if (!partial || tw < 64 || th < 64 || tw % periodX != 0 || th % periodY != 0 || offsetX % periodX != 0
+            || offsetY % periodY != 0) {
             this.tileWidth = this.width;
             this.tileHeight = this.height;
+            this.tileGridXOffset = 0;
+            this.tileGridYOffset = 0;
+        } else {
+            this.tileWidth = tw / periodX;
+            this.tileHeight = th / periodY;
+            this.tileGridXOffset = offsetX / periodX;
+            this.tileGridYOffset = offsetY / periodY;
         }
+        this.tiles = new SoftReference[getNumXTiles() * getNumYTiles()];
 
         ImageTypeSpecifier type = NativeImageReader.createImageType(params, null, null, null, null, null);
         colorModel = type.getColorModel();
         sampleModel = type.getSampleModel().createCompatibleSampleModel(tileWidth, tileHeight);
     }
 
+    private static byte[] readRemainingBytes(ImageInputStream iis) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int nr;
+        while ((nr = iis.read(buf)) > 0) {
+            out.write(buf, 0, nr);
+        }
+        return out.toByteArray();
+    }
+
+    private static NativeImageReader createReader(ImageReaderSpi provider) throws IOException {
+        ImageReader reader = provider == null ? null : provider.createReaderInstance();
+        if (!(reader instanceof NativeImageReader)) {
+            throw new IOException("Cannot create a native reader for decoding the tiles"); //$NON-NLS-1$
+        }
+        return (NativeImageReader) reader;
+    }
+
     @Override
-    public synchronized Raster getTile(int tileX, int tileY) {
-        if (currentTile != null && currentTileGrid.x == tileX && currentTileGrid.y == tileY) {
-            return currentTile;
+    public Raster getTile(int tileX, int tileY) {
+        if (tileX < getMinTileX() || tileX > getMaxTileX() || tileY < getMinTileY() || tileY > getMaxTileY()) {
+            throw new IllegalArgumentException("Tile index out of bounds"); //$NON-NLS-1$
+        }
+        int index = (tileY - getMinTileY()) * getNumXTiles() + tileX - getMinTileX();
+        synchronized (tiles) {
+            Raster tile = tiles[index] == null ? null : tiles[index].get();
+            if (tile != null) {
+                return tile;
+            }
         }
 
         try {
-            long start = System.currentTimeMillis();
+            Raster tile = decodeTile(tileX, tileY);
+            synchronized (tiles) {
+                tiles[index] = new SoftReference<>(tile);
+            }
+            return tile;
+        } catch (IOException e) {
+            // The tile cannot be missing in the image
+            String msg = String.format("Cannot decode the tile %d,%d", tileX, tileY); //$NON-NLS-1$
+            throw new IllegalStateException(msg, e);
+        }
+    }
 
-            boolean tiled = width != tileWidth || height != tileHeight;
-            int x = tileXToX(tileX);
-            int y = tileYToY(tileY);
+    private Raster decodeTile(int tileX, int tileY) throws IOException {
+        long start = System.currentTimeMillis();
 
-            if (tiled) {
-                param.setSourceRegion(new Rectangle(x, y, tileWidth, tileHeight));
-            }
-            // param.setDestinationType(new ImageTypeSpecifier(colorModel, sampleModel));
+        int x = tileXToX(tileX);
+        int y = tileYToY(tileY);
+        Rectangle region = new Rectangle(x, y, tileWidth, tileHeight).intersection(getBounds());
 
-            NativeImage img = reader.getImage(imageIndex, param);
+        NativeImageReadParam tileParam = new NativeImageReadParam();
+        tileParam.setSignedData(signedData);
+        tileParam.setSourceSubsampling(periodX, periodY, 0, 0);
+        if (region.width != width || region.height != height) {
+            Rectangle sourceRegion =
+                new Rectangle(region.x * periodX, region.y * periodY, region.width * periodX, region.height * periodY);
+            tileParam.setSourceRegion(sourceRegion.intersection(new Rectangle(0, 0, sourceWidth, sourceHeight)));
+        }
 
+        int outWidth;
+        int outHeight;
+        DataBuffer db;
+        synchronized (tileReader) {
+            NativeImage img = tileReader.getImage(0, tileParam);
             if (img == null) {
-                return null;
-            }
-
-            DataBuffer db = NativeImageReader.createDataBuffer(img);
-            if (db == null) {
-                return null;
+                throw new IOException("No decoded image"); //$NON-NLS-1$
             }
-
-            currentTile = Raster.createWritableRaster(sampleModel, db, new Point(x, y));
-            long stop = System.currentTimeMillis();
-            LOGGER.debug("Building BufferedImage time: {} ms", (stop - start)); //$NON-NLS-1$
-        } catch (IOException e) {
-            LOGGER.error("Cannot retrieve tile: {}", e.getMessage());
+            outWidth = img.getOutputWidth();
+            outHeight = img.getOutputHeight();
+            db = NativeImageReader.createDataBuffer(img);
         }
-
-        int originalNumXTiles = getNumXTiles();
-        int originalNumYTiles = getNumYTiles();
-        if (tileX >= originalNumXTiles || tileY >= originalNumYTiles) {
-            throw new IllegalArgumentException();
+        if (db == null) {
+            throw new IOException("No decoded data"); //$NON-NLS-1$
         }
-
-        if (currentTileGrid == null) {
-            currentTileGrid = new Point(tileX, tileY);
-        } else {
-            currentTileGrid.x = tileX;
-            currentTileGrid.y = tileY;
+        int w = Math.min(region.width, outWidth);
+        int h = Math.min(region.height, outHeight);
+
+        SampleModel sm = sampleModel.createCompatibleSampleModel(outWidth, outHeight);
+        WritableRaster raster = Raster.createWritableRaster(sm, db, new Point(region.x, region.y));
+        if (w != tileWidth || h != tileHeight || raster.getWidth() != tileWidth || raster.getHeight() != tileHeight) {
+            // Tile at the border of the image
+            WritableRaster tile = Raster.createWritableRaster(sampleModel, new Point(x, y));
+            tile.setRect(raster.createChild(region.x, region.y, w, h, region.x, region.y, null));
+            raster = tile;
         }
-
-        return currentTile;
+        long stop = System.currentTimeMillis();
+        LOGGER.debug("Building tile time: {} ms", (stop - start)); //$NON-NLS-1$
+        return raster;
     }
 
     public void readAsRaster(WritableRaster raster) throws java.io.IOException {
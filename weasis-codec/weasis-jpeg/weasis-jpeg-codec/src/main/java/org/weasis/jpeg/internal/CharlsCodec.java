@@ -93,7 +93,7 @@ public class CharlsCodec implements NativeCodec {
                     p.colorTransform(0); // default (RGB)
 
                     // Build outputStream here and transform to an array
-                    outBuf = ByteBuffer.allocateDirect(p.bytesperline() * p.height());
+                    outBuf = nImage.allocateDirectByteBuffer(p.bytesperline() * p.height());
                     outBuf.order(ByteOrder.nativeOrder()); // Not test with big endian system
                     size2.put(outBuf.limit());
 
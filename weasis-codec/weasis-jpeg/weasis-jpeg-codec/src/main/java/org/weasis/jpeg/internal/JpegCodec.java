@@ -91,7 +91,7 @@ public class JpegCodec implements NativeCodec {
                     setParameters(nImage.getImageParameters(), decomp);
                     LOGGER.debug("Input color space {}", decomp.getJpeg_DecompressStruct().jpeg_color_space());
                     // Build outputStream here and transform to an array
-                    ByteBuffer outBuf = ByteBuffer.allocateDirect(params.getBytesPerLine() * params.getHeight());
+                    ByteBuffer outBuf = nImage.allocateDirectByteBuffer(params.getBytesPerLine() * params.getHeight());
                     outBuf.order(ByteOrder.LITTLE_ENDIAN);
 
                     int result = libijg.EJ_Suspension;
@@ -16,6 +16,8 @@ public class J2kParameters extends ImageParameters {
 
     private int type;
     private int allowedLossyError;
+    // Number of wavelet decomposition levels, the image can be decoded at 1/2^n of its size for n <= levels
+    private int decompositionLevels;
 
     public J2kParameters() {
         super();
@@ -30,6 +32,14 @@ public class J2kParameters extends ImageParameters {
         this.allowedLossyError = allowedLossyError;
     }
 
+    public int getDecompositionLevels() {
+        return decompositionLevels;
+    }
+
+    public void setDecompositionLevels(int decompositionLevels) {
+        this.decompositionLevels = decompositionLevels;
+    }
+
     public int getType() {
         return type;
     }
@@ -43,6 +53,8 @@ public class J2kParameters extends ImageParameters {
         StringBuffer buf = new StringBuffer(super.toString());
         buf.append(" Allowed Lossy Error:");
         buf.append(allowedLossyError);
+        buf.append(" Decomposition Levels:");
+        buf.append(decompositionLevels);
         return buf.toString();
     }
 
@@ -111,6 +111,12 @@ class NativeJ2kImageReader extends NativeImageReader {
         return retval;
     }
 
+    @Override
+    protected boolean isPartialDecodingSupported() {
+        // Source region and resolution level
+        return true;
+    }
+
     @Override
     public boolean isImageTiled(int imageIndex) throws IOException {
         int w = getWidth(imageIndex);
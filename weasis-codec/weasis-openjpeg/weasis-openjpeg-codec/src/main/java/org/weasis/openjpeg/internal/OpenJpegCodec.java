@@ -105,6 +105,7 @@ public class OpenJpegCodec implements NativeCodec {
                     throw new IOException("Failed to read the j2k header");
                 }
                 setParameters(nImage.getImageParameters(), image);
+                readCodestreamHeader(buffer, params);
                 // keep a reference to be not garbage collected
                 buffer.clear();
                 j2kFile.deallocate();
@@ -170,7 +171,10 @@ public class OpenJpegCodec implements NativeCodec {
                 openjpeg.opj_set_default_decoder_parameters(parameters);
                 parameters.decod_format(j2kparams.getType());
                 parameters.cp_layer(0);
-                parameters.cp_reduce(0);
+                readCodestreamHeader(buffer, j2kparams);
+                // Decode only the required resolution level when the subsampling is a power of 2
+                int reduce = getReduceFactor(param, j2kparams.getDecompositionLevels());
+                parameters.cp_reduce(reduce);
 
                 if (!openjpeg.opj_setup_decoder(codec, parameters)) {
                     throw new IOException("Failed to setup the decoder");
@@ -187,80 +191,30 @@ public class OpenJpegCodec implements NativeCodec {
                     throw new IllegalArgumentException("Invalid bit per sample: " + bps);
                 }
 
-                Rectangle area = param.getSourceRegion();
-                // Rectangle area = new Rectangle();
-                // area.width = j2kparams.getWidth();
-                // area.height = j2kparams.getHeight();
-
-                /* Do not decode the entire image if are is not null */
-                if (area != null && !openjpeg.opj_set_decode_area(codec, image, area.x, area.y, area.x + area.width,
-                    area.y + area.height)) {
-                    throw new IOException("Failed to set the decoded area!");
+                Rectangle area = param == null ? null : param.getSourceRegion();
+                if (area != null) {
+                    area = area.intersection(new Rectangle(0, 0, j2kparams.getWidth(), j2kparams.getHeight()));
+                    if (area.isEmpty()) {
+                        throw new IOException("The source region is outside the image!");
+                    }
+                    /*
+                     * Decode only the tiles and the code-blocks intersecting the area. The area is expressed in the
+                     * reference grid of the full resolution image.
+                     */
+                    int x0 = image.x0();
+                    int y0 = image.y0();
+                    if (!openjpeg.opj_set_decode_area(codec, image, x0 + area.x, y0 + area.y,
+                        x0 + area.x + area.width, y0 + area.y + area.height)) {
+                        throw new IOException("Failed to set the decoded area!");
+                    }
                 }
 
-                // TODO need to be tested
-
-                // if (parameters.nb_tile_to_decode() > 0) {
-                // ByteBuffer outBuf = null;
-                // BoolPointer l_go_on = new BoolPointer(1);
-                // l_go_on.put(true);
-                // IntPointer l_data_size = new IntPointer(1);
-                // IntPointer l_tile_index = new IntPointer(1);
-                // IntPointer l_nb_comps = new IntPointer(1);
-                // l_nb_comps.put(0);
-                // IntPointer l_tile_x0 = new IntPointer(1);
-                // IntPointer l_tile_y0 = new IntPointer(1);
-                // IntPointer l_tile_x1 = new IntPointer(1);
-                // IntPointer l_tile_y1 = new IntPointer(1);
-                //
-                // while (l_go_on.get()) {
-                // if (!openjpeg.opj_read_tile_header(codec, l_stream, l_tile_index, l_data_size, l_tile_x0,
-                // l_tile_y0, l_tile_x1, l_tile_y1, l_nb_comps, l_go_on)) {
-                // // throw new IOException("Failed to read tile header: " + l_tile_index.get() + "!");
-                // }
-                //
-                // if (l_go_on.get()) {
-                // if (outBuf == null || l_data_size.get() > outBuf.capacity()) {
-                // outBuf = ByteBuffer.allocateDirect(l_data_size.get());
-                // }
-                //
-                // if (!openjpeg.opj_decode_tile_data(codec, l_tile_index.get(), outBuf, l_data_size.get(),
-                // l_stream)) {
-                // throw new IOException("Failed to decode tile " + l_tile_index.get() + "!");
-                // }
-                // LOGGER.debug("tile {} is decoded", l_tile_index.get());
-                // }
-                // }
-                // } else {
-
                 long start = System.currentTimeMillis();
                 /* Get the decoded image */
                 if (!(openjpeg.opj_decode(codec, l_stream, image) && openjpeg.opj_end_decompress(codec, l_stream))) {
                     throw new IOException("Failed to set the decoded image!");
                 }
                 LOGGER.debug("OpenJPEG decode time: {} ms", (System.currentTimeMillis() - start)); //$NON-NLS-1$
-                // }
-
-                // if (tile_index >= 0) {
-                // /* It is just here to illustrate how to use the resolution after set parameters */
-                // /*
-                // * if (!openjpeg.opj_set_decoded_resolution_factor(l_codec, 5)) {
-                // * openjpeg.opj_stream_destroy_v3(l_stream); throw new
-                // * IOException("Failed to set the resolution factor tile!"); }
-                // */
-                //
-                // if (!openjpeg.opj_get_decoded_tile(codec, l_stream, image, tile_index)) {
-                // throw new IOException("Failed to decode tile " + tile_index + "!");
-                // }
-                // LOGGER.debug("tile {} is decoded", tile_index);
-                // } else {
-                //
-                // /* Get the decoded image */
-                // if (!(openjpeg.opj_decode(codec, l_stream, image)
-                // && openjpeg.opj_end_decompress(codec, l_stream))) {
-                // throw new IOException("Failed to set the decoded image!");
-                // }
-                // }
 
                 /*
                  * Has not effect on releasing memory but only keep a reference to be not garbage collected during the
@@ -297,17 +251,22 @@ public class OpenJpegCodec implements NativeCodec {
 
                     // Build outputStream here and transform to an array
                     // Convert band interleaved from openjpeg to pixel interleaved (to display)
-                    if (area == null) {
-                        area = new Rectangle(0, 0, j2kparams.getWidth(), j2kparams.getHeight());
-                    }
-                    int imgSize = area.width * area.height;
-                    int length = imgSize * bands;
+                    // The size of the decoded components is reduced by the area and the resolution factor
+                    opj_image_comp cp = image.comps().position(0);
+                    int cw = cp.w();
+                    int ch = cp.h();
+                    // Apply the remaining subsampling which cannot be done by the resolution factor
+                    int stepX = param == null ? 1 : Math.max(1, param.getSourceXSubsampling() >> reduce);
+                    int stepY = param == null ? 1 : Math.max(1, param.getSourceYSubsampling() >> reduce);
+                    int outWidth = (cw + stepX - 1) / stepX;
+                    int outHeight = (ch + stepY - 1) / stepY;
+                    int length = outWidth * outHeight * bands;
                     Object array = null;
                     if (bps > 0 && bps <= 16) {
                         array = bps <= 8 ? new byte[length] : new short[length];
-                        opj_image_comp cp = image.comps().position(0);
                         int dx = cp.dx();
                         int dy = cp.dy();
+                        int[] row = new int[cw];
                         for (int i = 0; i < bands; i++) {
                             if (i > 0) {
                                 cp = image.comps().position(i);
@@ -317,7 +276,7 @@ public class OpenJpegCodec implements NativeCodec {
                                         new Object[] { i, cp.prec(), bps });
                                     continue;
                                 }
-                                if (cp.dx() != dx || cp.dy() != dy) {
+                                if (cp.dx() != dx || cp.dy() != dy || cp.w() != cw || cp.h() != ch) {
                                     LOGGER.error(
                                         "Cannot read band {} because separation of a sample is different from the first band.",
                                         i);
@@ -325,37 +284,30 @@ public class OpenJpegCodec implements NativeCodec {
                                 }
                             }
 
-                            // TODO convert band to pixel interleaved, store in temporary file when size >= 1024
                             IntPointer intBuf = cp.data();
-                            if (imgSize <= cp.w() * cp.h()) {
+                            for (int y = 0; y < outHeight; y++) {
+                                intBuf.position((long) y * stepY * cw);
+                                intBuf.get(row, 0, cw);
+                                int offset = y * outWidth * bands + i;
                                 if (bps <= 8) {
                                     byte[] data = (byte[]) array;
-                                    for (int k = 0; k < imgSize; k++) {
-                                        data[k * bands + i] = (byte) intBuf.get(k);
+                                    for (int x = 0; x < outWidth; x++) {
+                                        data[offset + x * bands] = (byte) row[x * stepX];
                                     }
                                 } else {
                                     short[] data = (short[]) array;
-
-                                    // boolean signed = params.isSignedData();
-                                    // if (signed) {
-                                    // int singedOffset = (1 << bps) / 2;
-                                    // for (int k = 0; k < imgSize; k++) {
-                                    // int val = intBuf.get(k);
-                                    // data[k * bands + i] =
-                                    // (short) (val < singedOffset ? val + singedOffset : val - singedOffset);
-                                    // }
-                                    // } else {
-                                    for (int k = 0; k < imgSize; k++) {
-                                        data[k * bands + i] = (short) intBuf.get(k);
+                                    for (int x = 0; x < outWidth; x++) {
+                                        data[offset + x * bands] = (short) row[x * stepX];
                                     }
-                                    // }
                                 }
                             }
+                            intBuf.position(0);
                         }
                     }
 
                     if (array != null) {
                         nImage.fillOutputBuffer(array, 0, length);
+                        nImage.setOutputSize(outWidth, outHeight);
                     }
                 }
             } finally {
@@ -515,9 +467,11 @@ public class OpenJpegCodec implements NativeCodec {
                 opj_image_comp cp = image.comps().position(0);
                 params.setWidth(cp.w());
                 params.setHeight(cp.h());
-                // TODO change this once tile reading has been implemented.
-                params.setTileWidth(params.getWidth());
-                params.setTileHeight(params.getHeight());
+                if (params.getTileWidth() <= 0 || params.getTileHeight() <= 0) {
+                    // Replaced by the tiles of the codestream, see readCodestreamHeader()
+                    params.setTileWidth(params.getWidth());
+                    params.setTileHeight(params.getHeight());
+                }
                 params.setBitsPerSample(cp.prec());
                 params.setSamplesPerPixel(bands);
                 params.setBytesPerLine(
@@ -528,6 +482,83 @@ public class OpenJpegCodec implements NativeCodec {
         }
     }
 
+    /**
+     * Reads the tile grid (SIZ marker) and the number of decomposition levels (COD marker) from the main header of the
+     * codestream.
+     */
+    static void readCodestreamHeader(ByteBuffer buffer, J2kParameters params) {
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int limit = buf.limit();
+        int pos = params.getType() == JP2_CFMT ? findCodestreamBox(buf) : 0;
+        if (pos < 0 || pos + 4 > limit || (buf.getShort(pos) & 0xFFFF) != 0xFF4F) {
+            return;
+        }
+        pos += 2;
+        boolean siz = false;
+        boolean cod = false;
+        while (pos + 4 <= limit && !(siz && cod)) {
+            int marker = buf.getShort(pos) & 0xFFFF;
+            int length = buf.getShort(pos + 2) & 0xFFFF;
+            if (marker == 0xFF90 || marker == 0xFF93 || length < 2) {
+                // Start of tile or start of data: end of the main header
+                break;
+            }
+            if (marker == 0xFF51 && pos + 38 <= limit) {
+                int width = buf.getInt(pos + 6) - buf.getInt(pos + 14);
+                int height = buf.getInt(pos + 10) - buf.getInt(pos + 18);
+                int tileWidth = buf.getInt(pos + 22);
+                int tileHeight = buf.getInt(pos + 26);
+                if (width > 0 && height > 0 && tileWidth > 0 && tileHeight > 0) {
+                    params.setTileWidth(Math.min(tileWidth, width));
+                    params.setTileHeight(Math.min(tileHeight, height));
+                    // Tile origin in the coordinates of the image
+                    params.setTileGridXOffset(buf.getInt(pos + 30) - buf.getInt(pos + 14));
+                    params.setTileGridYOffset(buf.getInt(pos + 34) - buf.getInt(pos + 18));
+                }
+                siz = true;
+            } else if (marker == 0xFF52 && pos + 10 <= limit) {
+                params.setDecompositionLevels(buf.get(pos + 9) & 0xFF);
+                cod = true;
+            }
+            pos += 2 + length;
+        }
+    }
+
+    private static int findCodestreamBox(ByteBuffer buf) {
+        int pos = 0;
+        int limit = buf.limit();
+        while (pos + 8 <= limit) {
+            long length = buf.getInt(pos) & 0xFFFFFFFFL;
+            int type = buf.getInt(pos + 4);
+            int header = 8;
+            if (length == 1 && pos + 16 <= limit) {
+                length = buf.getLong(pos + 8);
+                header = 16;
+            }
+            if (type == 0x6A703263) {
+                // jp2c box
+                return pos + header;
+            }
+            if (length < header || pos + length > limit) {
+                return -1;
+            }
+            pos += (int) length;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of resolution levels to discard (the image is decoded at 1/2^n of its size)
+     */
+    static int getReduceFactor(ImageReadParam param, int decompositionLevels) {
+        if (param == null) {
+            return 0;
+        }
+        int reduce = Math.min(Integer.numberOfTrailingZeros(param.getSourceXSubsampling()),
+            Integer.numberOfTrailingZeros(param.getSourceYSubsampling()));
+        return Math.max(0, Math.min(reduce, decompositionLevels));
+    }
+
     @Override
     public NativeImage buildImage(ImageInputStream iis) throws IOException {
         int type = getType(iis);
@@ -18,6 +18,7 @@ import org.weasis.core.api.gui.util.JMVUtils;
 public abstract class AbstractOp implements ImageOpNode {
 
     protected HashMap<String, Object> params;
+    private long paramVersion = 0L;
 
     public AbstractOp() {
         params = new HashMap<>();
@@ -31,6 +32,7 @@ public abstract class AbstractOp implements ImageOpNode {
     @Override
     public void clearParams() {
         params.clear();
+        paramVersion++;
     }
 
     @Override
@@ -53,7 +55,10 @@ public abstract class AbstractOp implements ImageOpNode {
     @Override
     public void setParam(String key, Object value) {
         if (key != null) {
-            params.put(key, value);
+            Object oldValue = params.put(key, value);
+            if (!key.startsWith("op.output") && !isSameValue(oldValue, value)) { //$NON-NLS-1$
+                paramVersion++;
+            }
         }
     }
 
@@ -61,13 +66,15 @@ public abstract class AbstractOp implements ImageOpNode {
     public void setAllParameters(Map<String, Object> map) {
         if (map != null) {
             params.putAll(map);
+            paramVersion++;
         }
     }
 
     @Override
     public void removeParam(String key) {
-        if (key != null) {
+        if (key != null && params.containsKey(key)) {
             params.remove(key);
+            paramVersion++;
         }
     }
 
@@ -78,7 +85,7 @@ public abstract class AbstractOp implements ImageOpNode {
 
     @Override
     public void setEnabled(boolean enabled) {
-        params.put(Param.ENABLE, enabled);
+        setParam(Param.ENABLE, enabled);
     }
 
     @Override
@@ -97,4 +104,31 @@ public abstract class AbstractOp implements ImageOpNode {
     public void handleImageOpEvent(ImageOpEvent event) {
     }
 
+    /**
+     * Indicates whether the output image depends only on the input image and on the parameters, which are replaced and
+     * never modified in place. Only these operations are skipped when their parameters are unchanged.
+     *
+     * @return false by default, the operation is processed each time
+     */
+    protected boolean isPure() {
+        return false;
+    }
+
+    @Override
+    public long getParamVersion() {
+        return isPure() ? paramVersion : -1L;
+    }
+
+    private static boolean isSameValue(Object oldValue, Object newValue) {
+        if (oldValue == newValue) {
+            return true;
+        }
+        // Compare by value only the immutable types, the other objects are compared by reference
+        if (oldValue instanceof String || oldValue instanceof Number || oldValue instanceof Boolean
+            || oldValue instanceof Enum) {
+            return oldValue.equals(newValue);
+        }
+        return false;
+    }
+
 }
@@ -46,6 +46,11 @@ public class AutoLevelsOp extends AbstractOp {
         return new AutoLevelsOp(this);
     }
 
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
@@ -39,6 +39,11 @@ public class BrightnessOp extends AbstractOp {
         return new BrightnessOp(this);
     }
 
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
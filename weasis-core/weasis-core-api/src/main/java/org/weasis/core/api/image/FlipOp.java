@@ -46,6 +46,11 @@ public class FlipOp extends AbstractOp {
         return new FlipOp(this);
     }
 
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
@@ -55,4 +55,14 @@ public interface ImageOpNode extends Copyable<ImageOpNode> {
 
     void handleImageOpEvent(ImageOpEvent event);
 
+    /**
+     * Returns a number which changes each time a parameter (except the output parameters) is modified. The operation
+     * is not processed again when this number and the input image are the same as the previous processing.
+     *
+     * @return the version of the parameters or a negative value when the operation must be always processed
+     */
+    default long getParamVersion() {
+        return -1L;
+    }
+
 }
@@ -47,6 +47,11 @@ public class RotationOp extends AbstractOp {
         return new RotationOp(this);
     }
 
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
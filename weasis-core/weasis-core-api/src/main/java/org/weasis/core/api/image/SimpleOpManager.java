@@ -14,6 +14,7 @@ import java.awt.image.RenderedImage;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 
@@ -33,7 +34,11 @@ public class SimpleOpManager implements OpManager {
 
     private final HashMap<String, ImageOpNode> nodes;
     private final List<ImageOpNode> operations;
+    // Version of the parameters of each node at the last processing
+    private final Map<ImageOpNode, Long> processedVersions;
     private String name;
+    private int executedNodes;
+    private int skippedNodes;
 
     public SimpleOpManager() {
         this(IMAGE_OP_NAME);
@@ -42,12 +47,14 @@ public class SimpleOpManager implements OpManager {
     public SimpleOpManager(String name) {
         this.operations = new ArrayList<>();
         this.nodes = new HashMap<>();
+        this.processedVersions = new HashMap<>();
         setName(name);
     }
 
     public SimpleOpManager(SimpleOpManager som) {
         this.operations = new ArrayList<>();
         this.nodes = new HashMap<>();
+        this.processedVersions = new HashMap<>();
         setName(som.name);
 
         som.nodes.entrySet().forEach(el -> {
@@ -112,6 +119,7 @@ public class SimpleOpManager implements OpManager {
 
     public void removeImageOperationAction(ImageOpNode action) {
         if (action != null) {
+            processedVersions.remove(action);
             boolean remove = operations.remove(action);
             if (nodes.remove(action.getName()) == null && remove) {
                 for (Entry<String, ImageOpNode> entry : nodes.entrySet()) {
@@ -129,6 +137,7 @@ public class SimpleOpManager implements OpManager {
         clearNodeParams();
         operations.clear();
         nodes.clear();
+        processedVersions.clear();
     }
 
     @Override
@@ -209,9 +218,17 @@ public class SimpleOpManager implements OpManager {
         }
     }
 
+    /**
+     * Processes the operations. An operation is executed only when its parameters or its input image have changed since
+     * the last processing, otherwise its previous output image is kept.
+     *
+     * @return the output image of the last operation
+     */
     @Override
     public RenderedImage process() {
         RenderedImage source = getFirstNodeInputImage();
+        int executed = 0;
+        int skipped = 0;
         if (source != null) {
             for (int i = 0; i < operations.size(); i++) {
                 ImageOpNode op = operations.get(i);
@@ -219,23 +236,70 @@ public class SimpleOpManager implements OpManager {
                     if (i > 0) {
                         op.setParam(Param.INPUT_IMG, operations.get(i - 1).getParam(Param.OUTPUT_IMG));
                     }
+                    if (!isProcessRequired(op)) {
+                        skipped++;
+                        continue;
+                    }
+                    executed++;
                     if (op.isEnabled()) {
                         op.process();
                     } else {
                         // Skip this operation
                         op.setParam(Param.OUTPUT_IMG, op.getParam(Param.INPUT_IMG));
                     }
+                    processedVersions.put(op, op.getParamVersion());
                 } catch (Exception e) {
                     LOGGER.error("Image {} failed: {}", op.getParam(Param.NAME), e); //$NON-NLS-1$
                     op.setParam(Param.OUTPUT_IMG, op.getParam(Param.INPUT_IMG));
+                    processedVersions.remove(op);
                 }
             }
         } else {
             clearNodeIOCache();
         }
+        executedNodes = executed;
+        skippedNodes = skipped;
+        LOGGER.trace("{}: {} operations executed, {} skipped", name, executed, skipped); //$NON-NLS-1$
         return getLastNodeOutputImage();
     }
 
+    private boolean isProcessRequired(ImageOpNode op) {
+        long version = op.getParamVersion();
+        if (version < 0 || op.getParam(Param.OUTPUT_IMG) == null) {
+            return true;
+        }
+        Long processedVersion = processedVersions.get(op);
+        return processedVersion == null || processedVersion != version;
+    }
+
+    @Override
+    public boolean needProcessing() {
+        if (OpManager.super.needProcessing()) {
+            return true;
+        }
+        for (ImageOpNode op : operations) {
+            if (isProcessRequired(op)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of operations executed by the last call of {@link #process()}
+     */
+    public int getExecutedNodes() {
+        return executedNodes;
+    }
+
+    /**
+     * @return the number of operations not executed by the last call of {@link #process()} because they were
+     *         unchanged
+     */
+    public int getSkippedNodes() {
+        return skippedNodes;
+    }
+
     @Override
     public Object getParamValue(String opName, String param) {
         if (opName != null && param != null) {
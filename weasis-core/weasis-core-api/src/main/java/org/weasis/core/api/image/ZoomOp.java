@@ -14,10 +14,12 @@ import java.awt.image.RenderedImage;
 import java.awt.image.renderable.ParameterBlock;
 
 import javax.media.jai.Interpolation;
+import javax.media.jai.InterpolationNearest;
 import javax.media.jai.JAI;
 
 import org.weasis.core.api.Messages;
 import org.weasis.core.api.gui.util.MathUtil;
+import org.weasis.core.api.image.util.ImagePyramid;
 import org.weasis.core.api.image.util.ImageToolkit;
 
 public class ZoomOp extends AbstractOp {
@@ -49,6 +51,8 @@ public class ZoomOp extends AbstractOp {
      */
     public static final String P_INTERPOLATION = "interpolation"; //$NON-NLS-1$
 
+    private ImagePyramid pyramid;
+
     public ZoomOp() {
         setName(OP_NAME);
     }
@@ -62,6 +66,11 @@ public class ZoomOp extends AbstractOp {
         return new ZoomOp(this);
     }
 
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
@@ -70,15 +79,31 @@ public class ZoomOp extends AbstractOp {
         Double zoomFactorY = (Double) params.get(P_RATIO_Y);
 
         if (zoomFactorX != null && zoomFactorY != null && (MathUtil.isDifferent(zoomFactorX, 1.0) || MathUtil.isDifferent(zoomFactorY, 1.0))) {
+            double ratioX = Math.abs(zoomFactorX);
+            double ratioY = Math.abs(zoomFactorY);
+            Interpolation interpolation = getInterpolation();
+            RenderedImage img = source;
+            if (!(interpolation instanceof InterpolationNearest)) {
+                // Scale from a reduced resolution when zooming out
+                if (pyramid == null || pyramid.getSource() != source) {
+                    pyramid = new ImagePyramid(source);
+                }
+                img = pyramid.getImage(Math.max(ratioX, ratioY));
+                ratioX *= (double) source.getWidth() / img.getWidth();
+                ratioY *= (double) source.getHeight() / img.getHeight();
+            }
+
             ParameterBlock pb = new ParameterBlock();
-            pb.addSource(source);
-            pb.add(Math.abs(zoomFactorX.floatValue()));
-            pb.add(Math.abs(zoomFactorY.floatValue()));
+            pb.addSource(img);
+            pb.add((float) ratioX);
+            pb.add((float) ratioY);
             pb.add(0.0f);
             pb.add(0.0f);
-            pb.add(getInterpolation());
+            pb.add(interpolation);
 
             result = JAI.create("scale", pb, ImageToolkit.NOCACHE_HINT); //$NON-NLS-1$
+        } else {
+            pyramid = null;
         }
 
         params.put(Param.OUTPUT_IMG, result);
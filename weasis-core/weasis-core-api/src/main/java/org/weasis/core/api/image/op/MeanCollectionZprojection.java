@@ -74,36 +74,79 @@ public class MeanCollectionZprojection {
                 return null;
             }
 
-            Rectangle region = img.getBounds();
+            final Rectangle region = img.getBounds();
             WritableRaster raster = LayoutUtil.createCompatibleRaster(img, region);
 
             SampleModel[] sampleModels = { img.getSampleModel() };
             int tagID = RasterAccessor.findCompatibleTag(sampleModels, raster.getSampleModel());
 
             RasterFormatTag dstTag = new RasterFormatTag(raster.getSampleModel(), tagID);
-            RasterAccessor dst = new RasterAccessor(raster, region, dstTag, null);
-
-            switch (dst.getDataType()) {
-                case DataBuffer.TYPE_BYTE:
-                    computeRectByte(dst, region, tagID);
-                    break;
-                case DataBuffer.TYPE_USHORT:
-                    computeRectUShort(dst, region, tagID);
-                    break;
-                case DataBuffer.TYPE_SHORT:
-                    computeRectShort(dst, region, tagID);
-                    break;
-                case DataBuffer.TYPE_INT:
-                    computeRectInt(dst, region, tagID);
-                    break;
-                case DataBuffer.TYPE_FLOAT:
-                    computeRectFloat(dst, region, tagID);
-                    break;
-                case DataBuffer.TYPE_DOUBLE:
-                    computeRectDouble(dst, region, tagID);
-                    break;
+            final RasterAccessor dst = new RasterAccessor(raster, region, dstTag, null);
+
+            final int dstWidth = dst.getWidth();
+            final double[][] accu = new double[dst.getNumBands()][dstWidth * dst.getHeight()];
+            int numbSrc = 0;
+            for (int i = 0; i < sources.size(); i++) {
+                final PlanarImage srcImg = sources.get(i).getImage(null, false);
+                if (srcImg == null) {
+                    continue;
+                }
+                numbSrc++;
+                final RasterFormatTag srcTag = new RasterFormatTag(srcImg.getSampleModel(), tagID);
+                // Accumulate in parallel the bands of rows by fetching only the required tiles of the source
+                ZprojectionBands.compute(region, taskMonitor, band -> {
+                    RasterAccessor src = new RasterAccessor(ZprojectionBands.getRaster(srcImg, band), band, srcTag,
+                        srcImg.getColorModel());
+                    int accuOffset = (band.y - region.y) * dstWidth;
+                    switch (dst.getDataType()) {
+                        case DataBuffer.TYPE_BYTE:
+                            accumulateByte(src, accu, accuOffset, dstWidth);
+                            break;
+                        case DataBuffer.TYPE_USHORT:
+                            accumulateUShort(src, accu, accuOffset, dstWidth);
+                            break;
+                        case DataBuffer.TYPE_SHORT:
+                            accumulateShort(src, accu, accuOffset, dstWidth);
+                            break;
+                        case DataBuffer.TYPE_INT:
+                            accumulateInt(src, accu, accuOffset, dstWidth);
+                            break;
+                        case DataBuffer.TYPE_FLOAT:
+                            accumulateFloat(src, accu, accuOffset, dstWidth);
+                            break;
+                        case DataBuffer.TYPE_DOUBLE:
+                            accumulateDouble(src, accu, accuOffset, dstWidth);
+                            break;
+                    }
+                });
+                incrementProgressBar(i);
             }
 
+            final int nbImages = numbSrc;
+            ZprojectionBands.compute(region, taskMonitor, band -> {
+                int dstRow = band.y - region.y;
+                switch (dst.getDataType()) {
+                    case DataBuffer.TYPE_BYTE:
+                        computeRectByte(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                    case DataBuffer.TYPE_USHORT:
+                        computeRectUShort(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                    case DataBuffer.TYPE_SHORT:
+                        computeRectShort(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                    case DataBuffer.TYPE_INT:
+                        computeRectInt(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                    case DataBuffer.TYPE_FLOAT:
+                        computeRectFloat(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                    case DataBuffer.TYPE_DOUBLE:
+                        computeRectDouble(dst, accu, dstRow, band.height, nbImages);
+                        break;
+                }
+            });
+
             dst.copyDataToRaster();
             BufferedImage buffer = new BufferedImage(img.getColorModel(), raster, false, null);
             return PlanarImage.wrapRenderedImage(buffer);
@@ -111,10 +154,176 @@ public class MeanCollectionZprojection {
         return null;
     }
 
-    private void computeRectByte(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void accumulateByte(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        byte[][] srcData = src.getByteDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            byte[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
+
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += (s[srcPixelOffset] & 0xff);
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void accumulateUShort(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        short[][] srcData = src.getShortDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            short[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
+
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += (s[srcPixelOffset] & 0xffff);
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void accumulateShort(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        short[][] srcData = src.getShortDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            short[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
+
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += s[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void accumulateInt(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        int[][] srcData = src.getIntDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            int[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
+
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += s[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void accumulateFloat(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        float[][] srcData = src.getFloatDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            float[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
 
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += s[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void accumulateDouble(RasterAccessor src, double[][] accu, int accuOffset, int accuWidth) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int srcBands = src.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        double[][] srcData = src.getDoubleDataArrays();
+
+        for (int b = 0; b < srcBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            double[] s = srcData[b];
+            double[] a = accu[b];
+
+            for (int h = 0; h < height; h++) {
+                int srcPixelOffset = srcLineOffset;
+                srcLineOffset += srcLineStride;
+                int accuIndex = accuOffset + h * accuWidth;
+
+                for (int w = 0; w < width; w++) {
+                    a[accuIndex + w] += s[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+            }
+        }
+    }
+
+    private static void computeRectByte(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -122,57 +331,26 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         byte[][] dstData = dst.getByteDataArrays();
 
-        int[][] accu = new int[dstBands][dstWidth * dstHeight];
-
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            byte[][] srcData = src.getByteDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                byte[] s = srcData[b];
-                int[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += (s[srcPixelOffset] & 0xff);
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             byte[] d = dstData[b];
-            int[] a = accu[b];
+            double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = (byte) (a[h * dstWidth + w] / (double) numbSrc + 0.5);
+                    d[dstPixelOffset] = (byte) Math.round(a[accuIndex + w] / numbSrc);
                     dstPixelOffset += dstPixelStride;
                 }
             }
         }
     }
 
-    private void computeRectUShort(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void computeRectUShort(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -180,56 +358,26 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         short[][] dstData = dst.getShortDataArrays();
 
-        float[][] accu = new float[dstBands][dstWidth * dstHeight];
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            short[][] srcData = src.getShortDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                short[] s = srcData[b];
-                float[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += (s[srcPixelOffset] & 0xffff);
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             short[] d = dstData[b];
-            float[] a = accu[b];
+            double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = (short) (a[h * dstWidth + w] / numbSrc + 0.5F);
+                    d[dstPixelOffset] = (short) Math.round(a[accuIndex + w] / numbSrc);
                     dstPixelOffset += dstPixelStride;
                 }
             }
         }
     }
 
-    private void computeRectShort(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void computeRectShort(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -237,56 +385,26 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         short[][] dstData = dst.getShortDataArrays();
 
-        float[][] accu = new float[dstBands][dstWidth * dstHeight];
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            short[][] srcData = src.getShortDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                short[] s = srcData[b];
-                float[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += s[srcPixelOffset];
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             short[] d = dstData[b];
-            float[] a = accu[b];
+            double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = (short) (a[h * dstWidth + w] / numbSrc + 0.5F);
+                    d[dstPixelOffset] = (short) Math.round(a[accuIndex + w] / numbSrc);
                     dstPixelOffset += dstPixelStride;
                 }
             }
         }
     }
 
-    private void computeRectInt(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void computeRectInt(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -294,56 +412,26 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         int[][] dstData = dst.getIntDataArrays();
 
-        double[][] accu = new double[dstBands][dstWidth * dstHeight];
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            int[][] srcData = src.getIntDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                int[] s = srcData[b];
-                double[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += s[srcPixelOffset];
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             int[] d = dstData[b];
             double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = (int) (a[h * dstWidth + w] / numbSrc + 0.5);
+                    d[dstPixelOffset] = (int) Math.round(a[accuIndex + w] / numbSrc);
                     dstPixelOffset += dstPixelStride;
                 }
             }
         }
     }
 
-    private void computeRectFloat(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void computeRectFloat(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -351,56 +439,26 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         float[][] dstData = dst.getFloatDataArrays();
 
-        double[][] accu = new double[dstBands][dstWidth * dstHeight];
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            float[][] srcData = src.getFloatDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                float[] s = srcData[b];
-                double[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += s[srcPixelOffset];
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             float[] d = dstData[b];
             double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = (float) (a[h * dstWidth + w] / numbSrc + 0.5);
+                    d[dstPixelOffset] = (float) (a[accuIndex + w] / numbSrc);
                     dstPixelOffset += dstPixelStride;
                 }
             }
         }
     }
 
-    private void computeRectDouble(RasterAccessor dst, Rectangle region, int tagID) {
+    private static void computeRectDouble(RasterAccessor dst, double[][] accu, int dstRow, int height, int numbSrc) {
         int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -408,47 +466,18 @@ public class MeanCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         double[][] dstData = dst.getDoubleDataArrays();
 
-        double[][] accu = new double[dstBands][dstWidth * dstHeight];
-        int numbSrc = sources.size();
-        for (int i = 0; i < numbSrc; i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            double[][] srcData = src.getDoubleDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int srcLineOffset = srcBandOffsets[b];
-                double[] s = srcData[b];
-                double[] a = accu[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int srcPixelOffset = srcLineOffset;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        a[h * dstWidth + w] += s[srcPixelOffset];
-                        srcPixelOffset += srcPixelStride;
-                    }
-                }
-            }
-            incrementProgressBar(i);
-        }
-
         for (int b = 0; b < dstBands; b++) {
-            int dstLineOffset = dstBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
             double[] d = dstData[b];
             double[] a = accu[b];
 
-            for (int h = 0; h < dstHeight; h++) {
+            for (int h = 0; h < height; h++) {
                 int dstPixelOffset = dstLineOffset;
                 dstLineOffset += dstLineStride;
+                int accuIndex = (dstRow + h) * dstWidth;
 
                 for (int w = 0; w < dstWidth; w++) {
-                    d[dstPixelOffset] = a[h * dstWidth + w] / numbSrc + 0.5;
+                    d[dstPixelOffset] = a[accuIndex + w] / numbSrc;
                     dstPixelOffset += dstPixelStride;
                 }
             }
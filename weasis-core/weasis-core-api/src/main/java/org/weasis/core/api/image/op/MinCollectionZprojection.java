@@ -74,34 +74,72 @@ public class MinCollectionZprojection {
                 return null;
             }
 
-            Rectangle region = img.getBounds();
+            final Rectangle region = img.getBounds();
             WritableRaster raster = LayoutUtil.createCompatibleRaster(img, region);
 
             SampleModel[] sampleModels = { img.getSampleModel() };
             int tagID = RasterAccessor.findCompatibleTag(sampleModels, raster.getSampleModel());
 
             RasterFormatTag dstTag = new RasterFormatTag(raster.getSampleModel(), tagID);
-            RasterAccessor dst = new RasterAccessor(raster, region, dstTag, null);
+            final RasterAccessor dst = new RasterAccessor(raster, region, dstTag, null);
 
+            // Initialize with the highest value of the data type
             switch (dst.getDataType()) {
                 case DataBuffer.TYPE_BYTE:
-                    computeRectByte(dst, region, tagID);
+                    ZprojectionBands.fill(dst, 255);
                     break;
                 case DataBuffer.TYPE_USHORT:
-                    computeRectUShort(dst, region, tagID);
+                    ZprojectionBands.fill(dst, 65535);
                     break;
                 case DataBuffer.TYPE_SHORT:
-                    computeRectShort(dst, region, tagID);
+                    ZprojectionBands.fill(dst, Short.MAX_VALUE);
                     break;
                 case DataBuffer.TYPE_INT:
-                    computeRectInt(dst, region, tagID);
+                    ZprojectionBands.fill(dst, Integer.MAX_VALUE);
                     break;
                 case DataBuffer.TYPE_FLOAT:
-                    computeRectFloat(dst, region, tagID);
+                    ZprojectionBands.fill(dst, Float.MAX_VALUE);
                     break;
                 case DataBuffer.TYPE_DOUBLE:
-                    computeRectDouble(dst, region, tagID);
+                    ZprojectionBands.fill(dst, Double.MAX_VALUE);
                     break;
+                default:
+                    break;
+            }
+
+            for (int i = 0; i < sources.size(); i++) {
+                final PlanarImage srcImg = sources.get(i).getImage(null, false);
+                if (srcImg == null) {
+                    continue;
+                }
+                final RasterFormatTag srcTag = new RasterFormatTag(srcImg.getSampleModel(), tagID);
+                // Compute in parallel the bands of rows by fetching only the required tiles of the source
+                ZprojectionBands.compute(region, taskMonitor, band -> {
+                    RasterAccessor src = new RasterAccessor(ZprojectionBands.getRaster(srcImg, band), band, srcTag,
+                        srcImg.getColorModel());
+                    int dstRow = band.y - region.y;
+                    switch (dst.getDataType()) {
+                        case DataBuffer.TYPE_BYTE:
+                            computeRectByte(dst, src, dstRow);
+                            break;
+                        case DataBuffer.TYPE_USHORT:
+                            computeRectUShort(dst, src, dstRow);
+                            break;
+                        case DataBuffer.TYPE_SHORT:
+                            computeRectShort(dst, src, dstRow);
+                            break;
+                        case DataBuffer.TYPE_INT:
+                            computeRectInt(dst, src, dstRow);
+                            break;
+                        case DataBuffer.TYPE_FLOAT:
+                            computeRectFloat(dst, src, dstRow);
+                            break;
+                        case DataBuffer.TYPE_DOUBLE:
+                            computeRectDouble(dst, src, dstRow);
+                            break;
+                    }
+                });
+                incrementProgressBar(i);
             }
 
             dst.copyDataToRaster();
@@ -111,10 +149,9 @@ public class MinCollectionZprojection {
         return null;
     }
 
-    private void computeRectByte(RasterAccessor dst, Rectangle region, int tagID) {
-
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectByte(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -122,53 +159,39 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         byte[][] dstData = dst.getByteDataArrays();
 
-        final byte maxVal = (byte) 255;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        byte[][] srcData = src.getByteDataArrays();
+
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
+
+            byte[] d = dstData[b];
+            byte[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
 
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            byte[][] srcData = src.getByteDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                byte[] d = dstData[b];
-                byte[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        if ((s[srcPixelOffset] & 0xff) < (d[dstPixelOffset] & 0xff)) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
+
+                for (int w = 0; w < width; w++) {
+                    if ((s[srcPixelOffset] & 0xff) < (d[dstPixelOffset] & 0xff)) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 
-    private void computeRectUShort(RasterAccessor dst, Rectangle region, int tagID) {
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectUShort(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -176,54 +199,40 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         short[][] dstData = dst.getShortDataArrays();
 
-        final short maxVal = (short) 65535;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            short[][] srcData = src.getShortDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                short[] d = dstData[b];
-                short[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        // Get unsigned value to compare
-                        if ((s[srcPixelOffset] & 0xffff) < (d[dstPixelOffset] & 0xffff)) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        short[][] srcData = src.getShortDataArrays();
+
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
+
+            short[] d = dstData[b];
+            short[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
+
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
+
+                for (int w = 0; w < width; w++) {
+                    // Get unsigned value to compare
+                    if ((s[srcPixelOffset] & 0xffff) < (d[dstPixelOffset] & 0xffff)) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 
-    private void computeRectShort(RasterAccessor dst, Rectangle region, int tagID) {
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectShort(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -231,53 +240,39 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         short[][] dstData = dst.getShortDataArrays();
 
-        final short maxVal = Short.MAX_VALUE;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        short[][] srcData = src.getShortDataArrays();
+
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
 
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            short[][] srcData = src.getShortDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                short[] d = dstData[b];
-                short[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        if (s[srcPixelOffset] < d[dstPixelOffset]) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+            short[] d = dstData[b];
+            short[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
+
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
+
+                for (int w = 0; w < width; w++) {
+                    if (s[srcPixelOffset] < d[dstPixelOffset]) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 
-    private void computeRectInt(RasterAccessor dst, Rectangle region, int tagID) {
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectInt(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -285,53 +280,39 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         int[][] dstData = dst.getIntDataArrays();
 
-        final int maxVal = Integer.MAX_VALUE;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        int[][] srcData = src.getIntDataArrays();
+
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
 
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            int[][] srcData = src.getIntDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                int[] d = dstData[b];
-                int[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        if (s[srcPixelOffset] < d[dstPixelOffset]) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+            int[] d = dstData[b];
+            int[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
+
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
+
+                for (int w = 0; w < width; w++) {
+                    if (s[srcPixelOffset] < d[dstPixelOffset]) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 
-    private void computeRectFloat(RasterAccessor dst, Rectangle region, int tagID) {
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectFloat(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -339,53 +320,39 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         float[][] dstData = dst.getFloatDataArrays();
 
-        final float maxVal = Float.MAX_VALUE;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        float[][] srcData = src.getFloatDataArrays();
 
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            float[][] srcData = src.getFloatDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                float[] d = dstData[b];
-                float[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        if (s[srcPixelOffset] < d[dstPixelOffset]) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
+
+            float[] d = dstData[b];
+            float[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
+
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
+
+                for (int w = 0; w < width; w++) {
+                    if (s[srcPixelOffset] < d[dstPixelOffset]) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 
-    private void computeRectDouble(RasterAccessor dst, Rectangle region, int tagID) {
-        int dstWidth = dst.getWidth();
-        int dstHeight = dst.getHeight();
+    private static void computeRectDouble(RasterAccessor dst, RasterAccessor src, int dstRow) {
+        int width = src.getWidth();
+        int height = src.getHeight();
         int dstBands = dst.getNumBands();
 
         int dstLineStride = dst.getScanlineStride();
@@ -393,47 +360,33 @@ public class MinCollectionZprojection {
         int[] dstBandOffsets = dst.getBandOffsets();
         double[][] dstData = dst.getDoubleDataArrays();
 
-        final double maxVal = Double.MAX_VALUE;
-        for (int i = 0; i < dstData.length; i++) {
-            for (int j = 0; j < dstData[i].length; j++) {
-                dstData[i][j] = maxVal;
-            }
-        }
+        int srcLineStride = src.getScanlineStride();
+        int srcPixelStride = src.getPixelStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+        double[][] srcData = src.getDoubleDataArrays();
+
+        for (int b = 0; b < dstBands; b++) {
+            int dstLineOffset = dstBandOffsets[b] + dstRow * dstLineStride;
+            int srcLineOffset = srcBandOffsets[b];
+
+            double[] d = dstData[b];
+            double[] s = srcData[b];
+
+            for (int h = 0; h < height; h++) {
+                int dstPixelOffset = dstLineOffset;
+                int srcPixelOffset = srcLineOffset;
+
+                dstLineOffset += dstLineStride;
+                srcLineOffset += srcLineStride;
 
-        for (int i = 0; i < sources.size(); i++) {
-            ImageElement imgElement = sources.get(i);
-            PlanarImage img = imgElement.getImage(null, false);
-            RasterFormatTag srcTag = new RasterFormatTag(img.getSampleModel(), tagID);
-            RasterAccessor src = new RasterAccessor(img.getData(), region, srcTag, img.getColorModel());
-            int srcLineStride = src.getScanlineStride();
-            int srcPixelStride = src.getPixelStride();
-            int[] srcBandOffsets = src.getBandOffsets();
-            double[][] srcData = src.getDoubleDataArrays();
-
-            for (int b = 0; b < dstBands; b++) {
-                int dstLineOffset = dstBandOffsets[b];
-                int srcLineOffset = srcBandOffsets[b];
-
-                double[] d = dstData[b];
-                double[] s = srcData[b];
-
-                for (int h = 0; h < dstHeight; h++) {
-                    int dstPixelOffset = dstLineOffset;
-                    int srcPixelOffset = srcLineOffset;
-
-                    dstLineOffset += dstLineStride;
-                    srcLineOffset += srcLineStride;
-
-                    for (int w = 0; w < dstWidth; w++) {
-                        if (s[srcPixelOffset] < d[dstPixelOffset]) {
-                            d[dstPixelOffset] = s[srcPixelOffset];
-                        }
-                        dstPixelOffset += dstPixelStride;
-                        srcPixelOffset += srcPixelStride;
+                for (int w = 0; w < width; w++) {
+                    if (s[srcPixelOffset] < d[dstPixelOffset]) {
+                        d[dstPixelOffset] = s[srcPixelOffset];
                     }
+                    dstPixelOffset += dstPixelStride;
+                    srcPixelOffset += srcPixelStride;
                 }
             }
-            incrementProgressBar(i);
         }
     }
 }
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.op;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import javax.media.jai.PlanarImage;
+
+import org.weasis.core.api.gui.task.TaskInterruptionException;
+import org.weasis.core.api.gui.task.TaskMonitor;
+import org.weasis.core.api.media.data.ImageElement;
+
+/**
+ * Computes the thick slabs (MIP, MinIP, MeanIP) of a full stack in one pass. The window of source images slides along
+ * the stack, each source image is read only once and each slab costs a constant number of operations per pixel:
+ * <ul>
+ * <li>MEAN keeps a running sum (the incoming image is added and the outgoing image is subtracted).</li>
+ * <li>MIN and MAX use a queue made of two stacks: the incoming images are aggregated on one side and the suffix
+ * aggregates are computed on the other side when the oldest image must be removed (van Herk/Gil-Werman
+ * decomposition).</li>
+ * </ul>
+ * The slab of the index <code>i</code> contains the source images from <code>i - extend</code> to
+ * <code>i + extend</code> (limited to the bounds of the stack).
+ */
+public class SlabZprojection {
+
+    public enum Mode {
+        MIN, MAX, MEAN
+    }
+
+    @FunctionalInterface
+    public interface SlabConsumer {
+        /**
+         * @param index
+         *            the index of the slab (the central source image)
+         * @param first
+         *            the index of the first source image of the slab
+         * @param last
+         *            the index of the last source image of the slab
+         * @param raster
+         *            the result of the projection, compatible with the source images
+         */
+        void accept(int index, int first, int last, WritableRaster raster);
+    }
+
+    private final Mode mode;
+    private final int extend;
+    private final TaskMonitor taskMonitor;
+
+    public SlabZprojection(Mode mode, int extend, TaskMonitor taskMonitor) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode cannot be null!"); //$NON-NLS-1$
+        }
+        if (extend < 0) {
+            throw new IllegalArgumentException("Extend cannot be negative!"); //$NON-NLS-1$
+        }
+        this.mode = mode;
+        this.extend = extend;
+        this.taskMonitor = taskMonitor;
+    }
+
+    /**
+     * Computes the slabs from firstIndex to lastIndex (inclusive) of the stack of images.
+     */
+    public void compute(List<? extends ImageElement> stack, int firstIndex, int lastIndex, SlabConsumer consumer) {
+        compute(stack.size(), i -> {
+            PlanarImage img = stack.get(i).getImage(null, false);
+            return img == null ? null : img.getData();
+        }, firstIndex, lastIndex, consumer);
+    }
+
+    /**
+     * Computes the slabs from firstIndex to lastIndex (inclusive) of a stack of rasters. The rasters must have the
+     * same size and the same sample model.
+     *
+     * @param size
+     *            the number of images in the stack
+     * @param sources
+     *            returns the raster of an index of the stack, called only once by index and in ascending order
+     */
+    public void compute(int size, IntFunction<Raster> sources, int firstIndex, int lastIndex, SlabConsumer consumer) {
+        int start = Math.max(0, firstIndex);
+        int end = Math.min(size - 1, lastIndex);
+        if (start > end || consumer == null) {
+            return;
+        }
+
+        Window window = null;
+        WritableRaster model = null;
+        int nextSource = Math.max(0, start - extend);
+        int windowStart = nextSource;
+        for (int index = start; index <= end; index++) {
+            int first = Math.max(0, index - extend);
+            int last = Math.min(size - 1, index + extend);
+
+            while (nextSource <= last) {
+                checkCanceled();
+                Raster raster = sources.apply(nextSource);
+                if (raster == null) {
+                    return;
+                }
+                if (window == null) {
+                    model = raster.createCompatibleWritableRaster(raster.getWidth(), raster.getHeight());
+                    window = buildWindow(raster);
+                }
+                window.push(raster);
+                nextSource++;
+            }
+            while (windowStart < first) {
+                window.pop();
+                windowStart++;
+            }
+
+            WritableRaster dst = model.createCompatibleWritableRaster();
+            window.writeResult(dst);
+            consumer.accept(index, first, last, dst);
+        }
+    }
+
+    private void checkCanceled() {
+        if (taskMonitor != null && taskMonitor.isCanceled()) {
+            throw new TaskInterruptionException("Operation from " + this.getClass().getName() + " has been canceled"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private Window buildWindow(Raster raster) {
+        int length = raster.getWidth() * raster.getHeight() * raster.getNumBands();
+        int dataType = raster.getSampleModel().getDataType();
+        boolean floating = dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE;
+        PixelArray ops = floating ? new DoublePixelArray(length) : new IntPixelArray(length);
+        return mode == Mode.MEAN ? new MeanWindow(ops, floating) : new MinMaxWindow(ops, mode == Mode.MAX);
+    }
+
+    private interface Window {
+        void push(Raster raster);
+
+        void pop();
+
+        void writeResult(WritableRaster raster);
+    }
+
+    private static class MeanWindow implements Window {
+        private final PixelArray ops;
+        private final boolean floating;
+        private final double[] sum;
+        private final double[] mean;
+        private final Deque<Object> values = new ArrayDeque<>();
+        private final List<Object> pool = new ArrayList<>();
+
+        MeanWindow(PixelArray ops, boolean floating) {
+            this.ops = ops;
+            this.floating = floating;
+            this.sum = new double[ops.length()];
+            this.mean = new double[ops.length()];
+        }
+
+        @Override
+        public void push(Raster raster) {
+            Object buf = ops.read(raster, pool.isEmpty() ? null : pool.remove(pool.size() - 1));
+            ops.add(sum, buf, 1.0);
+            values.addLast(buf);
+        }
+
+        @Override
+        public void pop() {
+            Object buf = values.pollFirst();
+            if (buf != null) {
+                ops.add(sum, buf, -1.0);
+                pool.add(buf);
+            }
+        }
+
+        @Override
+        public void writeResult(WritableRaster raster) {
+            int count = values.size();
+            for (int i = 0; i < mean.length; i++) {
+                double val = sum[i] / count;
+                mean[i] = floating ? val : Math.round(val);
+            }
+            raster.setPixels(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(), mean);
+        }
+    }
+
+    private static class MinMaxWindow implements Window {
+        private final PixelArray ops;
+        private final boolean max;
+        // Raw values of the recent images (incoming side)
+        private final List<Object> back = new ArrayList<>();
+        // Suffix aggregates of the oldest images, the first element is the oldest image (outgoing side)
+        private final Deque<Object> front = new ArrayDeque<>();
+        private final List<Object> pool = new ArrayList<>();
+        private Object backAggregate;
+        private Object result;
+
+        MinMaxWindow(PixelArray ops, boolean max) {
+            this.ops = ops;
+            this.max = max;
+        }
+
+        private Object getBuffer() {
+            return pool.isEmpty() ? ops.create() : pool.remove(pool.size() - 1);
+        }
+
+        @Override
+        public void push(Raster raster) {
+            Object buf = ops.read(raster, getBuffer());
+            if (back.isEmpty()) {
+                if (backAggregate == null) {
+                    backAggregate = ops.create();
+                }
+                System.arraycopy(buf, 0, backAggregate, 0, ops.length());
+            } else {
+                ops.combine(backAggregate, buf, backAggregate, max);
+            }
+            back.add(buf);
+        }
+
+        @Override
+        public void pop() {
+            if (front.isEmpty()) {
+                // Transfer the incoming side and compute in place the suffix aggregates
+                Object next = null;
+                for (int i = back.size() - 1; i >= 0; i--) {
+                    Object buf = back.get(i);
+                    if (next != null) {
+                        ops.combine(buf, next, buf, max);
+                    }
+                    front.addFirst(buf);
+                    next = buf;
+                }
+                back.clear();
+            }
+            Object buf = front.pollFirst();
+            if (buf != null) {
+                pool.add(buf);
+            }
+        }
+
+        @Override
+        public void writeResult(WritableRaster raster) {
+            Object val;
+            if (front.isEmpty()) {
+                val = backAggregate;
+            } else if (back.isEmpty()) {
+                val = front.peekFirst();
+            } else {
+                if (result == null) {
+                    result = ops.create();
+                }
+                ops.combine(front.peekFirst(), backAggregate, result, max);
+                val = result;
+            }
+            ops.write(raster, val);
+        }
+    }
+
+    private interface PixelArray {
+        int length();
+
+        Object create();
+
+        Object read(Raster raster, Object buffer);
+
+        void write(WritableRaster raster, Object buffer);
+
+        void combine(Object a, Object b, Object dst, boolean max);
+
+        void add(double[] sum, Object buffer, double sign);
+    }
+
+    private static class IntPixelArray implements PixelArray {
+        private final int length;
+
+        IntPixelArray(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public Object create() {
+            return new int[length];
+        }
+
+        @Override
+        public Object read(Raster raster, Object buffer) {
+            return raster.getPixels(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(),
+                (int[]) buffer);
+        }
+
+        @Override
+        public void write(WritableRaster raster, Object buffer) {
+            raster.setPixels(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(), (int[]) buffer);
+        }
+
+        @Override
+        public void combine(Object a, Object b, Object dst, boolean max) {
+            int[] s1 = (int[]) a;
+            int[] s2 = (int[]) b;
+            int[] d = (int[]) dst;
+            if (max) {
+                for (int i = 0; i < length; i++) {
+                    d[i] = s1[i] >= s2[i] ? s1[i] : s2[i];
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    d[i] = s1[i] <= s2[i] ? s1[i] : s2[i];
+                }
+            }
+        }
+
+        @Override
+        public void add(double[] sum, Object buffer, double sign) {
+            int[] s = (int[]) buffer;
+            for (int i = 0; i < length; i++) {
+                sum[i] += sign * s[i];
+            }
+        }
+    }
+
+    private static class DoublePixelArray implements PixelArray {
+        private final int length;
+
+        DoublePixelArray(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public Object create() {
+            return new double[length];
+        }
+
+        @Override
+        public Object read(Raster raster, Object buffer) {
+            return raster.getPixels(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(),
+                (double[]) buffer);
+        }
+
+        @Override
+        public void write(WritableRaster raster, Object buffer) {
+            raster.setPixels(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(),
+                (double[]) buffer);
+        }
+
+        @Override
+        public void combine(Object a, Object b, Object dst, boolean max) {
+            double[] s1 = (double[]) a;
+            double[] s2 = (double[]) b;
+            double[] d = (double[]) dst;
+            if (max) {
+                for (int i = 0; i < length; i++) {
+                    d[i] = s1[i] >= s2[i] ? s1[i] : s2[i];
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    d[i] = s1[i] <= s2[i] ? s1[i] : s2[i];
+                }
+            }
+        }
+
+        @Override
+        public void add(double[] sum, Object buffer, double sign) {
+            double[] s = (double[]) buffer;
+            for (int i = 0; i < length; i++) {
+                sum[i] += sign * s[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.op;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RasterAccessor;
+
+import org.weasis.core.api.gui.task.TaskInterruptionException;
+import org.weasis.core.api.gui.task.TaskMonitor;
+
+/**
+ * Splits the destination of the Z-projections into bands of rows computed in parallel in a fork/join pool.
+ */
+final class ZprojectionBands {
+
+    private static final int MIN_ROWS = 16;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    @FunctionalInterface
+    interface BandTask {
+        /**
+         * @param band
+         *            the band of rows to compute (same coordinates as the region)
+         */
+        void compute(Rectangle band);
+    }
+
+    private ZprojectionBands() {
+    }
+
+    /**
+     * Computes the task on all the bands of the region and waits for the end of the computation.
+     *
+     * @throws TaskInterruptionException
+     *             when the task monitor is canceled
+     */
+    static void compute(Rectangle region, TaskMonitor taskMonitor, BandTask task) {
+        if (region.isEmpty()) {
+            return;
+        }
+        // A few bands by thread to balance the load
+        int rows = Math.max(MIN_ROWS, region.height / (POOL.getParallelism() * 4));
+        POOL.invoke(new BandAction(region, rows, taskMonitor, task));
+    }
+
+    /**
+     * Returns a raster containing the rectangle: the tile itself when the rectangle is inside one tile, otherwise a
+     * copy of only the intersecting tiles.
+     */
+    static Raster getRaster(PlanarImage img, Rectangle rect) {
+        int minTileX = img.XToTileX(rect.x);
+        int minTileY = img.YToTileY(rect.y);
+        int maxTileX = img.XToTileX(rect.x + rect.width - 1);
+        int maxTileY = img.YToTileY(rect.y + rect.height - 1);
+        if (minTileX == maxTileX && minTileY == maxTileY) {
+            return img.getTile(minTileX, minTileY);
+        }
+        return img.getData(rect);
+    }
+
+    static void fill(RasterAccessor dst, double value) {
+        switch (dst.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                for (byte[] d : dst.getByteDataArrays()) {
+                    Arrays.fill(d, (byte) value);
+                }
+                break;
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                for (short[] d : dst.getShortDataArrays()) {
+                    Arrays.fill(d, (short) value);
+                }
+                break;
+            case DataBuffer.TYPE_INT:
+                for (int[] d : dst.getIntDataArrays()) {
+                    Arrays.fill(d, (int) value);
+                }
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                for (float[] d : dst.getFloatDataArrays()) {
+                    Arrays.fill(d, (float) value);
+                }
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                for (double[] d : dst.getDoubleDataArrays()) {
+                    Arrays.fill(d, value);
+                }
+                break;
+        }
+    }
+
+    private static class BandAction extends RecursiveAction {
+        private static final long serialVersionUID = -4218366124757216434L;
+
+        private final Rectangle band;
+        private final int rows;
+        private final transient TaskMonitor taskMonitor;
+        private final transient BandTask task;
+
+        BandAction(Rectangle band, int rows, TaskMonitor taskMonitor, BandTask task) {
+            this.band = band;
+            this.rows = rows;
+            this.taskMonitor = taskMonitor;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (taskMonitor != null && taskMonitor.isCanceled()) {
+                throw new TaskInterruptionException("Z-projection has been canceled"); //$NON-NLS-1$
+            }
+            if (band.height <= rows) {
+                task.compute(band);
+            } else {
+                int half = band.height / 2;
+                invokeAll(new BandAction(new Rectangle(band.x, band.y, band.width, half), rows, taskMonitor, task),
+                    new BandAction(new Rectangle(band.x, band.y + half, band.width, band.height - half), rows,
+                        taskMonitor, task));
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.media.jai.operator.SubsampleAverageDescriptor;
+
+import com.sun.media.jai.util.ImageUtil;
+
+/**
+ * Reduced resolutions of an image. Each level has the half size of the previous one and is computed by averaging the
+ * pixels of the previous level. The levels are built when required and their tiles are kept in the JAI tile cache, so
+ * a scale operation with a small ratio reads a reduced level instead of all the pixels of the source image.
+ */
+public class ImagePyramid {
+
+    /**
+     * Minimum size (width and height) of a reduced level.
+     */
+    public static final int MIN_LEVEL_SIZE = 64;
+
+    private final RenderedImage source;
+    // Index 0 is the first reduced level (half size)
+    private final List<RenderedImage> levels = new ArrayList<>();
+
+    public ImagePyramid(RenderedImage source) {
+        this.source = source;
+    }
+
+    public RenderedImage getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the smallest level of the pyramid which has a resolution greater than or equal to the ratio.
+     *
+     * @param ratio
+     *            the scale ratio from the source image
+     * @return the reduced image or the source image when the ratio is greater than 0.5 or when the image cannot be
+     *         reduced
+     */
+    public synchronized RenderedImage getImage(double ratio) {
+        int level = getLevel(ratio);
+        RenderedImage img = source;
+        if (level == 0 || !isReducible(source)) {
+            return img;
+        }
+        for (int i = 0; i < level; i++) {
+            if (i < levels.size()) {
+                img = levels.get(i);
+            } else {
+                if (img.getWidth() / 2 < MIN_LEVEL_SIZE || img.getHeight() / 2 < MIN_LEVEL_SIZE) {
+                    break;
+                }
+                img = SubsampleAverageDescriptor.create(img, 0.5, 0.5, LayoutUtil.createTiledLayoutHints(img));
+                levels.add(img);
+            }
+        }
+        return img;
+    }
+
+    /**
+     * @return the level k for which 2^-k is the smallest scale greater than or equal to the ratio
+     */
+    public static int getLevel(double ratio) {
+        int level = 0;
+        double scale = 0.5;
+        while (scale >= ratio && level < 16) {
+            level++;
+            scale /= 2.0;
+        }
+        return level;
+    }
+
+    private static boolean isReducible(RenderedImage img) {
+        // Averaging is not possible with the index of a palette or with binary data
+        return !(img.getColorModel() instanceof IndexColorModel) && !ImageUtil.isBinary(img.getSampleModel());
+    }
+}
@@ -13,6 +13,7 @@ package org.weasis.core.api.image.util;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
@@ -74,6 +75,26 @@ public class ImageToolkit {
         return null;
     }
 
+    /**
+     * Returns the approximate memory size (in bytes) of the raster data of the image.
+     */
+    public static long getMemorySize(RenderedImage img) {
+        if (img == null) {
+            return 0L;
+        }
+        SampleModel sm = img.getSampleModel();
+        long bitsPerPixel;
+        if (sm instanceof ComponentSampleModel) {
+            bitsPerPixel = (long) sm.getNumBands() * DataBuffer.getDataTypeSize(sm.getDataType());
+        } else {
+            bitsPerPixel = 0L;
+            for (int size : sm.getSampleSize()) {
+                bitsPerPixel += size;
+            }
+        }
+        return ((long) img.getWidth() * img.getHeight() * bitsPerPixel + 7L) / 8L;
+    }
+
     public static BufferedImage convertRenderedImage(RenderedImage img) {
         if (img instanceof BufferedImage) {
             return (BufferedImage) img;
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import java.awt.Rectangle;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Computes the statistics of the pixel values (min, max and value counts) in a single pass by reading directly the
+ * primitive arrays of the data buffers. The large images are split into bands of rows computed in parallel.
+ */
+public final class PixelStatistics {
+
+    // Minimum number of pixels for computing an image in parallel
+    private static final long PARALLEL_THRESHOLD = 512L * 512L;
+    private static final int MIN_ROWS = 32;
+
+    private PixelStatistics() {
+    }
+
+    /**
+     * Returns the min and max values of all the bands.
+     *
+     * @param img
+     *            the image
+     * @param excludedMin
+     *            the minimum of the range of values to exclude (inclusive), null for no exclusion
+     * @param excludedMax
+     *            the maximum of the range of values to exclude (inclusive), null for no exclusion
+     * @return the array {min, max} or null when there is no value
+     */
+    public static double[] getMinMax(RenderedImage img, Double excludedMin, Double excludedMax) {
+        if (img == null) {
+            return null;
+        }
+        final boolean exclude = excludedMin != null && excludedMax != null;
+        final double exMin = exclude ? excludedMin : 0.0;
+        final double exMax = exclude ? excludedMax : 0.0;
+        final int numBands = img.getSampleModel().getNumBands();
+
+        double[] res = getStream(getRegions(img)).map(r -> {
+            double[] minMax = { Double.MAX_VALUE, -Double.MAX_VALUE };
+            for (int b = 0; b < numBands; b++) {
+                minMax(r, b, exclude, exMin, exMax, minMax);
+            }
+            return minMax;
+        }).reduce((a, b) -> new double[] { Math.min(a[0], b[0]), Math.max(a[1], b[1]) }).orElse(null);
+
+        if (res == null || res[0] > res[1]) {
+            return null;
+        }
+        return res;
+    }
+
+    /**
+     * Counts the occurrences of the integer values of the first band. The values out of the range are counted in the
+     * first or the last element.
+     *
+     * @param img
+     *            the image
+     * @param offset
+     *            the value of the first element
+     * @param length
+     *            the number of values
+     * @return the counts, the element i contains the number of pixels having the value <code>offset + i</code>
+     */
+    public static int[] getValueCounts(RenderedImage img, final int offset, final int length) {
+        if (img == null || length < 1) {
+            return null;
+        }
+        return getStream(getRegions(img)).map(r -> {
+            int[] counts = new int[length];
+            count(r, offset, counts);
+            return counts;
+        }).reduce((a, b) -> {
+            for (int i = 0; i < length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }).orElse(new int[length]);
+    }
+
+    private static Stream<Region> getStream(List<Region> regions) {
+        return regions.size() > 1 ? regions.parallelStream() : regions.stream();
+    }
+
+    private static List<Region> getRegions(RenderedImage img) {
+        Rectangle bounds = new Rectangle(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight());
+        int rows = Integer.MAX_VALUE;
+        if ((long) img.getWidth() * img.getHeight() >= PARALLEL_THRESHOLD) {
+            // A few bands by thread to balance the load
+            rows = Math.max(MIN_ROWS, img.getHeight() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        }
+
+        List<Region> regions = new ArrayList<>();
+        // The tiles are computed sequentially, only the statistics are computed in parallel
+        for (int ty = img.getMinTileY(); ty < img.getMinTileY() + img.getNumYTiles(); ty++) {
+            for (int tx = img.getMinTileX(); tx < img.getMinTileX() + img.getNumXTiles(); tx++) {
+                Raster tile = img.getTile(tx, ty);
+                Rectangle rect = tile.getBounds().intersection(bounds);
+                if (rect.isEmpty()) {
+                    continue;
+                }
+                int end = rect.y + rect.height;
+                for (int y = rect.y; y < end;) {
+                    int height = Math.min(rows, end - y);
+                    regions.add(new Region(tile, rect.x, y, rect.width, height));
+                    y += height;
+                }
+            }
+        }
+        return regions;
+    }
+
+    private static boolean isDirectAccess(Raster raster) {
+        DataBuffer db = raster.getDataBuffer();
+        return raster.getSampleModel() instanceof ComponentSampleModel
+            && (db instanceof DataBufferByte || db instanceof DataBufferUShort || db instanceof DataBufferShort
+                || db instanceof DataBufferInt || db instanceof DataBufferFloat || db instanceof DataBufferDouble);
+    }
+
+    private static void minMax(Region r, int band, boolean exclude, double exMin, double exMax, double[] res) {
+        Raster raster = r.raster;
+        if (!isDirectAccess(raster)) {
+            double[] line = new double[r.width];
+            for (int y = r.y; y < r.y + r.height; y++) {
+                raster.getSamples(r.x, y, r.width, 1, band, line);
+                for (double v : line) {
+                    if (!exclude || v < exMin || v > exMax) {
+                        res[0] = Math.min(res[0], v);
+                        res[1] = Math.max(res[1], v);
+                    }
+                }
+            }
+            return;
+        }
+
+        ComponentSampleModel csm = (ComponentSampleModel) raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int bank = csm.getBankIndices()[band];
+        int lineStride = csm.getScanlineStride();
+        int pixelStride = csm.getPixelStride();
+        int lineLength = r.width * pixelStride;
+        int start = db.getOffsets()[bank] + csm.getOffset(r.x - raster.getSampleModelTranslateX(),
+            r.y - raster.getSampleModelTranslateY(), band);
+        int lastLine = start + r.height * lineStride;
+
+        int dataType = db.getDataType();
+        if (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE) {
+            double min = res[0];
+            double max = res[1];
+            if (dataType == DataBuffer.TYPE_FLOAT) {
+                float[] data = ((DataBufferFloat) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        double v = data[i];
+                        if (!exclude || v < exMin || v > exMax) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                        }
+                    }
+                }
+            } else {
+                double[] data = ((DataBufferDouble) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        double v = data[i];
+                        if (!exclude || v < exMin || v > exMax) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                        }
+                    }
+                }
+            }
+            res[0] = min;
+            res[1] = max;
+            return;
+        }
+
+        // Integer values: the excluded range is converted to integers and the comparisons are done on integers
+        long low = exclude ? (long) Math.ceil(exMin) : 1L;
+        long high = exclude ? (long) Math.floor(exMax) : 0L;
+        boolean noBound = low > high || high < Integer.MIN_VALUE || low > Integer.MAX_VALUE;
+        int exLow = (int) Math.max(Integer.MIN_VALUE, low);
+        int exHigh = (int) Math.min(Integer.MAX_VALUE, high);
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        boolean found = false;
+
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE: {
+                byte[] data = ((DataBufferByte) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int v = data[i] & 0xFF;
+                        if (noBound || v < exLow || v > exHigh) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                            found = true;
+                        }
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_USHORT: {
+                short[] data = ((DataBufferUShort) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int v = data[i] & 0xFFFF;
+                        if (noBound || v < exLow || v > exHigh) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                            found = true;
+                        }
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_SHORT: {
+                short[] data = ((DataBufferShort) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int v = data[i];
+                        if (noBound || v < exLow || v > exHigh) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                            found = true;
+                        }
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_INT: {
+                int[] data = ((DataBufferInt) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int v = data[i];
+                        if (noBound || v < exLow || v > exHigh) {
+                            min = v < min ? v : min;
+                            max = v > max ? v : max;
+                            found = true;
+                        }
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType); //$NON-NLS-1$
+        }
+        if (found) {
+            res[0] = Math.min(res[0], min);
+            res[1] = Math.max(res[1], max);
+        }
+    }
+
+    private static void count(Region r, int offset, int[] counts) {
+        Raster raster = r.raster;
+        int last = counts.length - 1;
+        int dataType = raster.getSampleModel().getDataType();
+        if (!isDirectAccess(raster) || dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE) {
+            int[] line = new int[r.width];
+            for (int y = r.y; y < r.y + r.height; y++) {
+                raster.getSamples(r.x, y, r.width, 1, 0, line);
+                for (int v : line) {
+                    int index = v - offset;
+                    counts[index < 0 ? 0 : index > last ? last : index]++;
+                }
+            }
+            return;
+        }
+
+        ComponentSampleModel csm = (ComponentSampleModel) raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int bank = csm.getBankIndices()[0];
+        int lineStride = csm.getScanlineStride();
+        int pixelStride = csm.getPixelStride();
+        int lineLength = r.width * pixelStride;
+        int start = db.getOffsets()[bank]
+            + csm.getOffset(r.x - raster.getSampleModelTranslateX(), r.y - raster.getSampleModelTranslateY(), 0);
+        int lastLine = start + r.height * lineStride;
+
+        switch (db.getDataType()) {
+            case DataBuffer.TYPE_BYTE: {
+                byte[] data = ((DataBufferByte) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int index = (data[i] & 0xFF) - offset;
+                        counts[index < 0 ? 0 : index > last ? last : index]++;
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_USHORT: {
+                short[] data = ((DataBufferUShort) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int index = (data[i] & 0xFFFF) - offset;
+                        counts[index < 0 ? 0 : index > last ? last : index]++;
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_SHORT: {
+                short[] data = ((DataBufferShort) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        int index = data[i] - offset;
+                        counts[index < 0 ? 0 : index > last ? last : index]++;
+                    }
+                }
+                break;
+            }
+            case DataBuffer.TYPE_INT: {
+                int[] data = ((DataBufferInt) db).getData(bank);
+                for (int lo = start; lo < lastLine; lo += lineStride) {
+                    for (int i = lo; i < lo + lineLength; i += pixelStride) {
+                        long index = (long) data[i] - offset;
+                        counts[index < 0 ? 0 : index > last ? last : (int) index]++;
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType); //$NON-NLS-1$
+        }
+    }
+
+    private static final class Region {
+        final Raster raster;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        Region(Raster raster, int x, int y, int width, int height) {
+            this.raster = raster;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+
+/**
+ * Schedules the decoding of the pixel data. The readers declaring a thread-safe decoder (see
+ * {@link MediaReader#isDecoderThreadSafe()}) are decoded in a bounded pool of threads, the other ones are decoded
+ * sequentially in a single thread.
+ *
+ * The decoding tasks of the same reader (e.g. the frames of a multiframe file) are always serialized.
+ */
+public final class DecodeScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecodeScheduler.class);
+
+    /**
+     * Number of threads for decoding images with thread-safe decoders. The default value is the number of processors
+     * minus one.
+     */
+    public static final String DECODER_THREADS = "weasis.image.decoder.threads"; //$NON-NLS-1$
+
+    /*
+     * Imageio issue with native library in multi-thread environment (to avoid JVM crash let only one simultaneous
+     * thread) (https://java.net/jira/browse/JAI_IMAGEIO_CORE-126)
+     */
+    public static final ExecutorService SERIAL_LOADER = ThreadUtil.buildNewSingleThreadExecutor("Image Loader"); //$NON-NLS-1$
+    public static final ExecutorService PARALLEL_LOADER =
+        ThreadUtil.buildNewFixedThreadExecutor(getParallelism(), "Parallel Image Loader"); //$NON-NLS-1$
+
+    private static final Map<String, DecoderStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    private DecodeScheduler() {
+    }
+
+    private static int getParallelism() {
+        int def = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        int nbThreads = BundleTools.SYSTEM_PREFERENCES.getIntProperty(DECODER_THREADS, def);
+        return nbThreads < 1 ? def : nbThreads;
+    }
+
+    public static <T> Future<T> submit(MediaReader reader, Callable<T> task) {
+        if (reader == null) {
+            return SERIAL_LOADER.submit(task);
+        }
+        boolean threadSafe = reader.isDecoderThreadSafe();
+        DecoderStatistics stats = STATISTICS.computeIfAbsent(reader.getDecoderName(), DecoderStatistics::new);
+        Callable<T> call = () -> {
+            long start = System.nanoTime();
+            try {
+                // The same reader cannot decode several images at the same time
+                synchronized (reader) {
+                    return task.call();
+                }
+            } finally {
+                stats.addDecoding(start, System.nanoTime());
+            }
+        };
+        LOGGER.trace("Submit decoding with {} ({})", stats.getName(), threadSafe ? "parallel" : "serial"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        return threadSafe ? PARALLEL_LOADER.submit(call) : SERIAL_LOADER.submit(call);
+    }
+
+    /**
+     * @return the throughput statistics by decoder name
+     */
+    public static Map<String, DecoderStatistics> getStatistics() {
+        return Collections.unmodifiableMap(STATISTICS);
+    }
+
+    public static void resetStatistics() {
+        STATISTICS.clear();
+    }
+
+    public static class DecoderStatistics {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder decodingTime = new LongAdder();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+        public DecoderStatistics(String name) {
+            this.name = name;
+        }
+
+        void addDecoding(long start, long end) {
+            count.increment();
+            decodingTime.add(end - start);
+            firstStart.accumulateAndGet(start, Math::min);
+            lastEnd.accumulateAndGet(end, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the mean decoding time of one image in milliseconds
+         */
+        public double getMeanDecodingTime() {
+            long nb = count.sum();
+            return nb == 0 ? 0.0 : decodingTime.sum() / (nb * 1_000_000.0);
+        }
+
+        /**
+         * @return the number of decoded images per second between the first and the last decoding
+         */
+        public double getThroughput() {
+            long nb = count.sum();
+            long elapsed = lastEnd.get() - firstStart.get();
+            return nb == 0 || elapsed <= 0 ? 0.0 : nb * 1_000_000_000.0 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d images, %.2f images/s, %.2f ms/image", name, getCount(), getThroughput(), //$NON-NLS-1$
+                getMeanDecodingTime());
+        }
+    }
+}
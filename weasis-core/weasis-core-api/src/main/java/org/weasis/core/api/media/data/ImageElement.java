@@ -13,18 +13,17 @@ package org.weasis.core.api.media.data;
 import java.awt.image.DataBuffer;
 import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
-import java.awt.image.renderable.ParameterBlock;
 import java.io.IOException;
-import java.lang.ref.Reference;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
-import javax.media.jai.JAI;
 import javax.media.jai.PlanarImage;
 import javax.media.jai.RenderedOp;
+import javax.media.jai.operator.FormatDescriptor;
+import javax.media.jai.operator.RescaleDescriptor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,40 +33,43 @@ import org.weasis.core.api.image.LutShape;
 import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.image.measure.MeasurementsAdapter;
 import org.weasis.core.api.image.util.ImageToolkit;
+import org.weasis.core.api.image.util.PixelStatistics;
 import org.weasis.core.api.image.util.Unit;
-import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.api.service.BundleTools;
 
 public class ImageElement extends MediaElement {
     private static final Logger LOGGER = LoggerFactory.getLogger(ImageElement.class);
 
-    /*
-     * Imageio issue with native library in multi-thread environment (to avoid JVM crash let only one simultaneous
-     * thread) (https://java.net/jira/browse/JAI_IMAGEIO_CORE-126)
-     *
-     * Try multi-thread reading with new native decoders
+    /**
+     * Single thread executor for the decoders which cannot be called concurrently.
      *
-     * public static final ExecutorService IMAGE_LOADER = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime()
-     * .availableProcessors() / 2));
+     * @see DecodeScheduler
      */
-    // TODO evaluate the difference, keep one thread with sun decoder. (seems to hangs on shutdown)
-    public static final ExecutorService IMAGE_LOADER = ThreadUtil.buildNewSingleThreadExecutor("Image Loader"); //$NON-NLS-1$
+    public static final ExecutorService IMAGE_LOADER = DecodeScheduler.SERIAL_LOADER;
 
-    private static final SoftHashMap<ImageElement, PlanarImage> mCache = new SoftHashMap<ImageElement, PlanarImage>() {
+    /**
+     * Maximum memory of the decoded images kept in cache (in MB). The default value is 40% of the maximum heap size.
+     */
+    public static final String IMAGE_CACHE_SIZE = "weasis.image.cache.size"; //$NON-NLS-1$
+
+    private static final LruMemoryCache<ImageElement, PlanarImage> mCache =
+        new LruMemoryCache<>(getDefaultCacheCapacity(), ImageToolkit::getMemorySize, ImageElement::evicted);
+
+    private static long getDefaultCacheCapacity() {
+        long defSize = Runtime.getRuntime().maxMemory() * 2 / 5;
+        long size = BundleTools.SYSTEM_PREFERENCES.getLongProperty(IMAGE_CACHE_SIZE, -1L);
+        return size > 0 ? size * 1024L * 1024L : defSize;
+    }
+
+    private static void evicted(ImageElement key, PlanarImage img) {
+        LOGGER.trace("Evict image from cache: {}", key); //$NON-NLS-1$
+        key.closeImageStream();
+    }
+
+    public static LruMemoryCache<ImageElement, PlanarImage> getImageCache() {
+        return mCache;
+    }
 
-        @Override
-        public void removeElement(Reference<? extends PlanarImage> soft) {
-            ImageElement key = reverseLookup.remove(soft);
-            if (key != null) {
-                hash.remove(key);
-                MediaReader reader = key.getMediaReader();
-                key.setTag(TagW.ImageCache, false);
-                if (reader != null) {
-                    // Close the image stream
-                    reader.close();
-                }
-            }
-        }
-    };
     protected boolean readable = true;
 
     protected double pixelSizeX = 1.0;
@@ -94,27 +96,15 @@ public class ImageElement extends MediaElement {
                 this.minPixelValue = 0.0;
                 this.maxPixelValue = 255.0;
             } else {
-
-                ParameterBlock pb = new ParameterBlock();
-                pb.addSource(img);
-                // ImageToolkit.NOCACHE_HINT to ensure this image won't be stored in tile cache
-                RenderedOp dst = JAI.create("extrema", pb, ImageToolkit.NOCACHE_HINT); //$NON-NLS-1$
-
-                double[][] extrema = (double[][]) dst.getProperty("extrema"); //$NON-NLS-1$
-                double min = Double.MAX_VALUE;
-                double max = -Double.MAX_VALUE;
-                int numBands = dst.getSampleModel().getNumBands();
-
-                for (int i = 0; i < numBands; i++) {
-                    min = Math.min(min, extrema[0][i]);
-                    max = Math.max(max, extrema[1][i]);
-                }
-                this.minPixelValue = min;
-                this.maxPixelValue = max;
-                // Handle special case when min and max are equal, ex. black image
-                // + 1 to max enables to display the correct value
-                if (this.minPixelValue.equals(this.maxPixelValue)) {
-                    this.maxPixelValue += 1.0;
+                double[] minMax = PixelStatistics.getMinMax(img, null, null);
+                if (minMax != null) {
+                    this.minPixelValue = minMax[0];
+                    this.maxPixelValue = minMax[1];
+                    // Handle special case when min and max are equal, ex. black image
+                    // + 1 to max enables to display the correct value
+                    if (this.minPixelValue.equals(this.maxPixelValue)) {
+                        this.maxPixelValue += 1.0;
+                    }
                 }
             }
         }
@@ -232,11 +222,15 @@ public class ImageElement extends MediaElement {
     }
 
     public boolean isImageInCache() {
-        return mCache.get(this) != null;
+        return mCache.containsKey(this);
     }
 
     public void removeImageFromCache() {
         mCache.remove(this);
+        closeImageStream();
+    }
+
+    private void closeImageStream() {
         MediaReader reader = this.getMediaReader();
         this.setTag(TagW.ImageCache, false);
         if (reader != null) {
@@ -315,30 +309,19 @@ public class ImageElement extends MediaElement {
         return getMediaURI().toString();
     }
 
-    public synchronized PlanarImage getImage(OpManager manager, boolean findMinMax) {
+    public PlanarImage getImage(OpManager manager, boolean findMinMax) {
         PlanarImage cacheImage;
         try {
-            cacheImage = startImageLoading();
-            if (findMinMax) {
-                findMinMaxValues(cacheImage, true);
-            }
+            cacheImage = getCacheImage(findMinMax);
         } catch (OutOfMemoryError e1) {
             /*
              * Appends when loading a big image without tiling, the memory left is not enough for the renderedop (like
              * Extrema)
              */
             LOGGER.warn("Out of MemoryError: {}", this, e1); //$NON-NLS-1$
-            mCache.expungeStaleEntries();
-            System.gc();
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException et) {
-                // Do nothing
-            }
-            cacheImage = startImageLoading();
-            if (findMinMax) {
-                findMinMaxValues(cacheImage, true);
-            }
+            // Release the half of the decoded images instead of waiting for the GC
+            mCache.trimToSize(mCache.getCurrentSize() / 2);
+            cacheImage = getCacheImage(findMinMax);
         }
         if (manager != null && cacheImage != null) {
             RenderedImage img = manager.getLastNodeOutputImage();
@@ -358,12 +341,114 @@ public class ImageElement extends MediaElement {
         return getImage(null);
     }
 
+    /**
+     * Returns the rendered image (see getRenderedImage()) for a preview of the given size (e.g. a thumbnail). When the
+     * image is not in cache and has no preprocessing, the decoder can read a reduced resolution (see
+     * MediaReader.getReducedImageFragment()). The reduced image is not kept in cache and does not change the state of
+     * this element (min and max values, presets...).
+     *
+     * @param maxSize
+     *            the minimum size of the largest side of the reduced image
+     * @param manager
+     *            the preprocessing operations, can be null
+     * @return the rendered image
+     */
+    public RenderedImage getPreviewRenderedImage(int maxSize, OpManager manager) {
+        int subsampling = manager == null && readable && !isImageInCache() ? getPreviewSubsampling(maxSize) : 1;
+        PlanarImage reduced = subsampling > 1 ? loadReducedImage(subsampling) : null;
+        if (reduced != null) {
+            RenderedImage img = isImageAvailable() ? getRenderedImage(reduced) : getReducedRenderedImage(reduced);
+            if (img != null) {
+                return img;
+            }
+        }
+        PlanarImage img = getImage(manager);
+        return img == null ? null : getRenderedImage(img);
+    }
+
+    /**
+     * Renders a reduced image when the min and max values of the full image are not known yet. The window and level are
+     * computed from local values, getRenderedImage() cannot be used as it builds the presets from the min and max
+     * values of this element.
+     *
+     * @return the rendered image or null when the full image is required
+     */
+    protected RenderedImage getReducedRenderedImage(RenderedImage reduced) {
+        if (!isGrayImage(reduced)) {
+            return reduced;
+        }
+        if (reduced.getSampleModel().getDataType() == DataBuffer.TYPE_BYTE) {
+            return getWindowedImage(reduced, 1.0, 0.0, 255.0, 127.5, false);
+        }
+        double[] minMax = PixelStatistics.getMinMax(reduced, null, null);
+        if (minMax == null) {
+            return null;
+        }
+        double window = Math.max(minMax[1] - minMax[0], 1.0);
+        return getWindowedImage(reduced, 1.0, 0.0, window, minMax[0] + window / 2.0, false);
+    }
+
+    /**
+     * Applies a linear transformation (slope and intercept) and a linear window to the source and converts it to 8
+     * bits.
+     */
+    protected static RenderedImage getWindowedImage(RenderedImage source, double slope, double intercept,
+        double window, double level, boolean inverse) {
+        double factor = 255.0 / window;
+        double low = level - window / 2.0;
+        double scale = slope * factor;
+        double offset = (intercept - low) * factor;
+        if (inverse) {
+            scale = -scale;
+            offset = 255.0 - offset;
+        }
+        RenderedOp rescale =
+            RescaleDescriptor.create(source, new double[] { scale }, new double[] { offset }, null);
+        return FormatDescriptor.create(rescale, DataBuffer.TYPE_BYTE, null);
+    }
+
+    /**
+     * @return the subsampling factor (a power of 2) for reading a reduced image with the largest side greater than or
+     *         equal to the size, 1 when the size of the image is unknown before decoding it
+     */
+    protected int getPreviewSubsampling(int maxSize) {
+        return 1;
+    }
+
+    private PlanarImage loadReducedImage(int subsampling) {
+        Future<PlanarImage> future =
+            DecodeScheduler.submit(mediaIO, () -> mediaIO.getReducedImageFragment(this, subsampling));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            LOGGER.warn("Cannot read the reduced image: {}", this, e.getCause()); //$NON-NLS-1$
+        }
+        return null;
+    }
+
+    private PlanarImage getCacheImage(boolean findMinMax) throws OutOfMemoryError {
+        // Fast path without locking when the image is already in cache
+        PlanarImage cacheImage = mCache.get(this);
+        if (cacheImage == null || (findMinMax && !isImageAvailable())) {
+            synchronized (this) {
+                cacheImage = startImageLoading();
+                if (findMinMax) {
+                    findMinMaxValues(cacheImage, true);
+                }
+            }
+        }
+        return cacheImage;
+    }
+
     private PlanarImage startImageLoading() throws OutOfMemoryError {
         PlanarImage cacheImage;
-        if ((cacheImage = mCache.get(this)) == null && readable && setAsLoading()) {
+        if ((cacheImage = mCache.peek(this)) == null && readable && setAsLoading()) {
             LOGGER.debug("Asking for reading image: {}", this); //$NON-NLS-1$
             Load ref = new Load();
-            Future<PlanarImage> future = IMAGE_LOADER.submit(ref);
+            Future<PlanarImage> future = DecodeScheduler.submit(mediaIO, ref);
             PlanarImage img = null;
             try {
                 img = future.get();
@@ -384,9 +469,10 @@ public class ImageElement extends MediaElement {
             }
             if (img != null) {
                 readable = true;
+                // Set before, as an eviction by another thread resets the tag
+                this.setTag(TagW.ImageCache, true);
                 mCache.put(this, img);
                 cacheImage = img;
-                this.setTag(TagW.ImageCache, true);
             }
             setAsLoaded();
         }
@@ -399,7 +485,7 @@ public class ImageElement extends MediaElement {
 
     @Override
     public void dispose() {
-        // Let the soft reference mechanism dispose the display image
+        mCache.remove(this);
 
         // Close image reader and image stream, but it should be already closed
         if (mediaIO != null) {
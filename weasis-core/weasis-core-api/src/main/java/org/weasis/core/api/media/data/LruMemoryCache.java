@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache bounded by the memory footprint of its values. When the sum of the value sizes exceeds the
+ * capacity, the least recently used entries are evicted and the eviction listener is notified (outside the internal
+ * lock).
+ *
+ * @param <K>
+ *            the type of keys
+ * @param <V>
+ *            the type of values
+ */
+public class LruMemoryCache<K, V> {
+
+    // In insertion order, an entry is moved to the end when it is read by get()
+    private final Map<K, CacheEntry<V>> map = new LinkedHashMap<>(64);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ToLongFunction<? super V> weigher;
+    private final BiConsumer<? super K, ? super V> evictionListener;
+
+    private volatile long capacity;
+    private long currentSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            the maximum sum of the value sizes (in bytes)
+     * @param weigher
+     *            returns the size in bytes of a value
+     * @param evictionListener
+     *            called when an entry is evicted because of the capacity or by {@link #clear()}, can be null
+     */
+    public LruMemoryCache(long capacity, ToLongFunction<? super V> weigher,
+        BiConsumer<? super K, ? super V> evictionListener) {
+        this.capacity = Math.max(0L, capacity);
+        this.weigher = Objects.requireNonNull(weigher);
+        this.evictionListener = evictionListener;
+    }
+
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            CacheEntry<V> entry = map.remove(key);
+            if (entry == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            // Becomes the most recently used entry
+            map.put(key, entry);
+            hitCount.incrementAndGet();
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the value without updating the statistics and the order of the least recently used entries.
+     */
+    public V peek(K key) {
+        if (key == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            CacheEntry<V> entry = map.get(key);
+            return entry == null ? null : entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if the cache contains the key, without updating the statistics and the order of the least recently
+     * used entries.
+     */
+    public boolean containsKey(K key) {
+        if (key == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return map.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        long size = Math.max(0L, weigher.applyAsLong(value));
+        List<Entry<K, V>> evicted;
+        V previous = null;
+        lock.lock();
+        try {
+            // Removed first, so the entry is put at the end of the insertion order
+            CacheEntry<V> old = map.remove(key);
+            map.put(key, new CacheEntry<>(value, size));
+            currentSize += size;
+            if (old != null) {
+                currentSize -= old.size;
+                previous = old.value;
+            }
+            evicted = evict(capacity);
+        } finally {
+            lock.unlock();
+        }
+        notifyEviction(evicted);
+        return previous;
+    }
+
+    /**
+     * Removes the entry without notifying the eviction listener.
+     */
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            CacheEntry<V> old = map.remove(key);
+            if (old == null) {
+                return null;
+            }
+            currentSize -= old.size;
+            return old.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the size of the cache is lower or equal to the given size.
+     */
+    public void trimToSize(long maxSize) {
+        List<Entry<K, V>> evicted;
+        lock.lock();
+        try {
+            evicted = evict(Math.max(0L, maxSize), false);
+        } finally {
+            lock.unlock();
+        }
+        notifyEviction(evicted);
+    }
+
+    public void clear() {
+        trimToSize(0L);
+    }
+
+    private List<Entry<K, V>> evict(long maxSize) {
+        // Always keep the most recent entry, even when it is larger than the capacity
+        return evict(maxSize, true);
+    }
+
+    private List<Entry<K, V>> evict(long maxSize, boolean keepLast) {
+        List<Entry<K, V>> evicted = null;
+        Iterator<Entry<K, CacheEntry<V>>> it = map.entrySet().iterator();
+        while (currentSize > maxSize && it.hasNext() && (!keepLast || map.size() > 1)) {
+            Entry<K, CacheEntry<V>> eldest = it.next();
+            it.remove();
+            currentSize -= eldest.getValue().size;
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(new AbstractMap.SimpleImmutableEntry<>(eldest.getKey(), eldest.getValue().value));
+        }
+        return evicted;
+    }
+
+    private void notifyEviction(List<Entry<K, V>> evicted) {
+        if (evicted != null) {
+            evictionCount.addAndGet(evicted.size());
+            if (evictionListener != null) {
+                for (Entry<K, V> e : evicted) {
+                    evictionListener.accept(e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = Math.max(0L, capacity);
+        trimToSize(this.capacity);
+    }
+
+    public long getCurrentSize() {
+        lock.lock();
+        try {
+            return currentSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public void resetStatistics() {
+        hitCount.set(0L);
+        missCount.set(0L);
+        evictionCount.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries: %d, size: %d/%d bytes, hits: %d, misses: %d, evictions: %d", size(), //$NON-NLS-1$
+            getCurrentSize(), capacity, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static final class CacheEntry<V> {
+        final V value;
+        final long size;
+
+        CacheEntry(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -36,6 +36,20 @@ public interface MediaReader extends Tagable {
 
     PlanarImage getImageFragment(MediaElement media) throws Exception;
 
+    /**
+     * Reads the image reduced by the subsampling factor, only when the decoder can do it faster than decoding the whole
+     * image (e.g. the resolution levels of JPEG 2000).
+     *
+     * @param media
+     *            the image
+     * @param subsampling
+     *            the subsampling factor in both directions
+     * @return the reduced image or null when the decoder cannot read a reduced resolution
+     */
+    default PlanarImage getReducedImageFragment(MediaElement media, int subsampling) throws Exception {
+        return null;
+    }
+
     int getMediaElementNumber();
 
     String getMediaFragmentMimeType();
@@ -54,4 +68,19 @@ public interface MediaReader extends Tagable {
     void replaceURI(URI uri);
 
     boolean buildFile(File ouptut);
+
+    /**
+     * @return true if the decoder of the pixel data can run concurrently with the decoders of other readers
+     */
+    default boolean isDecoderThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return the name of the decoder of the pixel data
+     */
+    default String getDecoderName() {
+        Codec codec = getCodec();
+        return codec == null ? getClass().getSimpleName() : codec.getCodecName();
+    }
 }
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.media.jai.PlanarImage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.explorer.model.DataExplorerModel;
+import org.weasis.core.api.gui.util.Filter;
+import org.weasis.core.api.image.util.ImageToolkit;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+
+/**
+ * Decodes in background the next images of a series according to the scrolling direction and speed. The prefetched
+ * images are stored in the image cache of {@link ImageElement}.
+ * <p>
+ * The notifications of the displayed image are cheap: the list of images and the images to prefetch are computed in
+ * a background thread which only handles the last notification.
+ *
+ * @param <E>
+ *            the type of image
+ */
+public class SeriesPrefetcher<E extends ImageElement> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesPrefetcher.class);
+
+    /**
+     * Minimum number of images to prefetch in the scrolling direction. The default value is 10.
+     */
+    public static final String PREFETCH_SLICES = "weasis.image.prefetch.slices"; //$NON-NLS-1$
+
+    private static final ExecutorService PREFETCH_EXECUTOR = ThreadUtil.buildNewFixedThreadExecutor(
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2), "Image Prefetcher"); //$NON-NLS-1$
+    private static final ExecutorService SCHEDULER_EXECUTOR =
+        ThreadUtil.buildNewSingleThreadExecutor("Image Prefetch Scheduler"); //$NON-NLS-1$
+
+    // Time (in seconds) of scrolling anticipated by the prefetching
+    private static final double LOOK_AHEAD_TIME = 1.0;
+
+    private final int minSlices;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicInteger stopCount = new AtomicInteger();
+    private final AtomicReference<Request<E>> nextRequest = new AtomicReference<>();
+    private final List<Future<?>> pendingTasks = new ArrayList<>();
+    // Time when the image has been decoded, 0 while prefetching
+    private final Map<E, Long> prefetched = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Series<E> series;
+    private Filter<E> filter;
+    private Comparator<E> sort;
+    private List<E> imageList = Collections.emptyList();
+    private int lastIndex = -1;
+    private int direction = 1;
+    private long lastTime;
+    private double scrollRate;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public SeriesPrefetcher() {
+        this.minSlices = Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(PREFETCH_SLICES, 10));
+    }
+
+    /**
+     * Notifies the image displayed and starts prefetching the next images.
+     *
+     * @param series
+     *            the series displayed
+     * @param filter
+     *            the filter of the series in the view
+     * @param sort
+     *            the sort order of the series in the view
+     * @param index
+     *            the index of the displayed image in the sorted and filtered list
+     * @param fps
+     *            the cine speed (frames per second) or 0 when not playing
+     */
+    public void update(Series<E> series, Filter<E> filter, Comparator<E> sort, int index, int fps) {
+        if (series == null) {
+            return;
+        }
+        Request<E> request = new Request<>(series, filter, sort, index, fps, stopCount.get());
+        // Schedule a task only when no notification is pending, the task handles the last one
+        if (nextRequest.getAndSet(request) == null) {
+            SCHEDULER_EXECUTOR.execute(this::handleRequests);
+        }
+    }
+
+    private void handleRequests() {
+        Request<E> request;
+        while ((request = nextRequest.getAndSet(null)) != null) {
+            try {
+                handle(request);
+            } catch (RuntimeException e) {
+                LOGGER.error("Prefetching images", e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private synchronized void handle(Request<E> request) {
+        if (request.stopCount != stopCount.get()) {
+            // The series has been stopped after the notification
+            return;
+        }
+        Series<E> series = request.series;
+        Filter<E> filter = request.filter;
+        Comparator<E> sort = request.sort;
+        int index = request.index;
+        boolean changed = series != this.series || filter != this.filter || sort != this.sort
+            || series.size(filter) != imageList.size();
+        if (changed) {
+            cancelTasks();
+            this.series = series;
+            this.filter = filter;
+            this.sort = sort;
+            this.imageList = series.copyOfMedias(filter, sort);
+            this.lastIndex = -1;
+            this.scrollRate = 0.0;
+            this.direction = 1;
+        }
+        if (index < 0 || index >= imageList.size()) {
+            return;
+        }
+
+        E current = imageList.get(index);
+        long now = request.time;
+        // Hit when the prefetching was finished before displaying the image
+        Long decoded = prefetched.remove(current);
+        if (decoded != null && decoded != 0L && decoded <= now) {
+            hitCount.incrementAndGet();
+        } else if (decoded != null || !current.isImageInCache()) {
+            missCount.incrementAndGet();
+        }
+
+        if (lastIndex >= 0 && index != lastIndex) {
+            int step = index - lastIndex;
+            int newDirection = step > 0 ? 1 : -1;
+            if (newDirection != direction) {
+                direction = newDirection;
+                // The images in the previous direction are not required anymore
+                cancelTasks();
+            }
+            double elapsed = (now - lastTime) / 1_000_000_000.0;
+            if (elapsed > 0.0) {
+                // Exponential moving average of the number of images per second
+                double rate = Math.abs(step) / elapsed;
+                scrollRate = scrollRate <= 0.0 ? rate : 0.7 * scrollRate + 0.3 * rate;
+            }
+        }
+        lastIndex = index;
+        lastTime = now;
+
+        double rate = request.fps > 0 ? request.fps : scrollRate;
+        int nbSlices = Math.max(minSlices, (int) Math.ceil(rate * LOOK_AHEAD_TIME));
+        nbSlices = Math.min(nbSlices, getMaxSlicesInCache(current));
+        prefetch(index, nbSlices);
+    }
+
+    private int getMaxSlicesInCache(E current) {
+        LruMemoryCache<ImageElement, PlanarImage> cache = ImageElement.getImageCache();
+        long imgSize = ImageToolkit.getMemorySize(cache.peek(current));
+        if (imgSize <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        // Use at most the half of the cache for the prefetched images
+        return (int) Math.max(1L, cache.getCapacity() / (2L * imgSize));
+    }
+
+    private void prefetch(int index, int nbSlices) {
+        pendingTasks.removeIf(Future::isDone);
+        final int gen = generation.get();
+        final Series<E> s = series;
+        int size = imageList.size();
+        for (int i = 1; i <= nbSlices; i++) {
+            int k = index + i * direction;
+            if (k < 0 || k >= size) {
+                break;
+            }
+            E img = imageList.get(k);
+            if (!img.isImageInCache() && !img.isLoading() && img.isReadable() && !prefetched.containsKey(img)) {
+                prefetched.put(img, 0L);
+                pendingTasks.add(PREFETCH_EXECUTOR.submit(() -> loadImage(img, s, gen)));
+            }
+        }
+    }
+
+    private void loadImage(E img, Series<E> s, int gen) {
+        if (gen != generation.get()) {
+            prefetched.remove(img);
+            return;
+        }
+        try {
+            PlanarImage image = img.getImage();
+            if (image != null) {
+                // Compute all the tiles
+                image.getTiles();
+                prefetched.replace(img, System.nanoTime());
+                DataExplorerModel model = (DataExplorerModel) s.getTagValue(TagW.ExplorerModel);
+                if (model != null) {
+                    model.firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.ADD, model, null,
+                        new SeriesEvent(SeriesEvent.Action.PRELOADING, s, img)));
+                }
+            }
+        } catch (OutOfMemoryError e) {
+            LOGGER.warn("Out of memory when prefetching image: {}", img); //$NON-NLS-1$
+            prefetched.remove(img);
+            stop(s);
+        }
+    }
+
+    private void cancelTasks() {
+        generation.incrementAndGet();
+        for (Future<?> f : pendingTasks) {
+            f.cancel(false);
+        }
+        pendingTasks.clear();
+        prefetched.clear();
+    }
+
+    /**
+     * Stops prefetching the series.
+     */
+    public synchronized void stop(Series<E> series) {
+        stopCount.incrementAndGet();
+        if (series != null && series == this.series) {
+            cancelTasks();
+            this.series = null;
+            this.filter = null;
+            this.sort = null;
+            this.imageList = Collections.emptyList();
+            this.lastIndex = -1;
+        }
+    }
+
+    private static class Request<E extends ImageElement> {
+        private final Series<E> series;
+        private final Filter<E> filter;
+        private final Comparator<E> sort;
+        private final int index;
+        private final int fps;
+        private final int stopCount;
+        private final long time = System.nanoTime();
+
+        Request(Series<E> series, Filter<E> filter, Comparator<E> sort, int index, int fps, int stopCount) {
+            this.series = series;
+            this.filter = filter;
+            this.sort = sort;
+            this.index = index;
+            this.fps = fps;
+            this.stopCount = stopCount;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the ratio of displayed images which were already decoded by the prefetching
+     */
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    public void resetStatistics() {
+        hitCount.set(0L);
+        missCount.set(0L);
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Index of the slice locations of a sorted list of media. The locations are stored in a sorted primitive array, so
+ * the nearest media of a location is found by a binary search.
+ *
+ * The index is immutable and must be rebuilt when the list changes.
+ *
+ * @param <E>
+ *            the type of media
+ */
+public class SlicePositionIndex<E> {
+
+    private final List<E> medias;
+    private final double[] mediaLocations;
+    // Sorted locations and their index in the list of media
+    private final double[] locations;
+    private final int[] indexes;
+
+    /**
+     * @param medias
+     *            the list of media in the display order
+     * @param location
+     *            the function returning the location of a media or NaN when the media has no location
+     */
+    public SlicePositionIndex(List<E> medias, ToDoubleFunction<E> location) {
+        this.medias = medias;
+        int size = medias.size();
+        this.mediaLocations = new double[size];
+        double[] locs = new double[size];
+        int[] idx = new int[size];
+        int n = 0;
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            double val = location.applyAsDouble(medias.get(i));
+            mediaLocations[i] = val;
+            if (!Double.isNaN(val)) {
+                if (n > 0 && val < locs[n - 1]) {
+                    sorted = false;
+                }
+                locs[n] = val;
+                idx[n] = i;
+                n++;
+            }
+        }
+
+        if (!sorted) {
+            // Sort by location and then by index to keep the first media of the list when locations are equal
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer> comparingDouble(i -> locs[i]).thenComparingInt(i -> idx[i]));
+            this.locations = new double[n];
+            this.indexes = new int[n];
+            for (int i = 0; i < n; i++) {
+                this.locations[i] = locs[order[i]];
+                this.indexes[i] = idx[order[i]];
+            }
+        } else {
+            this.locations = Arrays.copyOf(locs, n);
+            this.indexes = Arrays.copyOf(idx, n);
+        }
+    }
+
+    public int size() {
+        return medias.size();
+    }
+
+    public E getMedia(int index) {
+        if (index >= 0 && index < medias.size()) {
+            return medias.get(index);
+        }
+        return null;
+    }
+
+    /**
+     * @return the location of the media at this index of the list or NaN when the media has no location
+     */
+    public double getLocation(int index) {
+        return mediaLocations[index];
+    }
+
+    /**
+     * Returns the index in the list of the media which has the nearest location. When two media are at the same
+     * distance, the first one in the list is returned.
+     *
+     * @param location
+     *            the location
+     * @return the index of the nearest media or -1 if no media has a location
+     */
+    public int getNearestIndex(double location) {
+        int n = locations.length;
+        if (n == 0) {
+            return -1;
+        }
+        // First element which is greater or equal to the location
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (locations[mid] < location) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == 0) {
+            return indexes[0];
+        }
+        // First element of the group of equal locations before
+        int before = low - 1;
+        while (before > 0 && locations[before - 1] == locations[before]) {
+            before--;
+        }
+        if (low == n) {
+            return indexes[before];
+        }
+        double diffBefore = location - locations[before];
+        double diffAfter = locations[low] - location;
+        if (diffBefore < diffAfter) {
+            return indexes[before];
+        } else if (diffAfter < diffBefore) {
+            return indexes[low];
+        }
+        return Math.min(indexes[before], indexes[low]);
+    }
+}
@@ -248,9 +248,9 @@ public class Thumbnail extends JLabel {
             if (noPath) {
                 if (media instanceof ImageElement) {
                     final ImageElement image = (ImageElement) media;
-                    PlanarImage imgPl = image.getImage(opManager);
-                    if (imgPl != null) {
-                        RenderedImage img = image.getRenderedImage(imgPl);
+                    // Can decode a reduced resolution instead of the whole image
+                    RenderedImage img = image.getPreviewRenderedImage(MAX_SIZE, opManager);
+                    if (img != null) {
                         final RenderedImage thumb = createThumbnail(img);
                         try {
                             file = thumbnailPath = File.createTempFile("tumb_", ".jpg", Thumbnail.THUMBNAIL_CACHE_DIR); //$NON-NLS-1$ //$NON-NLS-2$
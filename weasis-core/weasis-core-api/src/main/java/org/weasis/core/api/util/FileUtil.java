@@ -496,18 +496,34 @@ public final class FileUtil {
         try (ZipFile zfile = new ZipFile(zipfile)) {
             Enumeration<? extends ZipEntry> entries = zfile.entries();
             while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                File file = new File(directory, entry.getName());
-                if (entry.isDirectory()) {
-                    file.mkdirs();
-                } else {
-                    file.getParentFile().mkdirs();
-                    try (InputStream in = zfile.getInputStream(entry)) {
-                        copyZip(in, file);
-                    }
-                }
+                unzip(zfile, entries.nextElement(), directory);
+            }
+        }
+    }
+
+    /**
+     * Extracts one entry of a zip file. The entries can be extracted concurrently from the same ZipFile.
+     *
+     * @param zfile
+     *            the zip file
+     * @param entry
+     *            the entry to extract
+     * @param directory
+     *            the root directory of the extraction
+     * @return the extracted file or directory
+     * @throws IOException
+     */
+    public static File unzip(ZipFile zfile, ZipEntry entry, File directory) throws IOException {
+        File file = new File(directory, entry.getName());
+        if (entry.isDirectory()) {
+            file.mkdirs();
+        } else {
+            file.getParentFile().mkdirs();
+            try (InputStream in = zfile.getInputStream(entry)) {
+                copyZip(in, file);
             }
         }
+        return file;
     }
 
     private static void copy(InputStream in, OutputStream out) throws IOException {
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimpleOpManagerTest {
+
+    private SimpleOpManager manager;
+    private CountingOp crop;
+    private CountingOp window;
+    private CountingOp zoom;
+
+    @Before
+    public void setUp() {
+        crop = new CountingOp("crop"); //$NON-NLS-1$
+        window = new CountingOp("window"); //$NON-NLS-1$
+        zoom = new CountingOp("zoom"); //$NON-NLS-1$
+        manager = new SimpleOpManager();
+        manager.addImageOperationAction(crop);
+        manager.addImageOperationAction(window);
+        manager.addImageOperationAction(zoom);
+        manager.setFirstNode(new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY));
+    }
+
+    @Test
+    public void testOnlyChangedNodesAreProcessed() {
+        RenderedImage result = manager.process();
+        assertThat(result).isNotNull();
+        assertThat(manager.getExecutedNodes()).isEqualTo(3);
+
+        // Nothing has changed
+        assertThat(manager.needProcessing()).isFalse();
+        assertThat(manager.process()).isSameAs(result);
+        assertThat(manager.getExecutedNodes()).isZero();
+        assertThat(manager.getSkippedNodes()).isEqualTo(3);
+
+        // Only the last node
+        manager.setParamValue("zoom", "ratio", 2.0); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(manager.needProcessing()).isTrue();
+        manager.process();
+        assertThat(crop.count).isEqualTo(1);
+        assertThat(window.count).isEqualTo(1);
+        assertThat(zoom.count).isEqualTo(2);
+
+        // Same value
+        manager.setParamValue("zoom", "ratio", 2.0); //$NON-NLS-1$ //$NON-NLS-2$
+        manager.process();
+        assertThat(zoom.count).isEqualTo(2);
+
+        // The node and the downstream nodes
+        manager.setParamValue("window", "level", 40.0); //$NON-NLS-1$ //$NON-NLS-2$
+        manager.process();
+        assertThat(crop.count).isEqualTo(1);
+        assertThat(window.count).isEqualTo(2);
+        assertThat(zoom.count).isEqualTo(3);
+    }
+
+    @Test
+    public void testNewSourceImage() {
+        manager.process();
+        manager.setFirstNode(new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY));
+        manager.process();
+        assertThat(manager.getExecutedNodes()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDisabledNode() {
+        manager.process();
+        window.setEnabled(false);
+        manager.process();
+        assertThat(window.count).isEqualTo(1);
+        assertThat(zoom.count).isEqualTo(2);
+        assertThat(window.getParam(ImageOpNode.Param.OUTPUT_IMG))
+            .isSameAs(crop.getParam(ImageOpNode.Param.OUTPUT_IMG));
+
+        manager.process();
+        assertThat(manager.getExecutedNodes()).isZero();
+    }
+
+    @Test
+    public void testResetOutputImage() {
+        manager.process();
+        manager.resetLastNodeOutputImage();
+        assertThat(manager.needProcessing()).isTrue();
+        manager.process();
+        assertThat(manager.getExecutedNodes()).isEqualTo(1);
+        assertThat(zoom.count).isEqualTo(2);
+    }
+
+    @Test
+    public void testNotPureNodeIsAlwaysProcessed() {
+        CountingOp lut = new CountingOp("lut", false); //$NON-NLS-1$
+        manager.addImageOperationAction(lut);
+        manager.process();
+        assertThat(manager.needProcessing()).isTrue();
+        manager.process();
+        assertThat(lut.count).isEqualTo(2);
+        assertThat(manager.getSkippedNodes()).isEqualTo(3);
+        assertThat(manager.getExecutedNodes()).isEqualTo(1);
+    }
+
+    static class CountingOp extends AbstractOp {
+        private final boolean pure;
+        private int count = 0;
+
+        CountingOp(String name) {
+            this(name, true);
+        }
+
+        CountingOp(String name, boolean pure) {
+            this.pure = pure;
+            setName(name);
+        }
+
+        @Override
+        protected boolean isPure() {
+            return pure;
+        }
+
+        @Override
+        public void process() throws Exception {
+            count++;
+            RenderedImage source = (RenderedImage) params.get(Param.INPUT_IMG);
+            params.put(Param.OUTPUT_IMG, new BufferedImage(source.getWidth(), source.getHeight(),
+                BufferedImage.TYPE_BYTE_GRAY));
+        }
+
+        @Override
+        public CountingOp copy() {
+            return new CountingOp(getName(), pure);
+        }
+    }
+}
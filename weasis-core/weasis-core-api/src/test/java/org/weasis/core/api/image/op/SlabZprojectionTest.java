@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.op;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.weasis.core.api.image.op.SlabZprojection.Mode;
+
+public class SlabZprojectionTest {
+    private static final int WIDTH = 7;
+    private static final int HEIGHT = 5;
+
+    private static Raster[] buildStack(int size, int dataType, long seed) {
+        Random random = new Random(seed);
+        Raster[] stack = new Raster[size];
+        for (int i = 0; i < size; i++) {
+            WritableRaster raster = Raster.createWritableRaster(
+                new ComponentSampleModel(dataType, WIDTH, HEIGHT, 1, WIDTH, new int[] { 0 }), null);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    if (dataType == DataBuffer.TYPE_FLOAT) {
+                        raster.setSample(x, y, 0, random.nextFloat() * 100.0f - 50.0f);
+                    } else {
+                        int val =
+                            dataType == DataBuffer.TYPE_SHORT ? random.nextInt(4000) - 2000 : random.nextInt(4096);
+                        raster.setSample(x, y, 0, val);
+                    }
+                }
+            }
+            stack[i] = raster;
+        }
+        return stack;
+    }
+
+    private static double expected(Raster[] stack, Mode mode, int first, int last, int x, int y) {
+        boolean floating = stack[0].getSampleModel().getDataType() == DataBuffer.TYPE_FLOAT;
+        double res = mode == Mode.MAX ? -Double.MAX_VALUE : mode == Mode.MIN ? Double.MAX_VALUE : 0.0;
+        for (int k = first; k <= last; k++) {
+            double val = stack[k].getSampleDouble(x, y, 0);
+            if (mode == Mode.MAX) {
+                res = Math.max(res, val);
+            } else if (mode == Mode.MIN) {
+                res = Math.min(res, val);
+            } else {
+                res += val;
+            }
+        }
+        if (mode == Mode.MEAN) {
+            double mean = res / (last - first + 1);
+            return floating ? (float) mean : Math.round(mean);
+        }
+        return res;
+    }
+
+    private static void checkSlabs(Mode mode, int dataType, int size, int extend) {
+        Raster[] stack = buildStack(size, dataType, 31L * size + extend);
+        List<Integer> calls = new ArrayList<>();
+        List<Integer> read = new ArrayList<>();
+        SlabZprojection op = new SlabZprojection(mode, extend, null);
+        op.compute(size, i -> {
+            read.add(i);
+            return stack[i];
+        }, extend, size - extend, (index, first, last, raster) -> {
+            calls.add(index);
+            assertThat(first).isEqualTo(Math.max(0, index - extend));
+            assertThat(last).isEqualTo(Math.min(size - 1, index + extend));
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertThat(raster.getSampleDouble(x, y, 0))
+                        .isCloseTo(expected(stack, mode, first, last, x, y), within(1e-4));
+                }
+            }
+        });
+
+        assertThat(calls).hasSize(size - 2 * extend + 1);
+        // Each source image is read only once and in order
+        for (int i = 0; i < read.size(); i++) {
+            assertThat(read.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void testMaxProjection() {
+        checkSlabs(Mode.MAX, DataBuffer.TYPE_USHORT, 40, 3);
+        checkSlabs(Mode.MAX, DataBuffer.TYPE_SHORT, 23, 5);
+        checkSlabs(Mode.MAX, DataBuffer.TYPE_FLOAT, 9, 2);
+    }
+
+    @Test
+    public void testMinProjection() {
+        checkSlabs(Mode.MIN, DataBuffer.TYPE_USHORT, 40, 4);
+        checkSlabs(Mode.MIN, DataBuffer.TYPE_SHORT, 17, 1);
+    }
+
+    @Test
+    public void testMeanProjection() {
+        checkSlabs(Mode.MEAN, DataBuffer.TYPE_USHORT, 30, 2);
+        checkSlabs(Mode.MEAN, DataBuffer.TYPE_SHORT, 12, 5);
+        checkSlabs(Mode.MEAN, DataBuffer.TYPE_FLOAT, 15, 3);
+    }
+}
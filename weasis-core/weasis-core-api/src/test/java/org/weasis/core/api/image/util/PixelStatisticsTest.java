@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PixelStatisticsTest {
+
+    private static WritableRaster buildRaster(int dataType, int width, int height, int min, int max, long seed) {
+        WritableRaster raster = Raster.createWritableRaster(
+            new ComponentSampleModel(dataType, width, height, 1, width, new int[] { 0 }), null);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.setSample(x, y, 0, min + random.nextInt(max - min + 1));
+            }
+        }
+        return raster;
+    }
+
+    private static double[] expectedMinMax(Raster raster, double exMin, double exMax) {
+        double[] res = { Double.MAX_VALUE, -Double.MAX_VALUE };
+        for (int y = 0; y < raster.getHeight(); y++) {
+            for (int x = 0; x < raster.getWidth(); x++) {
+                for (int b = 0; b < raster.getNumBands(); b++) {
+                    double v = raster.getSampleDouble(x, y, b);
+                    if (v < exMin || v > exMax) {
+                        res[0] = Math.min(res[0], v);
+                        res[1] = Math.max(res[1], v);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    private static BufferedImage buildImage(WritableRaster raster) {
+        ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+            Transparency.OPAQUE, raster.getSampleModel().getDataType());
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    @Test
+    public void testMinMax() {
+        // Large enough to be computed in parallel
+        WritableRaster raster = buildRaster(DataBuffer.TYPE_SHORT, 700, 600, -2000, 3000, 7L);
+        BufferedImage img = buildImage(raster);
+        assertThat(PixelStatistics.getMinMax(img, null, null)).containsExactly(expectedMinMax(raster, 1.0, 0.0));
+        assertThat(PixelStatistics.getMinMax(img, -2000.0, -1500.0))
+            .containsExactly(expectedMinMax(raster, -2000.0, -1500.0));
+
+        // Sub-image of a raster
+        WritableRaster child = raster.createWritableChild(10, 20, 300, 200, 0, 0, null);
+        assertThat(PixelStatistics.getMinMax(buildImage(child), null, null))
+            .containsExactly(expectedMinMax(child, 1.0, 0.0));
+
+        // Interleaved bands
+        BufferedImage rgb = new BufferedImage(7, 5, BufferedImage.TYPE_3BYTE_BGR);
+        assertThat(PixelStatistics.getMinMax(rgb, 0.0, 0.0)).isNull();
+        rgb.getRaster().setSample(5, 3, 2, 200);
+        assertThat(PixelStatistics.getMinMax(rgb, null, null)).containsExactly(0.0, 200.0);
+    }
+
+    @Test
+    public void testValueCounts() {
+        WritableRaster raster = buildRaster(DataBuffer.TYPE_USHORT, 640, 520, 0, 4095, 3L);
+        int[] counts = PixelStatistics.getValueCounts(buildImage(raster), 100, 3900);
+        int[] expected = new int[3900];
+        for (int y = 0; y < raster.getHeight(); y++) {
+            for (int x = 0; x < raster.getWidth(); x++) {
+                int index = raster.getSample(x, y, 0) - 100;
+                expected[Math.max(0, Math.min(3899, index))]++;
+            }
+        }
+        assertThat(counts).containsExactly(expected);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LruMemoryCacheTest {
+
+    private final List<String> evicted = new ArrayList<>();
+    private LruMemoryCache<String, byte[]> cache;
+
+    @Before
+    public void setUp() {
+        evicted.clear();
+        cache = new LruMemoryCache<>(100, v -> v.length, (k, v) -> evicted.add(k));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertThat(cache.get("a")).isNotNull();
+        cache.put("c", new byte[40]);
+
+        assertThat(evicted).containsExactly("b");
+        assertThat(cache.containsKey("a")).isTrue();
+        assertThat(cache.containsKey("b")).isFalse();
+        assertThat(cache.getCurrentSize()).isEqualTo(80);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStatistics() {
+        cache.put("a", new byte[10]);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.peek("b");
+
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        cache.resetStatistics();
+        assertThat(cache.getHitCount()).isZero();
+    }
+
+    @Test
+    public void testPeekKeepsOrder() {
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertThat(cache.peek("a")).isNotNull();
+        assertThat(cache.containsKey("a")).isTrue();
+        cache.put("c", new byte[40]);
+
+        assertThat(evicted).containsExactly("a");
+        assertThat(cache.peek("a")).isNull();
+        assertThat(cache.getHitCount()).isZero();
+        assertThat(cache.getMissCount()).isZero();
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        cache.put("a", new byte[10]);
+        cache.put("a", new byte[30]);
+        assertThat(cache.getCurrentSize()).isEqualTo(30);
+
+        assertThat(cache.remove("a")).hasSize(30);
+        assertThat(cache.getCurrentSize()).isZero();
+        assertThat(evicted).isEmpty();
+    }
+
+    @Test
+    public void testKeepLargestEntry() {
+        cache.put("a", new byte[10]);
+        cache.put("big", new byte[150]);
+
+        assertThat(evicted).containsExactly("a");
+        assertThat(cache.containsKey("big")).isTrue();
+
+        cache.clear();
+        assertThat(evicted).containsExactly("a", "big");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void testReduceCapacity() {
+        cache.put("a", new byte[30]);
+        cache.put("b", new byte[30]);
+        cache.put("c", new byte[30]);
+        cache.setCapacity(50);
+
+        assertThat(evicted).containsExactly("a", "b");
+        assertThat(cache.getCapacity()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SlicePositionIndexTest {
+
+    private static SlicePositionIndex<Double> buildIndex(Double... locations) {
+        return new SlicePositionIndex<>(Arrays.asList(locations), v -> v == null ? Double.NaN : v);
+    }
+
+    @Test
+    public void testEmpty() {
+        SlicePositionIndex<Double> index = new SlicePositionIndex<>(Collections.emptyList(), v -> v);
+        assertThat(index.getNearestIndex(10.0)).isEqualTo(-1);
+        assertThat(buildIndex(null, null).getNearestIndex(10.0)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testSortedLocations() {
+        SlicePositionIndex<Double> index = buildIndex(0.0, 2.5, 5.0, 7.5, 10.0);
+        assertThat(index.getNearestIndex(-3.0)).isEqualTo(0);
+        assertThat(index.getNearestIndex(5.0)).isEqualTo(2);
+        assertThat(index.getNearestIndex(6.0)).isEqualTo(2);
+        assertThat(index.getNearestIndex(7.0)).isEqualTo(3);
+        assertThat(index.getNearestIndex(42.0)).isEqualTo(4);
+        assertThat(index.getMedia(3)).isEqualTo(7.5);
+        assertThat(index.getMedia(5)).isNull();
+        assertThat(index.getLocation(1)).isEqualTo(2.5);
+    }
+
+    @Test
+    public void testFirstMediaWhenSameDistance() {
+        SlicePositionIndex<Double> index = buildIndex(10.0, 7.5, 5.0, 5.0, null, 0.0);
+        assertThat(index.getNearestIndex(5.0)).isEqualTo(2);
+        assertThat(index.getNearestIndex(8.75)).isEqualTo(0);
+        assertThat(index.getNearestIndex(2.5)).isEqualTo(2);
+        assertThat(index.getNearestIndex(-1.0)).isEqualTo(5);
+        assertThat(index.getLocation(4)).isNaN();
+    }
+
+    @Test
+    public void testSameResultAsLinearSearch() {
+        Random random = new Random(7);
+        Double[] locations = new Double[500];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = random.nextInt(5) == 0 ? null : (double) random.nextInt(200);
+        }
+        List<Double> list = Arrays.asList(locations);
+        SlicePositionIndex<Double> index = buildIndex(locations);
+        for (int k = 0; k < 1000; k++) {
+            double location = random.nextDouble() * 220.0 - 10.0;
+            assertThat(index.getNearestIndex(location)).isEqualTo(linearSearch(list, location));
+        }
+    }
+
+    private static int linearSearch(List<Double> list, double location) {
+        int bestIndex = -1;
+        double bestDiff = Double.MAX_VALUE;
+        for (int i = 0; i < list.size(); i++) {
+            Double val = list.get(i);
+            if (val != null) {
+                double diff = Math.abs(location - val);
+                if (diff < bestDiff) {
+                    bestDiff = diff;
+                    bestIndex = i;
+                }
+            }
+        }
+        return bestIndex;
+    }
+}
@@ -55,6 +55,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
     private final SimpleOpManager disOpManager;
     private final List<ImageLayerChangeListener<E>> listenerList;
     private final List<OpEventListener> opListeners;
+    private final TileRenderer tileRenderer;
 
     private OpManager preprocessing;
     private E sourceImage;
@@ -72,6 +73,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
         this.disOpManager = Optional.ofNullable(disOpManager).orElseGet(SimpleOpManager::new);
         this.listenerList = new ArrayList<>();
         this.opListeners = new ArrayList<>();
+        this.tileRenderer = new TileRenderer();
         this.buildIterator = buildIterator;
         addEventListener(this.disOpManager);
     }
@@ -212,6 +214,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
         }
 
         Shape clip = g2d.getClip();
+        Rectangle2D visibleArea = null;
         if (clip instanceof Rectangle2D) {
             Rectangle2D rect = new Rectangle2D.Double(displayImage.getMinX(), displayImage.getMinY(),
                 displayImage.getWidth() - 1, displayImage.getHeight() - 1);
@@ -222,12 +225,17 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
             // Avoid to display one pixel outside the border line of a view.
             // rect.setRect(Math.ceil(rect.getX()), Math.ceil(rect.getY()), rect.getWidth() - 1, rect.getHeight() - 1);
             g2d.setClip(rect);
+            visibleArea = rect;
         }
 
         try {
-            g2d.drawRenderedImage(displayImage, AffineTransform.getTranslateInstance(0.0, 0.0));
+            // Compute and draw only the visible tiles, the rendered tiles are kept until the display image changes
+            if (visibleArea == null || !tileRenderer.draw(g2d, displayImage, visibleArea)) {
+                g2d.drawRenderedImage(displayImage, AffineTransform.getTranslateInstance(0.0, 0.0));
+            }
         } catch (Exception | OutOfMemoryError e) {
             LOGGER.error("Draw rendered image", e);//$NON-NLS-1$
+            tileRenderer.clear();
             if ("java.io.IOException: closed".equals(e.getMessage())) { //$NON-NLS-1$
                 // Issue when the stream has been closed of a tiled image (problem that readAsRendered do not read data
                 // immediately)
@@ -295,6 +303,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
     public void dispose() {
         sourceImage = null;
         displayImage = null;
+        tileRenderer.clear();
         listenerList.clear();
         opListeners.clear();
     }
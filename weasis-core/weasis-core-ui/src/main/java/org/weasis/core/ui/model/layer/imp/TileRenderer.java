@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.ui.model.layer.imp;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.media.jai.PlanarImage;
+
+import org.weasis.core.api.media.data.LruMemoryCache;
+import org.weasis.core.api.service.BundleTools;
+
+/**
+ * Draws the display image of a view by tiles. Only the tiles intersecting the visible area are computed. The missing
+ * tiles are computed in parallel by the JAI tile scheduler and are kept in cache until the display image changes, so
+ * panning computes only the tiles entering the view. The cache is shared by all the views.
+ */
+class TileRenderer {
+
+    /**
+     * Maximum memory (in MB) of the rendered tiles kept in cache for all the views. The default value is 128.
+     */
+    public static final String TILE_CACHE_SIZE = "weasis.image.tile.cache.size"; //$NON-NLS-1$
+
+    private static final LruMemoryCache<TileKey, BufferedImage> TILE_CACHE = new LruMemoryCache<>(
+        Math.max(1L, BundleTools.SYSTEM_PREFERENCES.getLongProperty(TILE_CACHE_SIZE, 128L)) * 1024L * 1024L,
+        TileRenderer::getMemorySize, null);
+
+    // Keys of the tiles put in the shared cache by this renderer (they may have been evicted since)
+    private final Set<TileKey> keys = new HashSet<>();
+    // The image of the tiles in cache, it changes when a parameter of the display operations changes
+    private RenderedImage image;
+
+    private static long getMemorySize(BufferedImage img) {
+        DataBuffer db = img.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+
+    public synchronized void clear() {
+        removeTiles();
+        image = null;
+    }
+
+    private void removeTiles() {
+        for (TileKey key : keys) {
+            TILE_CACHE.remove(key);
+        }
+        keys.clear();
+    }
+
+    /**
+     * Draws the tiles of the image intersecting the area.
+     *
+     * @param g2d
+     *            the graphics with the clip already set
+     * @param img
+     *            the display image
+     * @param area
+     *            the visible area in the coordinates of the image
+     * @return false if the image cannot be drawn by tiles
+     */
+    public synchronized boolean draw(Graphics2D g2d, RenderedImage img, Rectangle2D area) {
+        ColorModel cm = img.getColorModel();
+        if (cm == null) {
+            return false;
+        }
+        if (img != image) {
+            removeTiles();
+            image = img;
+        }
+
+        Rectangle bounds = area.getBounds()
+            .intersection(new Rectangle(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight()));
+        if (bounds.isEmpty()) {
+            return true;
+        }
+        int tw = img.getTileWidth();
+        int th = img.getTileHeight();
+        int offsetX = img.getTileGridXOffset();
+        int offsetY = img.getTileGridYOffset();
+        int minTx = PlanarImage.XToTileX(bounds.x, offsetX, tw);
+        int maxTx = PlanarImage.XToTileX(bounds.x + bounds.width - 1, offsetX, tw);
+        int minTy = PlanarImage.YToTileY(bounds.y, offsetY, th);
+        int maxTy = PlanarImage.YToTileY(bounds.y + bounds.height - 1, offsetY, th);
+
+        // Keep the visible tiles even when the cache is too small
+        Map<Point, BufferedImage> visibleTiles = new HashMap<>();
+        List<Point> missingTiles = new ArrayList<>();
+        for (int ty = minTy; ty <= maxTy; ty++) {
+            for (int tx = minTx; tx <= maxTx; tx++) {
+                Point p = new Point(tx, ty);
+                BufferedImage tile = TILE_CACHE.get(new TileKey(this, p));
+                if (tile == null) {
+                    missingTiles.add(p);
+                } else {
+                    visibleTiles.put(p, tile);
+                }
+            }
+        }
+
+        if (!missingTiles.isEmpty()) {
+            Point[] indices = missingTiles.toArray(new Point[missingTiles.size()]);
+            Raster[] rasters = PlanarImage.wrapRenderedImage(img).getTiles(indices);
+            if (rasters == null || rasters.length != indices.length) {
+                return false;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                BufferedImage tile = buildTileImage(cm, rasters[i]);
+                if (tile == null) {
+                    return false;
+                }
+                TileKey key = new TileKey(this, indices[i]);
+                TILE_CACHE.put(key, tile);
+                keys.add(key);
+                visibleTiles.put(indices[i], tile);
+            }
+        }
+
+        for (Map.Entry<Point, BufferedImage> entry : visibleTiles.entrySet()) {
+            Point p = entry.getKey();
+            g2d.drawImage(entry.getValue(), PlanarImage.tileXToX(p.x, offsetX, tw),
+                PlanarImage.tileYToY(p.y, offsetY, th), null);
+        }
+        return true;
+    }
+
+    private static BufferedImage buildTileImage(ColorModel cm, Raster raster) {
+        if (raster == null) {
+            return null;
+        }
+        WritableRaster wr;
+        if (raster instanceof WritableRaster) {
+            wr = ((WritableRaster) raster).createWritableTranslatedChild(0, 0);
+        } else {
+            wr = raster.createCompatibleWritableRaster(raster.getWidth(), raster.getHeight());
+            wr.setRect(-raster.getMinX(), -raster.getMinY(), raster);
+        }
+        if (!cm.isCompatibleRaster(wr)) {
+            return null;
+        }
+        return new BufferedImage(cm, wr, cm.isAlphaPremultiplied(), null);
+    }
+
+    private static final class TileKey {
+        private final TileRenderer renderer;
+        private final Point tile;
+
+        TileKey(TileRenderer renderer, Point tile) {
+            this.renderer = renderer;
+            this.tile = tile;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(renderer) + tile.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return renderer == other.renderer && tile.equals(other.tile);
+        }
+    }
+}
@@ -14,17 +14,14 @@ import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
-import java.awt.image.renderable.ParameterBlock;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 import javax.media.jai.Histogram;
-import javax.media.jai.JAI;
 import javax.media.jai.LookupTableJAI;
-import javax.media.jai.OpImage;
-import javax.media.jai.ROI;
 import javax.media.jai.RenderedOp;
 import javax.media.jai.operator.FormatDescriptor;
 import javax.media.jai.operator.LookupDescriptor;
@@ -39,28 +36,26 @@ import org.weasis.core.api.gui.util.MathUtil;
 import org.weasis.core.api.image.LutShape;
 import org.weasis.core.api.image.PseudoColorOp;
 import org.weasis.core.api.image.WindowOp;
-import org.weasis.core.api.image.op.ImageStatisticsDescriptor;
-import org.weasis.core.api.image.util.ImageToolkit;
 import org.weasis.core.api.image.util.LayoutUtil;
+import org.weasis.core.api.image.util.PixelStatistics;
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.ImageElement;
-import org.weasis.core.api.media.data.SoftHashMap;
 import org.weasis.core.api.media.data.TagReadable;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.dicom.codec.display.PresetWindowLevel;
 import org.weasis.dicom.codec.display.WindowAndPresetsOp;
 import org.weasis.dicom.codec.geometry.GeometryOfSlice;
 import org.weasis.dicom.codec.utils.DicomImageUtils;
+import org.weasis.dicom.codec.utils.LutCache;
 import org.weasis.dicom.codec.utils.LutParameters;
 
 public class DicomImageElement extends ImageElement {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DicomImageElement.class);
 
-    private static final SoftHashMap<LutParameters, LookupTableJAI> LUT_Cache = new SoftHashMap<>();
-
     private volatile List<PresetWindowLevel> windowingPresetCollection = null;
     private volatile Collection<LutShape> lutShapeCollection = null;
+    private volatile HistogramEntry histogramCache = null;
 
     public DicomImageElement(DcmMediaReader mediaIO, Object key) {
         super(mediaIO, key);
@@ -389,7 +384,7 @@ public class DicomImageElement extends ImageElement {
         if (lutparams == null) {
             return null;
         }
-        LookupTableJAI modalityLookup = LUT_Cache.get(lutparams);
+        LookupTableJAI modalityLookup = LutCache.getModalityLut(lutparams);
 
         if (modalityLookup != null) {
             return modalityLookup;
@@ -420,7 +415,7 @@ public class DicomImageElement extends ImageElement {
         if (isPhotometricInterpretationMonochrome()) {
             DicomImageUtils.applyPixelPaddingToModalityLUT(modalityLookup, lutparams);
         }
-        LUT_Cache.put(lutparams, modalityLookup);
+        LutCache.putModalityLut(lutparams, modalityLookup);
         return modalityLookup;
     }
 
@@ -455,7 +450,7 @@ public class DicomImageElement extends ImageElement {
             maxValue = maxLevel.intValue();
         }
 
-        return DicomImageUtils.createWindowLevelLut(shape, window, level, minValue, maxValue, 8, false,
+        return LutCache.getVoiLut(shape, window, level, minValue, maxValue,
             isPhotometricInterpretationInverse(tagable));
     }
 
@@ -516,24 +511,80 @@ public class DicomImageElement extends ImageElement {
         }
         // TODO instead of computing histo from image get Dicom attribute if present. Handle pixel padding!
 
-        ParameterBlock pb = new ParameterBlock();
-        pb.addSource(imageSource);
-        pb.add(lookup);
-        final RenderedImage imageModalityTransformed = JAI.create("lookup", pb, null); //$NON-NLS-1$
+        HistogramEntry entry = histogramCache;
+        if (entry != null && entry.isValid(imageSource, lookup)) {
+            return entry.histogram;
+        }
 
-        pb.removeSources();
-        pb.removeParameters();
+        int numBins = getAllocatedOutRangeSize();
+        double lowValue = getMinAllocatedValue(tagable, pixelPadding);
+        double highValue = getMaxAllocatedValue(tagable, pixelPadding);
+        Histogram histogram = new Histogram(new int[] { numBins }, new double[] { lowValue },
+            new double[] { highValue });
+
+        // Count the raw values and then transform the counts with the modality lookup table
+        int offset = lookup.getOffset();
+        int[] counts = PixelStatistics.getValueCounts(imageSource, offset, lookup.getNumEntries());
+        int[] bins = histogram.getBins(0);
+        double binWidth = (highValue - lowValue) / numBins;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                int val = lookup.lookup(0, offset + i);
+                if (val >= lowValue && val < highValue) {
+                    bins[Math.min(numBins - 1, (int) ((val - lowValue) / binWidth))] += counts[i];
+                }
+            }
+        }
+        histogramCache = new HistogramEntry(imageSource, lookup, histogram);
+        return histogram;
+    }
 
-        pb.addSource(imageModalityTransformed);
-        pb.add(null); // No ROI
-        pb.add(1); // Sampling
-        pb.add(1); // periods
-        pb.add(new int[] { getAllocatedOutRangeSize() }); // Num. bins.
-        pb.add(new double[] { getMinAllocatedValue(tagable, pixelPadding) }); // Min value to be considered.
-        pb.add(new double[] { getMaxAllocatedValue(tagable, pixelPadding) }); // Max value to be considered.
+    @Override
+    protected int getPreviewSubsampling(int maxSize) {
+        Integer rows = TagD.getTagValue(this, Tag.Rows, Integer.class);
+        Integer columns = TagD.getTagValue(this, Tag.Columns, Integer.class);
+        if (rows == null || columns == null || maxSize <= 0) {
+            return 1;
+        }
+        int size = Math.max(rows, columns);
+        int subsampling = 1;
+        while (size / (subsampling * 2) >= maxSize) {
+            subsampling *= 2;
+        }
+        return subsampling;
+    }
 
-        RenderedOp op = JAI.create("histogram", pb, ImageToolkit.NOCACHE_HINT); //$NON-NLS-1$
-        return (Histogram) op.getProperty("histogram"); //$NON-NLS-1$
+    @Override
+    protected RenderedImage getReducedRenderedImage(RenderedImage reduced) {
+        if (!isPhotometricInterpretationMonochrome()) {
+            // The palette requires the full image
+            return "PALETTE COLOR".equalsIgnoreCase(getPhotometricInterpretation()) ? null : reduced; //$NON-NLS-1$
+        }
+        if (getTagValue(TagW.ModalityLUTData) != null) {
+            return null;
+        }
+        double slope = getRescaleSlope(null);
+        double intercept = getRescaleIntercept(null);
+        double window;
+        double level;
+        double[] windowList = TagD.getTagValue(this, Tag.WindowWidth, double[].class);
+        double[] levelList = TagD.getTagValue(this, Tag.WindowCenter, double[].class);
+        if (windowList != null && levelList != null && windowList.length > 0 && levelList.length > 0
+            && windowList[0] > 0.0) {
+            // First DICOM preset, like the default preset of the full image
+            window = windowList[0];
+            level = levelList[0];
+        } else {
+            double[] minMax = PixelStatistics.getMinMax(reduced, null, null);
+            if (minMax == null) {
+                return null;
+            }
+            double min = minMax[0] * slope + intercept;
+            double max = minMax[1] * slope + intercept;
+            window = Math.max(Math.abs(max - min), 1.0);
+            level = (min + max) / 2.0;
+        }
+        return getWindowedImage(reduced, slope, intercept, window, level, isPhotometricInterpretationInverse(null));
     }
 
     @Override
@@ -605,26 +656,15 @@ public class DicomImageElement extends ImageElement {
                 this.minPixelValue = 0.0;
                 this.maxPixelValue = 255.0;
             } else {
-                RenderedOp dst = ImageStatisticsDescriptor.create(img, (ROI) null, 1, 1, new Double(paddingValueMin),
-                    new Double(paddingValueMax), null);
-                // To ensure this image won't be stored in tile cache
-                ((OpImage) dst.getRendering()).setTileCache(null);
-
-                double[][] extrema = (double[][]) dst.getProperty("statistics"); //$NON-NLS-1$
-                double min = Double.MAX_VALUE;
-                double max = -Double.MAX_VALUE;
-                int numBands = dst.getSampleModel().getNumBands();
-
-                for (int i = 0; i < numBands; i++) {
-                    min = Math.min(min, extrema[0][i]);
-                    max = Math.max(max, extrema[1][i]);
-                }
-                this.minPixelValue = min;
-                this.maxPixelValue = max;
-                // Handle special case when min and max are equal, ex. black image
-                // + 1 to max enables to display the correct value
-                if (this.minPixelValue.equals(this.maxPixelValue)) {
-                    this.maxPixelValue += 1.0;
+                double[] minMax = PixelStatistics.getMinMax(img, paddingValueMin, paddingValueMax);
+                if (minMax != null) {
+                    this.minPixelValue = minMax[0];
+                    this.maxPixelValue = minMax[1];
+                    // Handle special case when min and max are equal, ex. black image
+                    // + 1 to max enables to display the correct value
+                    if (this.minPixelValue.equals(this.maxPixelValue)) {
+                        this.maxPixelValue += 1.0;
+                    }
                 }
             }
         }
@@ -762,6 +802,11 @@ public class DicomImageElement extends ImageElement {
             }
 
             if (prLutData == null) {
+                LookupTableJAI fusedLookup = LutCache.getFusedLut(modalityLookup, voiLookup);
+                if (fusedLookup != null) {
+                    // Single lookup from the raw values to the display values
+                    return LookupDescriptor.create(imageSource, fusedLookup, LayoutUtil.createGrayRenderedImage());
+                }
                 // BUG fix: for some images the color model is null. Creating 8 bits gray model layout fixes this issue.
                 return LookupDescriptor.create(imageModalityTransformed, voiLookup,
                     LayoutUtil.createGrayRenderedImage());
@@ -838,4 +883,23 @@ public class DicomImageElement extends ImageElement {
         return null;
     }
 
+    /**
+     * Histogram of an image computed with a modality lookup table. The image is weakly referenced to not retain the
+     * images removed from the cache.
+     */
+    private static final class HistogramEntry {
+        private final WeakReference<RenderedImage> image;
+        private final LookupTableJAI lookup;
+        private final Histogram histogram;
+
+        HistogramEntry(RenderedImage image, LookupTableJAI lookup, Histogram histogram) {
+            this.image = new WeakReference<>(image);
+            this.lookup = lookup;
+            this.histogram = histogram;
+        }
+
+        boolean isValid(RenderedImage img, LookupTableJAI lut) {
+            return img == image.get() && lut == lookup;
+        }
+    }
 }
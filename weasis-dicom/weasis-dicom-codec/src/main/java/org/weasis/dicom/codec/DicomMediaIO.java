@@ -34,7 +34,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteOrder;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -43,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
@@ -50,7 +50,6 @@ import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageInputStreamImpl;
 import javax.media.jai.JAI;
@@ -258,6 +257,9 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         });
     }
 
+    // Class name of the decoder by transfer syntax
+    private static final String UNKNOWN_DECODER = "unknown"; //$NON-NLS-1$
+    private static final Map<String, String> DECODER_CLASS_NAMES = new ConcurrentHashMap<>();
     private static final SoftHashMap<DicomMediaIO, DicomMetaData> HEADER_CACHE =
         new SoftHashMap<DicomMediaIO, DicomMetaData>() {
 
@@ -289,7 +291,8 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
     private final Map<TagW, Object> tags;
     private volatile MediaElement[] image = null;
     private volatile String mimeType;
-    private final ArrayList<Integer> fragmentsPositions = new ArrayList<>();
+    // Built once for the file, it is kept when the stream is closed
+    private volatile FrameOffsetIndex frameOffsetIndex;
 
     private volatile ImageInputStream iis;
     private DicomInputStream dis;
@@ -349,6 +352,26 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         return dcmMetadata != null && "data".equals(uri.getScheme());
     }
 
+    /**
+     * Sets the header of the file when it is already known (e.g. from a persistent index), so the file is not parsed
+     * for building the model. The file is read only when the pixel data is required.
+     *
+     * @param fmi
+     *            the file meta information
+     * @param header
+     *            the attributes of the file without the pixel data
+     * @param hasPixelData
+     *            true when the file contains pixel data
+     */
+    public synchronized void setHeader(Attributes fmi, Attributes header, boolean hasPixelData) {
+        Objects.requireNonNull(header);
+        if (hasPixelData) {
+            numberOfFrame = header.getInt(Tag.NumberOfFrames, 1);
+            hasPixel = header.getInt(Tag.BitsStored, header.getInt(Tag.BitsAllocated, 0)) > 0;
+        }
+        HEADER_CACHE.put(this, new DicomMetaData(fmi, header));
+    }
+
     public boolean isReadableDicom() {
         if (UNREADABLE.equals(mimeType)) {
             // Return true only to display the error message in the view
@@ -723,6 +746,22 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         return null;
     }
 
+    @Override
+    public PlanarImage getReducedImageFragment(MediaElement media, int subsampling) throws Exception {
+        if (subsampling > 1 && media != null && media.getKey() instanceof Integer && isReadableDicom()) {
+            int frame = (Integer) media.getKey();
+            readMetaData(true);
+            // The resolution levels of JPEG 2000 are decoded without decoding the full resolution
+            if (frame >= 0 && frame < numberOfFrame && hasPixel && decompressor != null
+                && (UID.JPEG2000LosslessOnly.equals(tsuid) || UID.JPEG2000.equals(tsuid))) {
+                ImageReadParam param = getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return getValidImage(readAsRenderedImage(frame, param), media);
+            }
+        }
+        return null;
+    }
+
     private PlanarImage getValidImage(RenderedImage buffer, MediaElement media) {
         PlanarImage img = null;
         if (buffer != null) {
@@ -895,6 +934,51 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         return BundleTools.getCodec(DicomMediaIO.MIMETYPE, DicomCodec.NAME);
     }
 
+    @Override
+    public boolean isDecoderThreadSafe() {
+        /*
+         * Imageio issue with native library in multi-thread environment (to avoid JVM crash let only one simultaneous
+         * thread) (https://java.net/jira/browse/JAI_IMAGEIO_CORE-126)
+         */
+        String className = getDecoderClassName();
+        return !UNKNOWN_DECODER.equals(className)
+            && !className.startsWith("com.sun.media.imageioimpl.plugins.clib.") //$NON-NLS-1$
+            && !className.endsWith("CodecLib"); //$NON-NLS-1$
+    }
+
+    @Override
+    public String getDecoderName() {
+        String className = getDecoderClassName();
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * The decoder is found from the transfer syntax of the header: the decompressor is only created when reading the
+     * pixel data and is released by reset().
+     */
+    private String getDecoderClassName() {
+        String ts = TagD.getTagValue(this, Tag.TransferSyntaxUID, String.class);
+        return ts == null ? RawImageReader.class.getName()
+            : DECODER_CLASS_NAMES.computeIfAbsent(ts, DicomMediaIO::findDecoderClassName);
+    }
+
+    private static String findDecoderClassName(String tsuid) {
+        ImageReaderFactory.ImageReaderItem readerItem;
+        try {
+            readerItem = ImageReaderFactory.getImageReader(tsuid);
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot get the decoder of {}", tsuid, e); //$NON-NLS-1$
+            return UNKNOWN_DECODER;
+        }
+        if (readerItem == null) {
+            // Raw data are read by the java RawImageReader
+            return RawImageReader.class.getName();
+        }
+        ImageReader reader = readerItem.getImageReader();
+        reader.dispose();
+        return reader.getClass().getName();
+    }
+
     @Override
     public String[] getReaderDescription() {
         String[] desc = new String[3];
@@ -993,62 +1077,16 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
     }
 
     private SegmentedInputImageStream buildSegmentedImageInputStream(int frameIndex) throws IOException {
-        int nbFragments = pixeldataFragments.size();
-        long[] offsets;
-        int[] length;
-        if (numberOfFrame >= nbFragments - 1) {
-            // nbFrames > nbFragments should never happen
-            offsets = new long[1];
-            length = new int[offsets.length];
-            int index = frameIndex < nbFragments - 1 ? frameIndex + 1 : nbFragments - 1;
-            BulkData bulkData = (BulkData) pixeldataFragments.get(index);
-            offsets[0] = bulkData.offset();
-            length[0] = bulkData.length();
-        } else {
-            if (numberOfFrame == 1) {
-                offsets = new long[nbFragments - 1];
-                length = new int[offsets.length];
-                for (int i = 0; i < length.length; i++) {
-                    BulkData bulkData = (BulkData) pixeldataFragments.get(i + frameIndex + 1);
-                    offsets[i] = bulkData.offset();
-                    length[i] = bulkData.length();
-                }
-            } else {
-                // Multi-frames where each frames can have multiple fragments.
-                if (fragmentsPositions.isEmpty()) {
-                    if (decompressor == null) {
-                        throw new IOException("no decompressor!");
-                    }
-
-                    for (int i = 1; i < nbFragments; i++) {
-                        BulkData bulkData = (BulkData) pixeldataFragments.get(i);
-                        ImageReaderSpi provider = decompressor.getOriginatingProvider();
-                        if (provider.canDecodeInput(new org.dcm4che3.imageio.stream.SegmentedInputImageStream(iis,
-                            new long[] { bulkData.offset() }, new int[] { bulkData.length() }))) {
-                            fragmentsPositions.add(i);
-                        }
-                    }
-                }
-
-                if (fragmentsPositions.size() == numberOfFrame) {
-                    int start = fragmentsPositions.get(frameIndex);
-                    int end = (frameIndex + 1) >= fragmentsPositions.size() ? nbFragments
-                        : fragmentsPositions.get(frameIndex + 1);
-
-                    offsets = new long[end - start];
-                    length = new int[offsets.length];
-                    for (int i = 0; i < offsets.length; i++) {
-                        BulkData bulkData = (BulkData) pixeldataFragments.get(start + i);
-                        offsets[i] = bulkData.offset();
-                        length[i] = bulkData.length();
-                    }
-                } else {
-                    throw new IOException("Cannot match all the fragments to all the frames!");
-                }
-            }
+        FrameOffsetIndex index = frameOffsetIndex;
+        if (index == null || index.getNumberOfFrames() != numberOfFrame) {
+            ImageReader reader = decompressor;
+            // Do not use getDicomObject(), reading the header again would close the stream
+            DicomMetaData md = HEADER_CACHE.get(this);
+            index = FrameOffsetIndex.build(pixeldataFragments, numberOfFrame, md == null ? null : md.getAttributes(),
+                iis, reader == null ? null : reader.getOriginatingProvider());
+            frameOffsetIndex = index;
         }
-
-        return new org.dcm4che3.imageio.stream.SegmentedInputImageStream(iis, offsets, length);
+        return index.getFrameStream(iis, frameIndex);
     }
 
     @Override
@@ -1064,14 +1102,17 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
             checkIndex(frameIndex);
 
             if (decompressor != null) {
-                decompressor.setInput(iisOfFrame(frameIndex));
-
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Start decompressing frame #" + (frameIndex + 1)); //$NON-NLS-1$
                 }
-                Raster wr = pmi.decompress() == pmi && decompressor.canReadRaster()
-                    ? decompressor.readRaster(0, decompressParam(param))
-                    : decompressor.read(0, decompressParam(param)).getRaster();
+                Raster wr;
+                // The frames can be read by several threads (e.g. prefetching), the input is set for each frame
+                synchronized (decompressor) {
+                    decompressor.setInput(iisOfFrame(frameIndex));
+                    wr = pmi.decompress() == pmi && decompressor.canReadRaster()
+                        ? decompressor.readRaster(0, decompressParam(param))
+                        : decompressor.read(0, decompressParam(param)).getRaster();
+                }
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Finished decompressing frame #" + (frameIndex + 1)); //$NON-NLS-1$
                 }
@@ -1104,6 +1145,10 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         }
         decompressParam.setDestinationType(imageType);
         decompressParam.setDestination(dest);
+        // Allows the decoders to read only a region or a reduced resolution (e.g. J2K)
+        decompressParam.setSourceRegion(param.getSourceRegion());
+        decompressParam.setSourceSubsampling(param.getSourceXSubsampling(), param.getSourceYSubsampling(),
+            param.getSubsamplingXOffset(), param.getSubsamplingYOffset());
         if (decompressParam instanceof SignedDataImageParam) {
             ((SignedDataImageParam) decompressParam).setSignedData(dataType == DataBuffer.TYPE_SHORT);
         }
@@ -1121,11 +1166,14 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
 
             WritableRaster raster;
             if (decompressor != null) {
-                decompressor.setInput(iisOfFrame(frameIndex));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Start decompressing frame #" + (frameIndex + 1)); //$NON-NLS-1$
                 }
-                BufferedImage bi = decompressor.read(0, decompressParam(param));
+                BufferedImage bi;
+                synchronized (decompressor) {
+                    decompressor.setInput(iisOfFrame(frameIndex));
+                    bi = decompressor.read(0, decompressParam(param));
+                }
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Finished decompressing frame #" + (frameIndex + 1)); //$NON-NLS-1$
                 }
@@ -1153,8 +1201,10 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
 
             RenderedImage bi;
             if (decompressor != null) {
-                decompressor.setInput(iisOfFrame(frameIndex));
-                bi = decompressor.readAsRenderedImage(0, decompressParam(param));
+                synchronized (decompressor) {
+                    decompressor.setInput(iisOfFrame(frameIndex));
+                    bi = decompressor.readAsRenderedImage(0, decompressParam(param));
+                }
             } else {
                 // Rewrite image with subsampled model (otherwise cannot not be displayed as RenderedImage)
                 // Convert YBR_FULL into RBG as the ybr model is not well supported.
@@ -10,22 +10,21 @@
  *******************************************************************************/
 package org.weasis.dicom.codec;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-
-import javax.media.jai.PlanarImage;
+import java.util.Map;
 
 import org.dcm4che3.data.Tag;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.gui.util.Filter;
-import org.weasis.core.api.gui.util.MathUtil;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SeriesEvent;
+import org.weasis.core.api.media.data.SeriesPrefetcher;
+import org.weasis.core.api.media.data.SlicePositionIndex;
 import org.weasis.core.api.media.data.TagView;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.util.FileUtil;
@@ -33,12 +32,15 @@ import org.weasis.core.api.util.StringUtil;
 import org.weasis.dicom.codec.TagD.Level;
 
 public class DicomSeries extends Series<DicomImageElement> {
-    private static final Logger LOGGER = LoggerFactory.getLogger(DicomSeries.class);
 
     static final TagView defaultTagView =
         new TagView(TagD.getTagFromIDs(Tag.SeriesDescription, Tag.SeriesNumber, Tag.SeriesTime));
 
-    private static volatile PreloadingTask preloadingTask;
+    private static final SeriesPrefetcher<DicomImageElement> PREFETCHER = new SeriesPrefetcher<>();
+    private static final int MAX_POSITION_INDEXES = 6;
+
+    private final Map<Comparator<DicomImageElement>, SlicePositionIndex<DicomImageElement>> positionIndexes =
+        new HashMap<>(6);
 
     public DicomSeries(String subseriesInstanceUID) {
         this(subseriesInstanceUID, null, defaultTagView);
@@ -133,208 +135,105 @@ public class DicomSeries extends Series<DicomImageElement> {
     }
 
     @Override
-    public DicomImageElement getNearestImage(double location, int offset, Filter<DicomImageElement> filter,
-        Comparator<DicomImageElement> sort) {
-        Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
-        DicomImageElement nearest = null;
-        int index = 0;
-        int bestIndex = -1;
+    protected void resetSortedMediasMap() {
+        super.resetSortedMediasMap();
         synchronized (this) {
-            double bestDiff = Double.MAX_VALUE;
-            for (Iterator<DicomImageElement> iter = mediaList.iterator(); iter.hasNext();) {
-                DicomImageElement dcm = iter.next();
-                double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                if (val != null) {
-                    double diff = Math.abs(location - (val[0] + val[1] + val[2]));
-                    if (diff < bestDiff) {
-                        bestDiff = diff;
-                        nearest = dcm;
-                        bestIndex = index;
-                        if (MathUtil.isEqualToZero(diff)) {
-                            break;
-                        }
-                    }
-                }
-                index++;
-            }
+            positionIndexes.clear();
         }
-        if (offset > 0) {
-            return getMedia(bestIndex + offset, filter, sort);
+    }
+
+    @Override
+    public DicomImageElement getNearestImage(double location, int offset, Filter<DicomImageElement> filter,
+        Comparator<DicomImageElement> sort) {
+        SlicePositionIndex<DicomImageElement> index = getSlicePositionIndex(sort);
+        if (filter == null) {
+            int bestIndex = index.getNearestIndex(location);
+            return index.getMedia(offset > 0 ? bestIndex + offset : bestIndex);
         }
-        return nearest;
+
+        List<DicomImageElement> filteredList = new ArrayList<>();
+        int bestIndex = getNearestFilteredIndex(index, location, filter, filteredList);
+        int pos = offset > 0 ? bestIndex + offset : bestIndex;
+        return pos >= 0 && pos < filteredList.size() ? filteredList.get(pos) : null;
     }
 
     @Override
     public int getNearestImageIndex(double location, int offset, Filter<DicomImageElement> filter,
         Comparator<DicomImageElement> sort) {
-        Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
-        int index = 0;
+        SlicePositionIndex<DicomImageElement> index = getSlicePositionIndex(sort);
+        int bestIndex = filter == null ? index.getNearestIndex(location)
+            : getNearestFilteredIndex(index, location, filter, null);
+        return (offset > 0) ? (bestIndex + offset) : bestIndex;
+    }
+
+    /**
+     * The result of a filter can change (e.g. the selection of a Key Object), so the filtered list is not indexed but
+     * the locations are taken from the index of the sorted list.
+     */
+    private static int getNearestFilteredIndex(SlicePositionIndex<DicomImageElement> index, double location,
+        Filter<DicomImageElement> filter, List<DicomImageElement> filteredList) {
+        int k = 0;
         int bestIndex = -1;
-        synchronized (this) {
-            double bestDiff = Double.MAX_VALUE;
-            for (Iterator<DicomImageElement> iter = mediaList.iterator(); iter.hasNext();) {
-                DicomImageElement dcm = iter.next();
-                double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                if (val != null) {
-                    double diff = Math.abs(location - (val[0] + val[1] + val[2]));
+        double bestDiff = Double.MAX_VALUE;
+        for (int i = 0; i < index.size(); i++) {
+            DicomImageElement dcm = index.getMedia(i);
+            if (filter.passes(dcm)) {
+                double val = index.getLocation(i);
+                if (!Double.isNaN(val)) {
+                    double diff = Math.abs(location - val);
                     if (diff < bestDiff) {
                         bestDiff = diff;
-                        bestIndex = index;
-                        if (MathUtil.isEqualToZero(diff)) {
-                            break;
-                        }
+                        bestIndex = k;
                     }
                 }
-                index++;
+                if (filteredList != null) {
+                    filteredList.add(dcm);
+                }
+                k++;
             }
         }
-
-        return (offset > 0) ? (bestIndex + offset) : bestIndex;
+        return bestIndex;
     }
 
-    public static synchronized void startPreloading(DicomSeries series, List<DicomImageElement> imageList,
-        int currentIndex) {
-        if (series != null && imageList != null) {
-            if (preloadingTask != null) {
-                if (preloadingTask.getSeries() == series) {
-                    return;
+    /**
+     * Returns the index of the slice locations for the list of images in this order. The index is built when required
+     * and cleared when the series changes.
+     */
+    private SlicePositionIndex<DicomImageElement> getSlicePositionIndex(Comparator<DicomImageElement> sort) {
+        synchronized (this) {
+            SlicePositionIndex<DicomImageElement> index = positionIndexes.get(sort);
+            if (index == null) {
+                if (positionIndexes.size() >= MAX_POSITION_INDEXES) {
+                    positionIndexes.clear();
                 }
-                stopPreloading(preloadingTask.getSeries());
+                index = new SlicePositionIndex<>(copyOfMedias(null, sort), DicomSeries::getSliceLocation);
+                positionIndexes.put(sort, index);
             }
-            preloadingTask = new PreloadingTask(series, imageList, currentIndex);
-            preloadingTask.start();
+            return index;
         }
     }
 
-    public static synchronized void stopPreloading(DicomSeries series) {
-        if (preloadingTask != null && preloadingTask.getSeries() == series) {
-            PreloadingTask moribund = preloadingTask;
-            preloadingTask = null;
-            if (moribund != null) {
-                moribund.setPreloading(false);
-                moribund.interrupt();
-            }
-        }
+    private static double getSliceLocation(DicomImageElement dcm) {
+        double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
+        return val == null ? Double.NaN : val[0] + val[1] + val[2];
     }
 
-    static class PreloadingTask extends Thread {
-        private volatile boolean preloading = true;
-        private final int index;
-        private final List<DicomImageElement> imageList;
-        private final DicomSeries series;
-
-        public PreloadingTask(DicomSeries series, List<DicomImageElement> imageList, int currentIndex) {
-            this.series = series;
-            this.imageList = imageList;
-            this.index = currentIndex;
-        }
-
-        public synchronized boolean isPreloading() {
-            return preloading;
-        }
-
-        public DicomSeries getSeries() {
-            return series;
-        }
-
-        public List<DicomImageElement> getImageList() {
-            return imageList;
-        }
-
-        public synchronized void setPreloading(boolean preloading) {
-            this.preloading = preloading;
-        }
-
-        private static void freeMemory() {
-            System.gc();
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException ex) {
-            }
-        }
-
-        private static long evaluateImageSize(DicomImageElement image) {
-            Integer allocated = TagD.getTagValue(image, Tag.BitsAllocated, Integer.class);
-            Integer sample = TagD.getTagValue(image, Tag.SamplesPerPixel, Integer.class);
-            Integer rows = TagD.getTagValue(image, Tag.Rows, Integer.class);
-            Integer columns = TagD.getTagValue(image, Tag.Columns, Integer.class);
-            if (allocated != null && sample != null && rows != null && columns != null) {
-                return (rows * columns * sample * allocated) / 8L;
-            }
-            return 0L;
-        }
+    /**
+     * Starts prefetching the images following the current index.
+     *
+     * @param fps
+     *            the cine speed (frames per second) or 0 when not playing
+     */
+    public static void startPreloading(DicomSeries series, Filter<DicomImageElement> filter,
+        Comparator<DicomImageElement> sort, int currentIndex, int fps) {
+        PREFETCHER.update(series, filter, sort, currentIndex, fps);
+    }
 
-        private void loadArrays(DicomImageElement img, DataExplorerModel model) {
-            // Do not load an image if another process already loading it
-            if (preloading && !img.isLoading()) {
-                Boolean cache = (Boolean) img.getTagValue(TagW.ImageCache);
-                if (cache == null || !cache) {
-                    long start = System.currentTimeMillis();
-                    PlanarImage i = img.getImage();
-                    if (i != null) {
-                        int tymin = i.getMinTileY();
-                        int tymax = i.getMaxTileY();
-                        int txmin = i.getMinTileX();
-                        int txmax = i.getMaxTileX();
-                        for (int tj = tymin; tj <= tymax; tj++) {
-                            for (int ti = txmin; ti <= txmax; ti++) {
-                                try {
-                                    i.getTile(ti, tj);
-                                } catch (OutOfMemoryError e) {
-                                    LOGGER.error("Out of memory when loading image: {}", img, e); //$NON-NLS-1$
-                                    freeMemory();
-                                    return;
-                                }
-                            }
-                        }
-                    }
-                    long stop = System.currentTimeMillis();
-                    LOGGER.debug("Reading time: {} ms of image: {}", stop - start, img); //$NON-NLS-1$
-                    if (model != null) {
-                        model.firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.ADD, model, null,
-                            new SeriesEvent(SeriesEvent.Action.PRELOADING, series, img)));
-                    }
-                }
-            }
-        }
+    public static void stopPreloading(DicomSeries series) {
+        PREFETCHER.stop(series);
+    }
 
-        @Override
-        public void run() {
-            if (imageList != null) {
-                DataExplorerModel model = (DataExplorerModel) series.getTagValue(TagW.ExplorerModel);
-                int size = imageList.size();
-                if (model == null || index < 0 || index >= size) {
-                    return;
-                }
-                long imgSize = evaluateImageSize(imageList.get(index)) * size + 5000;
-                long heapSize = Runtime.getRuntime().totalMemory();
-                long heapFreeSize = Runtime.getRuntime().freeMemory();
-                if (imgSize > heapSize / 3) {
-                    if (imgSize > heapFreeSize) {
-                        freeMemory();
-                    }
-                    double val = (double) heapFreeSize / imgSize;
-                    int ajustSize = (int) (size * val) / 2;
-                    int start = index - ajustSize;
-                    if (start < 0) {
-                        ajustSize -= start;
-                        start = 0;
-                    }
-                    if (ajustSize > size) {
-                        ajustSize = size;
-                    }
-                    for (int i = start; i < ajustSize; i++) {
-                        loadArrays(imageList.get(i), model);
-                    }
-                } else {
-                    if (imgSize > heapFreeSize) {
-                        freeMemory();
-                    }
-                    for (DicomImageElement img : imageList) {
-                        loadArrays(img, model);
-                    }
-                }
-            }
-        }
+    public static SeriesPrefetcher<DicomImageElement> getPrefetcher() {
+        return PREFETCHER;
     }
 }
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import java.io.IOException;
+
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.imageio.stream.SegmentedInputImageStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Positions of the compressed fragments of each frame of an encapsulated pixel data. The index is built once for a
+ * file and the stream of a frame is built without reading the file again.
+ *
+ * When a frame has several fragments, the first fragment of each frame is given by the Extended Offset Table or by the
+ * Basic Offset Table. When both are empty, the fragments are read for finding the ones which can be decoded as the
+ * beginning of an image.
+ */
+final class FrameOffsetIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameOffsetIndex.class);
+
+    // Not in the dictionary of the current dcm4che version
+    private static final int EXTENDED_OFFSET_TABLE = 0x7FE00001;
+
+    // Size of the header (tag and length) of an item
+    private static final int ITEM_HEADER = 8;
+
+    private final long[] fragmentOffsets;
+    private final int[] fragmentLengths;
+    // Index of the first fragment of each frame (inclusive) and of the last one (exclusive)
+    private final int[] frameStart;
+    private final int[] frameEnd;
+
+    private FrameOffsetIndex(long[] fragmentOffsets, int[] fragmentLengths, int[] frameStart, int[] frameEnd) {
+        this.fragmentOffsets = fragmentOffsets;
+        this.fragmentLengths = fragmentLengths;
+        this.frameStart = frameStart;
+        this.frameEnd = frameEnd;
+    }
+
+    /**
+     * Builds the index of the frames.
+     *
+     * @param fragments
+     *            the fragments of the pixel data, the first one is the Basic Offset Table
+     * @param numberOfFrames
+     *            the number of frames
+     * @param header
+     *            the attributes containing the Extended Offset Table, can be null
+     * @param iis
+     *            the stream of the file
+     * @param provider
+     *            the provider of the decoder, required only when the offset tables are empty
+     * @return the index
+     * @throws IOException
+     *             when the fragments cannot be matched to the frames
+     */
+    static FrameOffsetIndex build(Fragments fragments, int numberOfFrames, Attributes header, ImageInputStream iis,
+        ImageReaderSpi provider) throws IOException {
+        // Skip the Basic Offset Table
+        int nbFragments = fragments.size() - 1;
+        if (nbFragments < 1 || numberOfFrames < 1) {
+            throw new IOException("No fragment in the pixel data!"); //$NON-NLS-1$
+        }
+        long[] offsets = new long[nbFragments];
+        int[] lengths = new int[nbFragments];
+        for (int i = 0; i < nbFragments; i++) {
+            BulkData bulkData = (BulkData) fragments.get(i + 1);
+            offsets[i] = bulkData.offset();
+            lengths[i] = bulkData.length();
+        }
+
+        int[] start = new int[numberOfFrames];
+        int[] end = new int[numberOfFrames];
+        if (numberOfFrames >= nbFragments) {
+            // One fragment by frame (nbFrames > nbFragments should never happen)
+            for (int i = 0; i < numberOfFrames; i++) {
+                start[i] = Math.min(i, nbFragments - 1);
+                end[i] = start[i] + 1;
+            }
+        } else if (numberOfFrames == 1) {
+            start[0] = 0;
+            end[0] = nbFragments;
+        } else {
+            long[] tableOffsets = readExtendedOffsetTable(header, numberOfFrames);
+            if (tableOffsets == null) {
+                tableOffsets = readBasicOffsetTable(fragments.get(0), numberOfFrames, iis);
+            }
+            if (tableOffsets == null || !matchFragments(tableOffsets, offsets, start)) {
+                if (tableOffsets != null) {
+                    LOGGER.warn("The offset table does not match the fragments"); //$NON-NLS-1$
+                }
+                findFramesFromData(offsets, lengths, start, iis, provider);
+            }
+            for (int i = 0; i < numberOfFrames; i++) {
+                end[i] = i + 1 < numberOfFrames ? start[i + 1] : nbFragments;
+            }
+        }
+        return new FrameOffsetIndex(offsets, lengths, start, end);
+    }
+
+    private static long[] readExtendedOffsetTable(Attributes header, int numberOfFrames) {
+        if (header == null || !header.containsValue(EXTENDED_OFFSET_TABLE)) {
+            return null;
+        }
+        try {
+            byte[] b = header.getBytes(EXTENDED_OFFSET_TABLE);
+            if (b == null || b.length != numberOfFrames * 8) {
+                return null;
+            }
+            long[] table = new long[numberOfFrames];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = readInt(b, i * 8) & 0xFFFFFFFFL | (readInt(b, i * 8 + 4) & 0xFFFFFFFFL) << 32;
+            }
+            return table;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read the Extended Offset Table: {}", e.getMessage()); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    private static long[] readBasicOffsetTable(Object bot, int numberOfFrames, ImageInputStream iis)
+        throws IOException {
+        byte[] b = null;
+        if (bot instanceof byte[]) {
+            b = (byte[]) bot;
+        } else if (bot instanceof BulkData && ((BulkData) bot).length() == numberOfFrames * 4) {
+            BulkData bulkData = (BulkData) bot;
+            b = new byte[bulkData.length()];
+            long pos = iis.getStreamPosition();
+            try {
+                iis.seek(bulkData.offset());
+                iis.readFully(b);
+            } finally {
+                iis.seek(pos);
+            }
+        }
+        if (b == null || b.length != numberOfFrames * 4) {
+            // Empty table
+            return null;
+        }
+        long[] table = new long[numberOfFrames];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readInt(b, i * 4) & 0xFFFFFFFFL;
+        }
+        return table;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        // Encapsulated pixel data is always little endian
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * The offsets of the table are relative to the first byte of the item of the first fragment.
+     */
+    private static boolean matchFragments(long[] table, long[] offsets, int[] start) {
+        long base = offsets[0] - ITEM_HEADER;
+        int k = 0;
+        for (int i = 0; i < table.length; i++) {
+            long pos = base + table[i];
+            while (k < offsets.length && offsets[k] - ITEM_HEADER < pos) {
+                k++;
+            }
+            if (k >= offsets.length || offsets[k] - ITEM_HEADER != pos || (i > 0 && k <= start[i - 1])) {
+                return false;
+            }
+            start[i] = k;
+        }
+        return start[0] == 0;
+    }
+
+    private static void findFramesFromData(long[] offsets, int[] lengths, int[] start, ImageInputStream iis,
+        ImageReaderSpi provider) throws IOException {
+        if (provider == null) {
+            throw new IOException("no decompressor!"); //$NON-NLS-1$
+        }
+        int numberOfFrames = start.length;
+        int frame = 0;
+        for (int i = 0; i < offsets.length && frame <= numberOfFrames; i++) {
+            if (provider.canDecodeInput(
+                new SegmentedInputImageStream(iis, new long[] { offsets[i] }, new int[] { lengths[i] }))) {
+                if (frame < numberOfFrames) {
+                    start[frame] = i;
+                }
+                frame++;
+            }
+        }
+        if (frame != numberOfFrames) {
+            throw new IOException("Cannot match all the fragments to all the frames!"); //$NON-NLS-1$
+        }
+    }
+
+    int getNumberOfFrames() {
+        return frameStart.length;
+    }
+
+    /**
+     * @return the stream of the fragments of the frame
+     */
+    SegmentedInputImageStream getFrameStream(ImageInputStream iis, int frameIndex) throws IOException {
+        int from = frameStart[frameIndex];
+        int to = frameEnd[frameIndex];
+        long[] offsets = new long[to - from];
+        int[] lengths = new int[offsets.length];
+        System.arraycopy(fragmentOffsets, from, offsets, 0, offsets.length);
+        System.arraycopy(fragmentLengths, from, lengths, 0, lengths.length);
+        return new SegmentedInputImageStream(iis, offsets, lengths);
+    }
+}
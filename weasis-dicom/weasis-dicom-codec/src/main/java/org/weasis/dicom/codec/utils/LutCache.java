@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import java.awt.image.DataBuffer;
+import java.util.Objects;
+
+import javax.media.jai.LookupTableJAI;
+
+import org.weasis.core.api.image.LutShape;
+import org.weasis.core.api.media.data.LruMemoryCache;
+import org.weasis.core.api.service.BundleTools;
+
+/**
+ * Cache of the lookup tables shared by all the images: the modality LUTs, the VOI LUTs and the fusion of both (a
+ * single 8-bit table from the raw pixel values to the display values). The cache is bounded by the memory size of the
+ * tables and the least recently used tables are removed first.
+ */
+public final class LutCache {
+
+    /**
+     * Maximum memory (in MB) of the lookup tables kept in cache. The default value is 32.
+     */
+    public static final String LUT_CACHE_SIZE = "weasis.lut.cache.size"; //$NON-NLS-1$
+
+    private static final LruMemoryCache<Object, LookupTableJAI> CACHE =
+        new LruMemoryCache<>(getDefaultCapacity(), LutCache::getMemorySize, null);
+
+    private LutCache() {
+    }
+
+    private static long getDefaultCapacity() {
+        long size = BundleTools.SYSTEM_PREFERENCES.getLongProperty(LUT_CACHE_SIZE, 32L);
+        return Math.max(1L, size) * 1024L * 1024L;
+    }
+
+    private static long getMemorySize(LookupTableJAI lut) {
+        return (long) lut.getNumEntries() * lut.getNumBands() * DataBuffer.getDataTypeSize(lut.getDataType()) / 8;
+    }
+
+    public static LruMemoryCache<Object, LookupTableJAI> getCache() {
+        return CACHE;
+    }
+
+    public static LookupTableJAI getModalityLut(LutParameters params) {
+        return CACHE.get(params);
+    }
+
+    public static void putModalityLut(LutParameters params, LookupTableJAI lut) {
+        if (params != null && lut != null) {
+            CACHE.put(params, lut);
+        }
+    }
+
+    /**
+     * Returns the 8 bits unsigned VOI lookup table, see
+     * {@link DicomImageUtils#createWindowLevelLut(LutShape, double, double, int, int, int, boolean, boolean)}.
+     */
+    public static LookupTableJAI getVoiLut(LutShape shape, double window, double level, int minValue, int maxValue,
+        boolean inverse) {
+        if (shape == null) {
+            return null;
+        }
+        VoiKey key = new VoiKey(shape, window, level, minValue, maxValue, inverse);
+        LookupTableJAI lut = CACHE.get(key);
+        if (lut == null) {
+            lut = DicomImageUtils.createWindowLevelLut(shape, window, level, minValue, maxValue, 8, false, inverse);
+            if (lut != null) {
+                CACHE.put(key, lut);
+            }
+        }
+        return lut;
+    }
+
+    /**
+     * Returns a single 8 bits unsigned lookup table equivalent to the modality lookup table followed by the VOI lookup
+     * table. The input range is the range of the modality lookup table.
+     *
+     * @return the fused table or null when the tables cannot be combined
+     */
+    public static LookupTableJAI getFusedLut(LookupTableJAI modality, LookupTableJAI voi) {
+        if (modality == null || voi == null || modality.getNumBands() != 1 || voi.getNumBands() != 1
+            || voi.getDataType() != DataBuffer.TYPE_BYTE) {
+            return null;
+        }
+        FusedKey key = new FusedKey(modality, voi);
+        LookupTableJAI lut = CACHE.get(key);
+        if (lut == null) {
+            lut = buildFusedLut(modality, voi);
+            CACHE.put(key, lut);
+        }
+        return lut;
+    }
+
+    private static LookupTableJAI buildFusedLut(LookupTableJAI modality, LookupTableJAI voi) {
+        int offset = modality.getOffset();
+        int numEntries = modality.getNumEntries();
+        int voiOffset = voi.getOffset();
+        int voiLast = voiOffset + voi.getNumEntries() - 1;
+        byte[] voiData = voi.getByteData(0);
+
+        byte[] data = new byte[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            int val = modality.lookup(0, offset + i);
+            // Clamp the values out of the VOI table
+            val = val < voiOffset ? voiOffset : val > voiLast ? voiLast : val;
+            data[i] = voiData[val - voiOffset];
+        }
+        return new LookupTableJAI(data, offset);
+    }
+
+    private static final class VoiKey {
+        private final LutShape shape;
+        private final double window;
+        private final double level;
+        private final int minValue;
+        private final int maxValue;
+        private final boolean inverse;
+
+        VoiKey(LutShape shape, double window, double level, int minValue, int maxValue, boolean inverse) {
+            this.shape = shape;
+            this.window = window;
+            this.level = level;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.inverse = inverse;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof VoiKey)) {
+                return false;
+            }
+            VoiKey other = (VoiKey) obj;
+            return Double.doubleToLongBits(window) == Double.doubleToLongBits(other.window)
+                && Double.doubleToLongBits(level) == Double.doubleToLongBits(other.level)
+                && minValue == other.minValue && maxValue == other.maxValue && inverse == other.inverse
+                && shape.equals(other.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shape, window, level, minValue, maxValue, inverse);
+        }
+    }
+
+    /**
+     * The source tables are compared by identity as they are shared through this cache.
+     */
+    private static final class FusedKey {
+        private final LookupTableJAI modality;
+        private final LookupTableJAI voi;
+
+        FusedKey(LookupTableJAI modality, LookupTableJAI voi) {
+            this.modality = modality;
+            this.voi = voi;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FusedKey)) {
+                return false;
+            }
+            FusedKey other = (FusedKey) obj;
+            return modality == other.modality && voi == other.voi;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(modality) + System.identityHashCode(voi);
+        }
+    }
+}
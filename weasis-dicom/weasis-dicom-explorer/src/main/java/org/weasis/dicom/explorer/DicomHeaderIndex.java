@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.DicomMediaIO;
+
+/**
+ * Persistent index of the DICOM headers of the local files. A file is identified by its path, its size and its last
+ * modification date, so the header of an unchanged file is read from the index instead of parsing the file again.
+ *
+ * There is one index file by folder containing DICOM files. An instance of this class is used for one import and the
+ * modified indexes are written with {@link #save()}. The files having bulk data other than the pixel data (video,
+ * encapsulated document, waveform...) are not indexed. The least recently used index files are deleted when their
+ * total size exceeds {@link #HEADER_INDEX_SIZE}.
+ */
+public class DicomHeaderIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DicomHeaderIndex.class);
+
+    /**
+     * Enable the persistent index of the DICOM headers of the local files. The index contains the patient data. The
+     * default value is false.
+     */
+    public static final String HEADER_INDEX = "weasis.dicom.header.index"; //$NON-NLS-1$
+
+    /**
+     * Maximum size of all the index files in MB. The default value is 100.
+     */
+    public static final String HEADER_INDEX_SIZE = "weasis.dicom.header.index.size"; //$NON-NLS-1$
+
+    private static final File INDEX_DIR = new File(AppProperties.WEASIS_PATH + File.separator + "data", //$NON-NLS-1$
+        "dicom-index"); //$NON-NLS-1$
+    private static final int MAGIC = 0x57484958; // WHIX
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".idx"; //$NON-NLS-1$
+
+    private final Map<File, FolderIndex> folders = new HashMap<>();
+
+    public static boolean isEnabled() {
+        return BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(HEADER_INDEX, false);
+    }
+
+    /**
+     * @return a reader with the header of the index, or null if the file is not indexed or has been modified
+     */
+    public DicomMediaIO getReader(File file) {
+        Entry entry = getFolder(file).entries.get(file.getName());
+        if (entry == null || entry.length != file.length() || entry.lastModified != file.lastModified()) {
+            return null;
+        }
+        try {
+            DicomMediaIO reader = new DicomMediaIO(file);
+            reader.setHeader(readAttributes(entry.fmi), readAttributes(entry.header), entry.pixelData);
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            // The file is parsed as usual
+            LOGGER.error("Cannot read the indexed header of {}", file, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /**
+     * Adds the header of a readable DICOM file into the index.
+     */
+    public void put(File file, DicomMediaIO reader) {
+        try {
+            DicomMetaData metadata = (DicomMetaData) reader.getStreamMetadata();
+            Attributes fmi = metadata.getFileMetaInformation();
+            String tsuid = fmi == null ? null : fmi.getString(Tag.TransferSyntaxUID);
+            // Exclude video, the pixel data is required in the header
+            if (tsuid == null || tsuid.startsWith("1.2.840.10008.1.2.4.10")) { //$NON-NLS-1$
+                return;
+            }
+            Attributes header = new Attributes(metadata.getAttributes());
+            boolean pixelData = header.remove(Tag.PixelData) != null | header.remove(Tag.FloatPixelData) != null
+                | header.remove(Tag.DoubleFloatPixelData) != null;
+            if (hasBulkData(header)) {
+                return;
+            }
+            Entry entry = new Entry(file.length(), file.lastModified(), pixelData, writeAttributes(fmi),
+                writeAttributes(header));
+            FolderIndex folder = getFolder(file);
+            folder.entries.put(file.getName(), entry);
+            folder.modified = true;
+        } catch (Exception e) {
+            LOGGER.error("Cannot index the header of {}", file, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Writes the modified indexes.
+     */
+    public synchronized void save() {
+        boolean written = false;
+        for (FolderIndex folder : folders.values()) {
+            if (folder.modified) {
+                // Remove the deleted files
+                folder.entries.keySet().removeIf(name -> !new File(folder.dir, name).isFile());
+                try {
+                    write(folder);
+                    folder.modified = false;
+                    written = true;
+                } catch (IOException e) {
+                    LOGGER.error("Cannot write the header index of {}", folder.dir, e); //$NON-NLS-1$
+                }
+            }
+        }
+        if (written) {
+            prune();
+        }
+    }
+
+    /**
+     * Deletes the least recently used index files when the size limit is exceeded.
+     */
+    private static void prune() {
+        File[] files = INDEX_DIR.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        long maxSize = BundleTools.SYSTEM_PREFERENCES.getIntProperty(HEADER_INDEX_SIZE, 100) * 1048576L;
+        long size = 0L;
+        for (File f : files) {
+            size += f.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        // The last modified date of an index file is updated when it is read
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static boolean hasBulkData(Attributes attributes) throws Exception {
+        return !attributes.accept((attrs, tag, vr, value) -> !(value instanceof BulkData || value instanceof Fragments),
+            true);
+    }
+
+    private synchronized FolderIndex getFolder(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        return folders.computeIfAbsent(dir, DicomHeaderIndex::read);
+    }
+
+    private static File getIndexFile(File dir) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            byte[] hash = digest.digest(dir.getPath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder buf = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                buf.append(String.format("%02x", b)); //$NON-NLS-1$
+            }
+            return new File(INDEX_DIR, buf.append(EXTENSION).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FolderIndex read(File dir) {
+        FolderIndex folder = new FolderIndex(dir);
+        File file = getIndexFile(dir);
+        if (file.canRead()) {
+            try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !dir.getPath().equals(in.readUTF())) {
+                    return folder;
+                }
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String name = in.readUTF();
+                    long length = in.readLong();
+                    long lastModified = in.readLong();
+                    boolean pixelData = in.readBoolean();
+                    byte[] fmi = new byte[in.readInt()];
+                    in.readFully(fmi);
+                    byte[] header = new byte[in.readInt()];
+                    in.readFully(header);
+                    folder.entries.put(name, new Entry(length, lastModified, pixelData, fmi, header));
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot read the header index of {}", dir, e); //$NON-NLS-1$
+                folder.entries.clear();
+            }
+            // Keeps the index files in use when pruning
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return folder;
+    }
+
+    private static void write(FolderIndex folder) throws IOException {
+        File file = getIndexFile(folder.dir);
+        if (folder.entries.isEmpty()) {
+            FileUtil.delete(file);
+            return;
+        }
+        INDEX_DIR.mkdirs();
+        File tmp = new File(INDEX_DIR, file.getName() + ".tmp"); //$NON-NLS-1$
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(folder.dir.getPath());
+            out.writeInt(folder.entries.size());
+            for (Map.Entry<String, Entry> e : folder.entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+                out.writeBoolean(entry.pixelData);
+                out.writeInt(entry.fmi.length);
+                out.write(entry.fmi);
+                out.writeInt(entry.header.length);
+                out.write(entry.header);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            FileUtil.delete(file);
+            if (!tmp.renameTo(file)) {
+                FileUtil.delete(tmp);
+            }
+        }
+    }
+
+    private static byte[] writeAttributes(Attributes attributes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian)) {
+            dos.writeDataset(null, attributes);
+        }
+        return out.toByteArray();
+    }
+
+    private static Attributes readAttributes(byte[] bytes) throws IOException {
+        try (DicomInputStream dis = new DicomInputStream(new ByteArrayInputStream(bytes), UID.ExplicitVRLittleEndian)) {
+            return dis.readDataset(-1, -1);
+        }
+    }
+
+    private static class FolderIndex {
+        private final File dir;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private volatile boolean modified = false;
+
+        FolderIndex(File dir) {
+            this.dir = dir;
+        }
+    }
+
+    private static class Entry {
+        private final long length;
+        private final long lastModified;
+        private final boolean pixelData;
+        // Original file meta information
+        private final byte[] fmi;
+        private final byte[] header;
+
+        Entry(long length, long lastModified, boolean pixelData, byte[] fmi, byte[] header) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.pixelData = pixelData;
+            this.fmi = fmi;
+            this.header = header;
+        }
+    }
+}
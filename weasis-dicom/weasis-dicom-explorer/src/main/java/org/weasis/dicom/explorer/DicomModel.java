@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 
@@ -72,6 +73,7 @@ import org.weasis.dicom.codec.PRSpecialElement;
 import org.weasis.dicom.codec.RejectedKOSpecialElement;
 import org.weasis.dicom.codec.SortSeriesStack;
 import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.TagD.Level;
 import org.weasis.dicom.codec.display.Modality;
 import org.weasis.dicom.codec.utils.SplittingModalityRules;
 import org.weasis.dicom.codec.utils.SplittingModalityRules.Rule;
@@ -110,6 +112,8 @@ public class DicomModel implements TreeModel, DataExplorerModel {
     private final Tree<MediaSeriesGroup> model;
     private PropertyChangeSupport propertyChange = null;
     private final SplittingRules splittingRules;
+    // Study => SeriesInstanceUID => index of the instances in the series and in its split series
+    private final Map<MediaSeriesGroup, Map<String, InstanceIndex>> instanceIndex = new ConcurrentHashMap<>();
 
     public DicomModel() {
         model = new Tree<>(MediaSeriesGroupNode.rootNode);
@@ -168,6 +172,9 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         synchronized (model) {
             model.addLeaf(root, leaf);
         }
+        if (leaf instanceof Series) {
+            indexSeries(root, (Series<?>) leaf);
+        }
     }
 
     @Override
@@ -175,11 +182,97 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         synchronized (model) {
             Tree<MediaSeriesGroup> tree = model.getTree(root);
             if (tree != null) {
+                if (leaf instanceof Series) {
+                    unindexSeries(root, (Series<?>) leaf);
+                } else if (TagW.PatientPseudoUID.equals(leaf.getTagID())) {
+                    model.getSuccessors(leaf).forEach(instanceIndex::remove);
+                } else {
+                    instanceIndex.remove(leaf);
+                }
                 tree.removeLeaf(leaf);
             }
         }
     }
 
+    /**
+     * Checks whether an instance is already in the series or in one of its split series. The lookup is done in an
+     * index of the SOPInstanceUIDs of each study, which is maintained when adding or removing media in the model.
+     *
+     * @param study
+     *            the parent study of the series, can be null
+     * @param series
+     *            the series in the model
+     * @param sopUID
+     *            the SOPInstanceUID of the instance
+     * @return true if the instance exists
+     */
+    public boolean isSOPInstanceUIDExist(MediaSeriesGroup study, Series<?> series, Object sopUID) {
+        if (series == null || sopUID == null) {
+            return false;
+        }
+        MediaSeriesGroup st = study == null ? getParent(series, DicomModel.study) : study;
+        InstanceIndex index = getInstanceIndex(st, series, false);
+        if (index == null) {
+            // Not in the model
+            return series.hasMediaContains(TagD.getUID(Level.INSTANCE), sopUID);
+        }
+        return index.instances.containsKey(sopUID);
+    }
+
+    private InstanceIndex getInstanceIndex(MediaSeriesGroup study, Series<?> series, boolean create) {
+        String seriesUID = TagD.getTagValue(series, Tag.SeriesInstanceUID, String.class);
+        if (study == null || seriesUID == null) {
+            return null;
+        }
+        if (create) {
+            return instanceIndex.computeIfAbsent(study, k -> new ConcurrentHashMap<>()).computeIfAbsent(seriesUID,
+                k -> new InstanceIndex());
+        }
+        Map<String, InstanceIndex> studyIndex = instanceIndex.get(study);
+        return studyIndex == null ? null : studyIndex.get(seriesUID);
+    }
+
+    private void indexSeries(MediaSeriesGroup study, Series<?> series) {
+        InstanceIndex index = getInstanceIndex(study, series, true);
+        if (index != null) {
+            index.splitSeries.add(series);
+            for (MediaElement media : series.copyOfMedias(null, null)) {
+                index.add(media);
+            }
+        }
+    }
+
+    private void unindexSeries(MediaSeriesGroup study, Series<?> series) {
+        String seriesUID = TagD.getTagValue(series, Tag.SeriesInstanceUID, String.class);
+        Map<String, InstanceIndex> studyIndex = study == null ? null : instanceIndex.get(study);
+        if (studyIndex == null || seriesUID == null) {
+            return;
+        }
+        studyIndex.computeIfPresent(seriesUID, (k, index) -> {
+            index.splitSeries.remove(series);
+            if (index.splitSeries.isEmpty()) {
+                return null;
+            }
+            // Rebuild from the remaining split series as the same instance can be in several series (e.g. merging)
+            InstanceIndex newIndex = new InstanceIndex();
+            for (Series<?> s : index.splitSeries) {
+                newIndex.splitSeries.add(s);
+                for (MediaElement media : s.copyOfMedias(null, null)) {
+                    newIndex.add(media);
+                }
+            }
+            return newIndex;
+        });
+    }
+
+    private void addMedia(Series series, MediaElement media) {
+        series.addMedia(media);
+        InstanceIndex index = getInstanceIndex(getParent(series, DicomModel.study), series, false);
+        if (index != null) {
+            index.add(media);
+        }
+    }
+
     @Override
     public MediaSeriesGroup getParent(MediaSeriesGroup node, TreeModelNode modelNode) {
         if (node != null && modelNode != null) {
@@ -222,6 +315,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             }
         }
         model.clear();
+        instanceIndex.clear();
     }
 
     @Override
@@ -609,7 +703,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
 
     private void splitSeries(DicomMediaIO dicomReader, Series original, MediaElement media) {
         Series s = splitSeries(dicomReader, original);
-        s.addMedia(media);
+        addMedia(s, media);
         LOGGER.info("Series splitting: {}", s); //$NON-NLS-1$
     }
 
@@ -663,7 +757,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         s.setTag(TagW.SplitSeriesNumber, k);
         s.setTag(TagW.ExplorerModel, this);
         addHierarchyNode(st, s);
-        s.addMedia(media);
+        addMedia(s, media);
         LOGGER.info("Replace Series: {}", s); //$NON-NLS-1$
     }
 
@@ -701,7 +795,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             addHierarchyNode(st, dicomSeries);
             LOGGER.info("Series rebuilding: {}", dicomSeries); //$NON-NLS-1$
         }
-        dicomSeries.addMedia(media);
+        addMedia(dicomSeries, media);
 
         // Load image and create thumbnail in this Thread
         Thumbnail t = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
@@ -755,7 +849,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
 
                 int frames = dicomReader.getMediaElementNumber();
                 if (frames < 1) {
-                    initialSeries.addMedia((DicomImageElement) media);
+                    addMedia(initialSeries, media);
                 } else {
                     Modality modality =
                         Modality.getModality(TagD.getTagValue(initialSeries, Tag.Modality, String.class));
@@ -770,7 +864,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                     }
                     // If similar add to the original series
                     if (isSimilar(rules, initialSeries, media)) {
-                        initialSeries.addMedia((DicomImageElement) media);
+                        addMedia(initialSeries, media);
                         return false;
                     }
 
@@ -782,7 +876,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                         MediaSeriesGroup group = getHierarchyNode(study, uid);
                         if (group instanceof DicomSeries) {
                             if (isSimilar(rules, (DicomSeries) group, media)) {
-                                ((DicomSeries) group).addMedia((DicomImageElement) media);
+                                addMedia((DicomSeries) group, media);
                                 return false;
                             }
                         } else {
@@ -804,7 +898,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                         findMatchingSeriesOrsplit(original, media);
                     }
                 } else {
-                    original.addMedia(media);
+                    addMedia(original, media);
                 }
             }
         }
@@ -816,7 +910,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         DicomMediaIO dicomReader = (DicomMediaIO) media.getMediaReader();
         int frames = dicomReader.getMediaElementNumber();
         if (frames < 1) {
-            original.addMedia(media);
+            addMedia(original, media);
         } else {
             String seriesUID = TagD.getTagValue(original, Tag.SeriesInstanceUID, String.class);
 
@@ -830,7 +924,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             }
             // If similar add to the original series
             if (isSimilar(rules, original, media)) {
-                original.addMedia(media);
+                addMedia(original, media);
                 return false;
             }
 
@@ -842,7 +936,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                 MediaSeriesGroup group = getHierarchyNode(study, uid);
                 if (group instanceof Series) {
                     if (isSimilar(rules, (Series) group, media)) {
-                        ((Series) group).addMedia(media);
+                        addMedia((Series) group, media);
                         return false;
                     }
                 } else {
@@ -1045,4 +1139,16 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         return patient;
     }
 
+
+    private static class InstanceIndex {
+        private final Set<Series<?>> splitSeries = ConcurrentHashMap.newKeySet();
+        private final Map<String, MediaElement> instances = new ConcurrentHashMap<>();
+
+        void add(MediaElement media) {
+            String sopUID = TagD.getTagValue(media, Tag.SOPInstanceUID, String.class);
+            if (sopUID != null) {
+                instances.putIfAbsent(sopUID, media);
+            }
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.zip.ZipFile;
 
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -116,10 +117,20 @@ public class DicomZipImport extends AbstractItemDialogPage implements ImportDico
         if (file != null) {
             if (file.canRead()) {
                 File dir = FileUtil.createTempDir(AppProperties.buildAccessibleTempDirectory("tmp", "zip")); //$NON-NLS-1$ //$NON-NLS-2$
+                ZipFile zfile = null;
                 try {
+                    zfile = new ZipFile(file);
+                    // Without DICOMDIR, the entries are extracted and loaded progressively
+                    if (zfile.getEntry("DICOMDIR") == null) { //$NON-NLS-1$
+                        DicomModel.LOADING_EXECUTOR.execute(new LoadLocalDicom(zfile, dir, dicomModel));
+                        return;
+                    }
+                    FileUtil.safeClose(zfile);
                     FileUtil.unzip(file, dir);
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    FileUtil.safeClose(zfile);
+                    LOGGER.error("Cannot read the zip file {}", file, e); //$NON-NLS-1$
+                    return;
                 }
                 File dicomdir = new File(dir, "DICOMDIR");
                 if (dicomdir.canRead()) {
@@ -12,8 +12,6 @@ package org.weasis.dicom.explorer;
 
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -184,7 +182,7 @@ public class LoadDicomObjects extends ExplorerTask {
                 }
             } else {
                 // Test if SOPInstanceUID already exists
-                if (isSOPInstanceUIDExist(study, dicomSeries, seriesUID,
+                if (dicomModel.isSOPInstanceUIDExist(study, dicomSeries,
                     TagD.getTagValue(dicomReader, Tag.SOPInstanceUID, String.class))) {
                     return null;
                 }
@@ -222,30 +220,4 @@ public class LoadDicomObjects extends ExplorerTask {
         }
         return thumb;
     }
-
-    private boolean isSOPInstanceUIDExist(MediaSeriesGroup study, Series dicomSeries, String seriesUID, Object sopUID) {
-        TagW sopTag = TagD.getUID(Level.INSTANCE);
-        if (dicomSeries.hasMediaContains(sopTag, sopUID)) {
-            return true;
-        }
-        Object splitNb = dicomSeries.getTagValue(TagW.SplitSeriesNumber);
-        if (splitNb != null && study != null) {
-            String uid = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-            if (uid != null) {
-                Collection<MediaSeriesGroup> seriesList = dicomModel.getChildren(study);
-                for (Iterator<MediaSeriesGroup> it = seriesList.iterator(); it.hasNext();) {
-                    MediaSeriesGroup group = it.next();
-                    if (dicomSeries != group && group instanceof Series) {
-                        Series s = (Series) group;
-                        if (uid.equals(TagD.getTagValue(group, Tag.SeriesInstanceUID))) {
-                            if (s.hasMediaContains(sopTag, sopUID)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return false;
-    }
 }
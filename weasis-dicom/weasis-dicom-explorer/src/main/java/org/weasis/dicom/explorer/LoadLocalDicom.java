@@ -11,9 +11,26 @@
 package org.weasis.dicom.explorer;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.dcm4che3.data.Tag;
 import org.slf4j.LoggerFactory;
@@ -30,6 +47,7 @@ import org.weasis.core.api.media.data.SeriesThumbnail;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.Thumbnail;
 import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.docking.UIManager;
 import org.weasis.core.ui.editor.SeriesViewerFactory;
 import org.weasis.core.ui.editor.ViewerPluginBuilder;
@@ -43,10 +61,27 @@ import org.weasis.dicom.codec.TagD.Level;
 public class LoadLocalDicom extends ExplorerTask {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LoadLocalDicom.class);
+
+    private static final int PARSING_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_SIZE = 16 * PARSING_THREADS;
+    private static final long REFRESH_DELAY = 1000L;
+
+    private static final ExecutorService WALKER_EXECUTOR =
+        ThreadUtil.buildNewSingleThreadExecutor("Dicom Folder Walker"); //$NON-NLS-1$
+    private static final ExecutorService PARSER_EXECUTOR =
+        ThreadUtil.buildNewFixedThreadExecutor(PARSING_THREADS, "Dicom Header Parser"); //$NON-NLS-1$
+    private static final String GRAPHIC_EXTENSION = ".xml"; //$NON-NLS-1$
+    private static final Future<ParsedFile> END_OF_FILES = CompletableFuture.completedFuture(null);
+
     private final File[] files;
+    private final ZipFile zipFile;
+    private final File zipDirectory;
     private final DicomModel dicomModel;
     private final boolean recursive;
     private boolean openPlugin;
+    private final DicomHeaderIndex headerIndex;
+    private final Map<SeriesThumbnail, Integer> newThumbnails = new LinkedHashMap<>();
+    private final Set<Thumbnail> thumbnailsToRepaint = new LinkedHashSet<>();
 
     public LoadLocalDicom(File[] files, boolean recursive, DataExplorerModel explorerModel) {
         super(Messages.getString("DicomExplorer.loading"), false); //$NON-NLS-1$
@@ -55,15 +90,53 @@ public class LoadLocalDicom extends ExplorerTask {
         }
         this.dicomModel = (DicomModel) explorerModel;
         this.files = files;
+        this.zipFile = null;
+        this.zipDirectory = null;
         this.recursive = recursive;
         this.openPlugin = true;
+        this.headerIndex = DicomHeaderIndex.isEnabled() ? new DicomHeaderIndex() : null;
+    }
+
+    /**
+     * Loads the DICOM files of a zip archive. The entries are extracted into the directory one by one while the
+     * headers of the previous entries are parsed, so the first series appear before the end of the extraction. The zip
+     * file is closed at the end of the loading.
+     *
+     * @param zipFile
+     *            the opened zip file
+     * @param directory
+     *            the directory where the entries are extracted
+     * @param explorerModel
+     *            the DICOM model
+     */
+    public LoadLocalDicom(ZipFile zipFile, File directory, DataExplorerModel explorerModel) {
+        super(Messages.getString("DicomExplorer.loading"), false); //$NON-NLS-1$
+        if (zipFile == null || directory == null || !(explorerModel instanceof DicomModel)) {
+            throw new IllegalArgumentException("invalid parameters"); //$NON-NLS-1$
+        }
+        this.dicomModel = (DicomModel) explorerModel;
+        this.files = null;
+        this.zipFile = zipFile;
+        this.zipDirectory = directory;
+        this.recursive = true;
+        this.openPlugin = true;
+        // The extracted files are temporary, indexing them is useless
+        this.headerIndex = null;
     }
 
     @Override
     protected Boolean doInBackground() throws Exception {
         dicomModel
             .firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.LOADING_START, dicomModel, null, this));
-        addSelectionAndnotify(files, true);
+        if (zipFile == null) {
+            addSelectionAndnotify(files, true);
+        } else {
+            try {
+                load(queue -> extract(zipFile, zipDirectory, queue), zipFile.getName());
+            } finally {
+                FileUtil.safeClose(zipFile);
+            }
+        }
         return true;
     }
 
@@ -74,56 +147,227 @@ public class LoadLocalDicom extends ExplorerTask {
         LOGGER.info("End of loading DICOM locally"); //$NON-NLS-1$
     }
 
+    /**
+     * Loads the DICOM files in a pipeline: the folders are walked in one thread, the headers are parsed in parallel
+     * and the model is built in the current thread in the order of the walk, so the series are always built in the same
+     * way.
+     */
     public void addSelectionAndnotify(File[] file, boolean firstLevel) {
         if (file == null || file.length < 1) {
             return;
         }
-        final ArrayList<SeriesThumbnail> thumbs = new ArrayList<>();
-        final ArrayList<File> folders = new ArrayList<>();
+        load(queue -> walk(file, firstLevel, queue), "local files"); //$NON-NLS-1$
+    }
+
+    @FunctionalInterface
+    private interface FileProducer {
+        void produce(BlockingQueue<Future<ParsedFile>> queue) throws InterruptedException;
+    }
+
+    private void load(FileProducer producer, String source) {
+        final BlockingQueue<Future<ParsedFile>> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        final AtomicBoolean consuming = new AtomicBoolean(true);
+        Future<?> walker = WALKER_EXECUTOR.submit(() -> {
+            try {
+                producer.produce(queue);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.error("Reading {}", source, e); //$NON-NLS-1$
+            } finally {
+                // The end must always be queued (even after an Error or an interruption), otherwise the loop below
+                // never ends. offer() does not throw when the thread is interrupted.
+                boolean interrupted = Thread.interrupted();
+                while (consuming.get() && !queue.offer(END_OF_FILES)) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
 
+        long start = System.nanoTime();
+        long nextRefresh = System.currentTimeMillis() + REFRESH_DELAY;
+        int nbFiles = 0;
+        int nbDicom = 0;
+        try {
+            while (!isCancelled()) {
+                Future<ParsedFile> next = queue.poll(REFRESH_DELAY, TimeUnit.MILLISECONDS);
+                if (next == END_OF_FILES) {
+                    break;
+                }
+                if (next != null) {
+                    nbFiles++;
+                    if (addDicom(next)) {
+                        nbDicom++;
+                    }
+                }
+                if (System.currentTimeMillis() >= nextRefresh) {
+                    refreshThumbnails(false);
+                    nextRefresh = System.currentTimeMillis() + REFRESH_DELAY;
+                    LOGGER.debug("Local import: {} files read ({} files/s)", //$NON-NLS-1$
+                        nbFiles, getRate(nbFiles, start));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            consuming.set(false);
+            walker.cancel(true);
+            for (Future<ParsedFile> f : queue) {
+                f.cancel(true);
+            }
+            queue.clear();
+        }
+        refreshThumbnails(true);
+        if (headerIndex != null) {
+            headerIndex.save();
+        }
+        LOGGER.info("Local import: {} DICOM files loaded from {} files of {} in {} ms ({} files/s)", //$NON-NLS-1$
+            nbDicom, nbFiles, source, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            getRate(nbFiles, start));
+    }
+
+    private static long getRate(int nbFiles, long start) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed <= 0 ? 0 : nbFiles * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Walks the files of a level before its folders (same order as a sequential import) and submits the parsing of
+     * each file. The size of the queue limits the number of files parsed in advance.
+     */
+    private void walk(File[] file, boolean firstLevel, BlockingQueue<Future<ParsedFile>> queue)
+        throws InterruptedException {
+        if (file == null || file.length < 1) {
+            return;
+        }
+        final ArrayList<File> folders = new ArrayList<>();
         for (int i = 0; i < file.length; i++) {
             if (isCancelled()) {
                 return;
             }
-
-            if (file[i] == null) {
+            final File f = file[i];
+            if (f == null) {
                 continue;
-            } else if (file[i].isDirectory()) {
+            } else if (f.isDirectory()) {
                 if (firstLevel || recursive) {
-                    folders.add(file[i]);
+                    folders.add(f);
                 }
-            } else {
-                if (file[i].canRead()) {
-                    if (FileUtil.isFileExtensionMatching(file[i], DicomCodec.FILE_EXTENSIONS)
-                        || MimeInspector.isMatchingMimeTypeFromMagicNumber(file[i], DicomMediaIO.MIMETYPE)) {
-                        DicomMediaIO loader = new DicomMediaIO(file[i]);
-                        if (loader.isReadableDicom()) {
-                            // Issue: must handle adding image to viewer and building thumbnail (middle image)
-                            SeriesThumbnail t = buildDicomStructure(loader, openPlugin);
-                            if (t != null) {
-                                thumbs.add(t);
-                            }
-
-                            File gpxFile = new File(file[i].getPath() + ".xml"); //$NON-NLS-1$
-                            GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
-                            if (graphicModel != null) {
-                                loader.setTag(TagW.PresentationModel, graphicModel);
-                            }
-                        }
-                    }
+            } else if (f.canRead()) {
+                queue.put(PARSER_EXECUTOR.submit(() -> parse(f)));
+            }
+        }
+        for (int i = 0; i < folders.size(); i++) {
+            walk(folders.get(i).listFiles(), false, queue);
+        }
+    }
+
+    /**
+     * Submits the extraction and the parsing of each entry in the order of the central directory. The entries are
+     * inflated in parallel by the parsing threads.
+     */
+    private void extract(ZipFile zip, File directory, BlockingQueue<Future<ParsedFile>> queue)
+        throws InterruptedException {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements() && !isCancelled()) {
+            final ZipEntry entry = entries.nextElement();
+            // The presentation model of a DICOM file is extracted with this file
+            if (!entry.isDirectory() && !isGraphicEntry(zip, entry)) {
+                queue.put(PARSER_EXECUTOR.submit(() -> extractAndParse(zip, entry, directory)));
+            }
+        }
+    }
+
+    private static boolean isGraphicEntry(ZipFile zip, ZipEntry entry) {
+        String name = entry.getName();
+        return name.endsWith(GRAPHIC_EXTENSION)
+            && zip.getEntry(name.substring(0, name.length() - GRAPHIC_EXTENSION.length())) != null;
+    }
+
+    private ParsedFile extractAndParse(ZipFile zip, ZipEntry entry, File directory) throws IOException {
+        if (isCancelled()) {
+            return null;
+        }
+        File file = FileUtil.unzip(zip, entry, directory);
+        ZipEntry graphicEntry = zip.getEntry(entry.getName() + GRAPHIC_EXTENSION);
+        if (graphicEntry != null) {
+            FileUtil.unzip(zip, graphicEntry, directory);
+        }
+        return parse(file);
+    }
+
+    private ParsedFile parse(File file) {
+        DicomMediaIO loader = headerIndex == null ? null : headerIndex.getReader(file);
+        if (loader == null) {
+            if (FileUtil.isFileExtensionMatching(file, DicomCodec.FILE_EXTENSIONS)
+                || MimeInspector.isMatchingMimeTypeFromMagicNumber(file, DicomMediaIO.MIMETYPE)) {
+                loader = new DicomMediaIO(file);
+                if (!loader.isReadableDicom()) {
+                    return null;
+                }
+                if (headerIndex != null) {
+                    headerIndex.put(file, loader);
                 }
+            } else {
+                return null;
             }
+        } else if (!loader.isReadableDicom()) {
+            return null;
+        }
+        File gpxFile = new File(file.getPath() + GRAPHIC_EXTENSION);
+        return new ParsedFile(loader, XmlSerializer.readPresentationModel(gpxFile));
+    }
+
+    private boolean addDicom(Future<ParsedFile> future) throws InterruptedException {
+        ParsedFile parsed;
+        try {
+            parsed = future.get();
+        } catch (ExecutionException e) {
+            LOGGER.error("Cannot read DICOM file", e.getCause()); //$NON-NLS-1$
+            return false;
         }
-        for (final SeriesThumbnail t : thumbs) {
+        if (parsed == null) {
+            return false;
+        }
+        // Issue: must handle adding image to viewer and building thumbnail (middle image)
+        SeriesThumbnail t = buildDicomStructure(parsed.loader, openPlugin);
+        if (t != null) {
+            newThumbnails.put(t, 0);
+        }
+        if (parsed.graphicModel != null) {
+            parsed.loader.setTag(TagW.PresentationModel, parsed.graphicModel);
+        }
+        return true;
+    }
+
+    /**
+     * Limits the updates of the thumbnails in the EDT. A new thumbnail is rebuilt when its series is no longer growing
+     * or at the end of the loading.
+     */
+    private void refreshThumbnails(boolean end) {
+        for (Iterator<Entry<SeriesThumbnail, Integer>> it = newThumbnails.entrySet().iterator(); it.hasNext();) {
+            Entry<SeriesThumbnail, Integer> entry = it.next();
+            final SeriesThumbnail t = entry.getKey();
             MediaSeries<MediaElement> series = t.getSeries();
-            // Avoid to rebuild most of CR series thumbnail
-            if (series != null && series.size(null) > 2) {
-                GuiExecutor.instance().execute(t::reBuildThumbnail);
+            int size = series == null ? 0 : series.size(null);
+            if (end || size == entry.getValue()) {
+                // Avoid to rebuild most of CR series thumbnail
+                if (size > 2) {
+                    GuiExecutor.instance().execute(t::reBuildThumbnail);
+                    it.remove();
+                } else if (end) {
+                    it.remove();
+                }
+            } else {
+                entry.setValue(size);
             }
         }
-        for (int i = 0; i < folders.size(); i++) {
-            addSelectionAndnotify(folders.get(i).listFiles(), false);
+        for (Thumbnail t : thumbnailsToRepaint) {
+            t.repaint();
         }
+        thumbnailsToRepaint.clear();
     }
 
     private SeriesThumbnail buildDicomStructure(DicomMediaIO dicomReader, boolean open) {
@@ -208,7 +452,7 @@ public class LoadLocalDicom extends ExplorerTask {
                 }
             } else {
                 // Test if SOPInstanceUID already exists
-                if (isSOPInstanceUIDExist(study, dicomSeries, seriesUID,
+                if (dicomModel.isSOPInstanceUIDExist(study, dicomSeries,
                     TagD.getTagValue(dicomReader, Tag.SOPInstanceUID, String.class))) {
                     return null;
                 }
@@ -222,7 +466,7 @@ public class LoadLocalDicom extends ExplorerTask {
                         // Refresh the number of images on the thumbnail
                         Thumbnail t = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
                         if (t != null) {
-                            t.repaint();
+                            thumbnailsToRepaint.add(t);
                         }
                     }
 
@@ -247,29 +491,13 @@ public class LoadLocalDicom extends ExplorerTask {
         return thumb;
     }
 
-    private boolean isSOPInstanceUIDExist(MediaSeriesGroup study, Series dicomSeries, String seriesUID, Object sopUID) {
-        TagW sopTag = TagD.getUID(Level.INSTANCE);
-        if (dicomSeries.hasMediaContains(sopTag, sopUID)) {
-            return true;
-        }
-        Object splitNb = dicomSeries.getTagValue(TagW.SplitSeriesNumber);
-        if (splitNb != null && study != null) {
-            String uid = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-            if (uid != null) {
-                Collection<MediaSeriesGroup> seriesList = dicomModel.getChildren(study);
-                for (Iterator<MediaSeriesGroup> it = seriesList.iterator(); it.hasNext();) {
-                    MediaSeriesGroup group = it.next();
-                    if (dicomSeries != group && group instanceof Series) {
-                        Series s = (Series) group;
-                        if (uid.equals(TagD.getTagValue(group, Tag.SeriesInstanceUID))) {
-                            if (s.hasMediaContains(sopTag, sopUID)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
+    private static class ParsedFile {
+        private final DicomMediaIO loader;
+        private final GraphicModel graphicModel;
+
+        ParsedFile(DicomMediaIO loader, GraphicModel graphicModel) {
+            this.loader = loader;
+            this.graphicModel = graphicModel;
         }
-        return false;
     }
 }
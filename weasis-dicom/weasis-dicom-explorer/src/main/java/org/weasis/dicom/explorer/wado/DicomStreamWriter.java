@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
+import org.dcm4che3.io.DicomOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.DicomCodec;
+import org.weasis.dicom.codec.DicomMediaIO;
+
+/**
+ * Writes a downloaded DICOM stream into a file and parses its header in the same pass, so the file is not read again
+ * for building the model.
+ *
+ * Without override, the bytes are copied unchanged into the file while they are parsed. With override, the header is
+ * modified and written again, then the pixel data is copied without being decoded.
+ */
+class DicomStreamWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DicomStreamWriter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Attributes fmi;
+    private Attributes header;
+    private boolean pixelData;
+
+    /**
+     * @param in
+     *            the downloaded stream, always closed
+     * @param file
+     *            the destination file
+     * @param fileUri
+     *            the URI of the file when it is read (the bulk data of the header refer to it)
+     * @param override
+     *            the modification of the header, null to keep the original file
+     * @return bytes transferred. O = error, -1 = all bytes has been transferred, other = bytes transferred before
+     *         interruption
+     */
+    public int write(InputStream in, File file, String fileUri, Consumer<Attributes> override) {
+        if (in == null || file == null) {
+            return 0;
+        }
+        fmi = null;
+        header = null;
+        pixelData = false;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            if (override == null) {
+                copyAndParse(in, out, fileUri);
+            } else {
+                parseAndWrite(in, out, override);
+            }
+            out.flush();
+            return -1;
+        } catch (InterruptedIOException e) {
+            return e.bytesTransferred;
+        } catch (Exception e) {
+            LOGGER.error("Error when writing DICOM temp file", e); //$NON-NLS-1$
+            return 0;
+        } finally {
+            FileUtil.safeClose(in);
+        }
+    }
+
+    private void copyAndParse(InputStream in, OutputStream out, String fileUri) throws IOException {
+        // All the bytes read from the stream (including the ones buffered by the parser) are written into the file
+        TeeInputStream tee = new TeeInputStream(in, out);
+        try {
+            DicomInputStream dis = new DicomInputStream(tee);
+            dis.setIncludeBulkData(IncludeBulkData.URI);
+            dis.setBulkDataDescriptor(DicomCodec.BULKDATA_DESCRIPTOR);
+            dis.setURI(fileUri);
+            readHeader(dis);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // Not a DICOM stream, the file is written unchanged and it will be parsed later
+            LOGGER.debug("Cannot parse the downloaded header: {}", e.getMessage()); //$NON-NLS-1$
+            header = null;
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        while (tee.read(buf) > 0) {
+            // Copy the remaining bytes
+        }
+    }
+
+    private void parseAndWrite(InputStream in, OutputStream out, Consumer<Attributes> override) throws IOException {
+        DicomInputStream dis = new DicomInputStream(in);
+        dis.setIncludeBulkData(IncludeBulkData.YES);
+        readHeader(dis);
+        override.accept(header);
+
+        @SuppressWarnings("resource")
+        DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian);
+        dos.writeDataset(fmi, header);
+        if (pixelData && dis.tag() == Tag.PixelData) {
+            // Copy the pixel data (and the following attributes) without decoding
+            dos.writeHeader(dis.tag(), dis.vr(), dis.length());
+            byte[] buf = new byte[BUFFER_SIZE];
+            int offset;
+            while ((offset = dis.read(buf)) > 0) {
+                dos.write(buf, 0, offset);
+            }
+        }
+        dos.finish();
+        dos.flush();
+    }
+
+    private void readHeader(DicomInputStream dis) throws IOException {
+        Attributes meta = dis.readFileMetaInformation();
+        Attributes ds = dis.readDataset(-1, Tag.PixelData);
+        fmi = meta == null ? ds.createFileMetaInformation(dis.getTransferSyntax()) : meta;
+        pixelData = dis.tag() == Tag.PixelData || ds.contains(Tag.FloatPixelData)
+            || ds.contains(Tag.DoubleFloatPixelData);
+        header = ds;
+    }
+
+    /**
+     * @return a reader with the parsed header, the file is read only when the pixel data is required.
+     */
+    public DicomMediaIO buildReader(File file) {
+        DicomMediaIO reader = new DicomMediaIO(file);
+        if (header != null) {
+            Attributes attributes = new Attributes(header);
+            attributes.remove(Tag.FloatPixelData);
+            attributes.remove(Tag.DoubleFloatPixelData);
+            reader.setHeader(fmi, attributes, pixelData);
+        }
+        return reader;
+    }
+
+    static class TeeInputStream extends FilterInputStream {
+        private final OutputStream out;
+
+        TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int nr = in.read(b, off, len);
+            if (nr > 0) {
+                out.write(b, off, nr);
+            }
+            return nr;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // The skipped bytes must be written
+            byte[] buf = new byte[(int) Math.min(BUFFER_SIZE, Math.max(0L, n))];
+            long remaining = n;
+            while (remaining > 0) {
+                int nr = read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (nr <= 0) {
+                    break;
+                }
+                remaining -= nr;
+            }
+            return n - remaining;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            // Not supported
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported"); //$NON-NLS-1$
+        }
+    }
+}
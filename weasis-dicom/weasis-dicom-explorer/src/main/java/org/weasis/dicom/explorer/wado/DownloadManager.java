@@ -110,6 +110,10 @@ public class DownloadManager {
         BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES, 3),
         BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES, 3), 0L, TimeUnit.MILLISECONDS, PRIORITY_QUEUE);
 
+    // Executor of the image downloads of all the series
+    public static final ImageDownloader IMAGE_DOWNLOADER =
+        new ImageDownloader(BundleTools.SYSTEM_PREFERENCES.getIntProperty(ImageDownloader.CONCURRENT_IMAGES, 12));
+
     public static class PriorityTaskComparator implements Comparator<Runnable>, Serializable {
 
         private static final long serialVersionUID = 513213203958362767L;
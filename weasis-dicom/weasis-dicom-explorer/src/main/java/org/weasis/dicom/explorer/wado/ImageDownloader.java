@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.weasis.core.api.util.ThreadUtil;
+
+/**
+ * Executor shared by the image downloads of all the series. The number of simultaneous requests is bounded for the
+ * whole application and the waiting requests are ordered by the priority of their series, then in the order of
+ * submission.
+ *
+ * The HTTP connections are reused by the keep-alive cache of the JVM: the response must be entirely read and closed,
+ * the connection must not be disconnected. The number of idle connections kept by host (http.maxConnections) is set
+ * by the launcher, as the JVM reads it only at the first connection.
+ */
+public class ImageDownloader extends ThreadPoolExecutor {
+
+    /**
+     * Maximum number of simultaneous image downloads for all the series. The default value is 12.
+     */
+    public static final String CONCURRENT_IMAGES = "download.concurrent.images"; //$NON-NLS-1$
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private long activeTime = 0L;
+    private long activeStart = 0L;
+
+    public ImageDownloader(int nThreads) {
+        super(Math.max(1, nThreads), Math.max(1, nThreads), 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>(), ThreadUtil.getThreadFactory("Image Downloader")); //$NON-NLS-1$
+    }
+
+    /**
+     * Submits a download.
+     *
+     * @param task
+     *            the download
+     * @param priority
+     *            the priority of the series, can be null (lowest priority)
+     * @return the future of the download
+     */
+    public <T> Future<T> submit(Callable<T> task, DownloadPriority priority) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        PriorityTask<T> ftask = new PriorityTask<>(task, priority);
+        execute(ftask);
+        return ftask;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        // The queue can only order the tasks with a priority
+        super.execute(command instanceof PriorityTask || command == null ? command
+            : new PriorityTask<>(Executors.callable(command, null), null));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PriorityTask<>(callable, null);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PriorityTask<>(Executors.callable(runnable, value), null);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        synchronized (this) {
+            if (requestsInFlight.getAndIncrement() == 0) {
+                activeStart = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        requests.incrementAndGet();
+        synchronized (this) {
+            if (requestsInFlight.decrementAndGet() == 0) {
+                activeTime += System.nanoTime() - activeStart;
+            }
+        }
+    }
+
+    /**
+     * Adds the size of a downloaded file to the metrics.
+     */
+    public void addDownloadedBytes(long length) {
+        if (length > 0) {
+            bytes.addAndGet(length);
+        }
+    }
+
+    public int getRequestsInFlight() {
+        return requestsInFlight.get();
+    }
+
+    public long getRequestNumber() {
+        return requests.get();
+    }
+
+    public long getDownloadedBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return the download rate (bytes/s) during the time where at least one request was in flight
+     */
+    public synchronized long getBytesPerSecond() {
+        long time = activeTime;
+        if (requestsInFlight.get() > 0) {
+            time += System.nanoTime() - activeStart;
+        }
+        return time <= 0 ? 0 : bytes.get() * TimeUnit.SECONDS.toNanos(1) / time;
+    }
+
+    /**
+     * Reads the remaining content of an error response, so the connection can be reused by the keep-alive cache.
+     */
+    public static void consumeErrorStream(HttpURLConnection httpCon) {
+        try (InputStream err = httpCon.getErrorStream()) {
+            if (err != null) {
+                byte[] buf = new byte[4096];
+                while (err.read(buf) > 0) {
+                    // Discard
+                }
+            }
+        } catch (IOException e) {
+            // The connection is not reusable and will be closed
+        }
+    }
+
+    static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>> {
+        private final int priority;
+        private final long sequence;
+
+        PriorityTask(Callable<T> callable, DownloadPriority priority) {
+            super(callable);
+            // The priority of the series can change, the value at the submission is kept for ordering the queue
+            Integer p = priority == null ? null : priority.getPriority();
+            this.priority = p == null ? Integer.MAX_VALUE : p;
+            this.sequence = SEQUENCE.getAndIncrement();
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> o) {
+            int rep = Integer.compare(priority, o.priority);
+            if (rep != 0) {
+                return rep;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+}
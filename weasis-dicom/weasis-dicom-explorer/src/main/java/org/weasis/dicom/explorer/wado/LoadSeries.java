@@ -15,10 +15,8 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -27,20 +25,18 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 import javax.swing.JProgressBar;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.ElementDictionary;
 import org.dcm4che3.data.Tag;
-import org.dcm4che3.io.DicomInputStream;
-import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
-import org.dcm4che3.io.DicomOutputStream;
-import org.dcm4che3.util.SafeClose;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
@@ -59,7 +55,6 @@ import org.weasis.core.api.media.data.Thumbnail;
 import org.weasis.core.api.service.AuditLog;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.api.util.StringUtil;
-import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.docking.UIManager;
 import org.weasis.core.ui.editor.SeriesViewerFactory;
 import org.weasis.core.ui.editor.ViewerPluginBuilder;
@@ -69,7 +64,6 @@ import org.weasis.core.ui.editor.image.ViewerPlugin;
 import org.weasis.dicom.codec.DicomInstance;
 import org.weasis.dicom.codec.DicomMediaIO;
 import org.weasis.dicom.codec.TagD;
-import org.weasis.dicom.codec.TagD.Level;
 import org.weasis.dicom.codec.TransferSyntax;
 import org.weasis.dicom.codec.utils.DicomMediaUtils;
 import org.weasis.dicom.codec.wado.WadoParameters;
@@ -274,31 +268,6 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
         return buf.toString();
     }
 
-    private boolean isSOPInstanceUIDExist(MediaSeriesGroup study, Series<?> dicomSeries, String sopUID) {
-        TagW sopTag = TagD.getUID(Level.INSTANCE);
-        if (dicomSeries.hasMediaContains(sopTag, sopUID)) {
-            return true;
-        }
-        // Search in split Series, cannot use "has this series a SplitNumber" because splitting can be executed later
-        // for Dicom Video and other special Dicom
-        String uid = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-        if (study != null && uid != null) {
-            Collection<MediaSeriesGroup> seriesList = dicomModel.getChildren(study);
-            for (Iterator<MediaSeriesGroup> it = seriesList.iterator(); it.hasNext();) {
-                MediaSeriesGroup group = it.next();
-                if (dicomSeries != group && group instanceof Series) {
-                    Series s = (Series) group;
-                    if (uid.equals(TagD.getTagValue(group, Tag.SeriesInstanceUID))
-                        && s.hasMediaContains(sopTag, sopUID)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
     private void incrementProgressBarValue() {
         GuiExecutor.instance().execute(() -> progressBar.setValue(progressBar.getValue() + 1));
     }
@@ -315,9 +284,7 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
         if (wado == null) {
             return false;
         }
-        ExecutorService imageDownloader =
-            ThreadUtil.buildNewFixedThreadExecutor(concurrentDownloads, "Image Downloader");
-        ArrayList<Callable<Boolean>> tasks = new ArrayList<>(sopList.size());
+        ArrayList<Download> tasks = new ArrayList<>(sopList.size());
         int[] dindex = generateDownladOrder(sopList.size());
         GuiExecutor.instance().execute(() -> progressBar.setValue(0));
         for (int k = 0; k < sopList.size(); k++) {
@@ -326,7 +293,7 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
                 return true;
             }
             // Test if SOPInstanceUID already exists
-            if (isSOPInstanceUIDExist(study, dicomSeries, instance.getSopInstanceUID())) {
+            if (dicomModel.isSOPInstanceUIDExist(study, dicomSeries, instance.getSopInstanceUID())) {
                 incrementProgressBarValue();
                 LOGGER.debug("DICOM instance {} already exists, skip.", instance.getSopInstanceUID()); //$NON-NLS-1$
                 continue;
@@ -391,14 +358,49 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
             tasks.add(ref);
         }
 
+        dicomSeries.setTag(DOWNLOAD_START_TIME, System.currentTimeMillis());
+        downloadAll(tasks);
+        return true;
+    }
+
+    /**
+     * Downloads the images with the executor shared by all the series. The number of images of this series downloaded
+     * at the same time is limited by concurrentDownloads.
+     */
+    private void downloadAll(List<Download> tasks) {
+        ImageDownloader downloader = DownloadManager.IMAGE_DOWNLOADER;
+        final Semaphore slots = new Semaphore(Math.max(1, concurrentDownloads));
+        List<Future<Boolean>> futures = new ArrayList<>(tasks.size());
         try {
-            dicomSeries.setTag(DOWNLOAD_START_TIME, System.currentTimeMillis());
-            imageDownloader.invokeAll(tasks);
+            for (final Download task : tasks) {
+                slots.acquire();
+                if (isCancelled()) {
+                    break;
+                }
+                futures.add(downloader.submit(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        slots.release();
+                    }
+                }, getPriority()));
+            }
+            for (Future<Boolean> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Downloading DICOM instance", e.getCause()); //$NON-NLS-1$
+                }
+            }
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
         }
-
-        imageDownloader.shutdown();
-        return true;
+        LOGGER.debug("Image downloads: {} requests, {} in flight, {}/s", downloader.getRequestNumber(), //$NON-NLS-1$
+            downloader.getRequestsInFlight(), FileUtil.formatSize(downloader.getBytesPerSecond()));
     }
 
     public void startDownloadImageReference(final WadoParameters wadoParameters) {
@@ -661,6 +663,8 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
                 int responseCode = ((HttpURLConnection) httpCon).getResponseCode();
                 // Make sure response code is in the 200 range.
                 if (responseCode / 100 != 2) {
+                    // Allow to reuse the connection
+                    ImageDownloader.consumeErrorStream((HttpURLConnection) httpCon);
                     error();
                     LOGGER.error("Http Response error {} for {}", responseCode, url); //$NON-NLS-1$
                     return null;
@@ -697,15 +701,15 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
             if (dicomSeries != null) {
                 final WadoParameters wado = (WadoParameters) dicomSeries.getTagValue(TagW.WadoParameters);
                 int[] overrideList = wado.getOverrideDicomTagIDList();
+                // Parse the header while writing the file
+                DicomStreamWriter writer = new DicomStreamWriter();
                 if (cache) {
-                    int bytesTransferred = 0;
-                    if (overrideList == null && wado != null) {
-                        bytesTransferred = FileUtil.writeStream(new DicomSeriesProgressMonitor(dicomSeries, stream,
-                            url.toString().contains("?requestType=WADO")), new FileOutputStream(tempFile)); //$NON-NLS-1$
-                    } else if (wado != null) {
-                        bytesTransferred = writFile(new DicomSeriesProgressMonitor(dicomSeries, stream,
-                            url.toString().contains("?requestType=WADO")), tempFile, overrideList); //$NON-NLS-1$
-                    }
+                    // The parsed header refers to the final location of the file
+                    File renameFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, tempFile.getName());
+                    String fileUri = renameFile.toURI().toString();
+                    Consumer<Attributes> override = overrideList == null ? null : ds -> overrideTags(ds, overrideList);
+                    int bytesTransferred = writer.write(new DicomSeriesProgressMonitor(dicomSeries, stream,
+                        url.toString().contains("?requestType=WADO")), tempFile, fileUri, override); //$NON-NLS-1$
                     if (bytesTransferred == -1) {
                         LOGGER.info("End of downloading {} ", url); //$NON-NLS-1$
                     } else if (bytesTransferred >= 0) {
@@ -719,14 +723,8 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
                             return false;
                         }
                         stream = httpCon.getInputStream();
-                        if (overrideList == null && wado != null) {
-                            bytesTransferred =
-                                FileUtil.writeStream(new DicomSeriesProgressMonitor(dicomSeries, stream, false),
-                                    new FileOutputStream(tempFile));
-                        } else if (wado != null) {
-                            bytesTransferred = writFile(new DicomSeriesProgressMonitor(dicomSeries, stream, false),
-                                tempFile, overrideList);
-                        }
+                        bytesTransferred = writer.write(new DicomSeriesProgressMonitor(dicomSeries, stream, false),
+                            tempFile, fileUri, override);
                         if (bytesTransferred == -1) {
                             LOGGER.info("End of downloading {} ", url); //$NON-NLS-1$
                         } else if (bytesTransferred >= 0) {
@@ -735,9 +733,10 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
                             return false;
                         }
                     }
-                    File renameFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, tempFile.getName());
+                    DownloadManager.IMAGE_DOWNLOADER.addDownloadedBytes(tempFile.length());
                     if (tempFile.renameTo(renameFile)) {
                         tempFile = renameFile;
+                        dicomReader = writer.buildReader(tempFile);
                     }
                 } else {
                     tempFile = new File(url.toURI());
@@ -745,7 +744,9 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
                 // Ensure the stream is closed if image is not written in cache
                 FileUtil.safeClose(stream);
 
-                dicomReader = new DicomMediaIO(tempFile);
+                if (dicomReader == null) {
+                    dicomReader = new DicomMediaIO(tempFile);
+                }
                 if (dicomReader.isReadableDicom() && dicomSeries.size(null) == 0) {
                     // Override the group (patient, study and series) by the dicom fields except the UID of the group
                     MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
@@ -782,71 +783,24 @@ public class LoadSeries extends ExplorerTask implements SeriesImporter {
         }
 
         /**
-         * @param in
-         * @param tempFile
-         * @param overrideList
-         * @return bytes transferred. O = error, -1 = all bytes has been transferred, other = bytes transferred before
-         *         interruption
+         * Replaces the values of the patient and study attributes by the values of the model.
          */
-        public int writFile(InputStream in, File tempFile, int[] overrideList) {
-            if (in == null && tempFile == null) {
-                return 0;
-            }
-
-            DicomInputStream dis = null;
-            DicomOutputStream dos = null;
-
-            try {
-                String tsuid = null;
-                Attributes dataset;
-                dis = new DicomInputStream(in);
-                try {
-                    dis.setIncludeBulkData(IncludeBulkData.URI);
-                    dataset = dis.readDataset(-1, -1);
-                    tsuid = dis.getTransferSyntax();
-                } finally {
-                    dis.close();
+        private void overrideTags(Attributes dataset, int[] overrideList) {
+            MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
+            MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+            ElementDictionary dic = ElementDictionary.getStandardElementDictionary();
+
+            for (int tag : overrideList) {
+                TagW tagElement = patient.getTagElement(tag);
+                Object value = null;
+                if (tagElement == null) {
+                    tagElement = study.getTagElement(tag);
+                    value = study.getTagValue(tagElement);
+                } else {
+                    value = patient.getTagValue(tagElement);
                 }
 
-                dos = new DicomOutputStream(tempFile);
-
-                if (overrideList != null) {
-                    MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
-                    MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
-                    ElementDictionary dic = ElementDictionary.getStandardElementDictionary();
-
-                    for (int tag : overrideList) {
-                        TagW tagElement = patient.getTagElement(tag);
-                        Object value = null;
-                        if (tagElement == null) {
-                            tagElement = study.getTagElement(tag);
-                            value = study.getTagValue(tagElement);
-                        } else {
-                            value = patient.getTagValue(tagElement);
-                        }
-
-                        DicomMediaUtils.fillAttributes(dataset, tagElement, value, dic);
-                    }
-                }
-                dos.writeDataset(dataset.createFileMetaInformation(tsuid), dataset);
-                dos.finish();
-                dos.flush();
-                return -1;
-            } catch (InterruptedIOException e) {
-                return e.bytesTransferred;
-            } catch (Exception e) {
-                LOGGER.error("Error when writing DICOM temp file", e);
-                return 0;
-            } finally {
-                SafeClose.close(dos);
-                if (dis != null) {
-                    List<File> blkFiles = dis.getBulkDataFiles();
-                    if (blkFiles != null) {
-                        for (File file : blkFiles) {
-                            file.delete();
-                        }
-                    }
-                }
+                DicomMediaUtils.fillAttributes(dataset, tagElement, value, dic);
             }
         }
 
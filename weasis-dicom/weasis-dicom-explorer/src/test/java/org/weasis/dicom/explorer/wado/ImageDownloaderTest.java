@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ImageDownloaderTest {
+
+    private static final int IMAGE_SIZE = 64 * 1024;
+
+    private HttpServer server;
+    private ImageDownloader downloader;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0); //$NON-NLS-1$
+        server.createContext("/image", this::sendImage); //$NON-NLS-1$
+        server.createContext("/missing", exchange -> send(exchange, 404, new byte[1024])); //$NON-NLS-1$
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (downloader != null) {
+            downloader.shutdownNow();
+            downloader.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        server.stop(0);
+    }
+
+    private void sendImage(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight.decrementAndGet();
+        send(exchange, 200, new byte[IMAGE_SIZE]);
+    }
+
+    private void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private URL getUrl(String path) throws IOException {
+        return new URL("http", "localhost", server.getAddress().getPort(), path); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private long download(String path) throws IOException {
+        HttpURLConnection httpCon = (HttpURLConnection) getUrl(path).openConnection();
+        if (httpCon.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            ImageDownloader.consumeErrorStream(httpCon);
+            return -1L;
+        }
+        long length = 0L;
+        try (InputStream in = httpCon.getInputStream()) {
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                length += read;
+            }
+        }
+        downloader.addDownloadedBytes(length);
+        return length;
+    }
+
+    @Test
+    public void testConcurrentDownloads() throws Exception {
+        downloader = new ImageDownloader(3);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(downloader.submit(() -> download("/image"), null)); //$NON-NLS-1$
+        }
+        for (Future<Long> f : futures) {
+            assertThat(f.get(10, TimeUnit.SECONDS)).isEqualTo(IMAGE_SIZE);
+        }
+        downloader.shutdown();
+        assertThat(downloader.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(maxInFlight.get()).isBetween(1, 3);
+        assertThat(downloader.getRequestNumber()).isEqualTo(12);
+        assertThat(downloader.getRequestsInFlight()).isZero();
+        assertThat(downloader.getDownloadedBytes()).isEqualTo(12L * IMAGE_SIZE);
+        assertThat(downloader.getBytesPerSecond()).isPositive();
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        downloader = new ImageDownloader(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        downloader.submit(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }, null);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Long>> futures = new ArrayList<>();
+        int[] priorities = { 5, 1, 3, 1 };
+        for (int i = 0; i < priorities.length; i++) {
+            DownloadPriority priority = new DownloadPriority(null, null, null, false);
+            priority.setPriority(priorities[i]);
+            final int index = i;
+            futures.add(downloader.submit(() -> {
+                order.add(index);
+                return download("/image"); //$NON-NLS-1$
+            }, priority));
+        }
+        release.countDown();
+        for (Future<Long> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        // By priority, then in the order of submission
+        assertThat(order).containsExactly(1, 3, 2, 0);
+    }
+
+    @Test
+    public void testConnectionReusedAfterError() throws Exception {
+        downloader = new ImageDownloader(1);
+        assertThat(downloader.submit(() -> download("/missing"), null).get(10, TimeUnit.SECONDS)) //$NON-NLS-1$
+            .isEqualTo(-1L);
+        assertThat(downloader.submit(() -> download("/image"), null).get(10, TimeUnit.SECONDS)) //$NON-NLS-1$
+            .isEqualTo(IMAGE_SIZE);
+        // The error response has been read, so the second request uses the same connection (keep-alive)
+        assertThat(clientPorts).hasSize(2);
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+    }
+}
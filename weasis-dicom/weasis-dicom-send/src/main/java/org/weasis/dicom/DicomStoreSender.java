@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.DataWriter;
+import org.dcm4che3.net.DataWriterAdapter;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.DimseRSPHandler;
+import org.dcm4che3.net.InputStreamDataWriter;
+import org.dcm4che3.net.Priority;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.FileCache;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.MediaReader;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.explorer.pref.node.DefaultDicomNode;
+
+/**
+ * Sends DICOM instances with C-STORE requests. The data set of a file is streamed from the cache into the association
+ * without being parsed or copied, the objects built in memory are encoded while they are sent. Only the elements
+ * which cannot be read from a DICOM file (e.g. reconstructed images) are written into a temporary file.
+ *
+ * The requests are sent without waiting for the previous responses (when the asynchronous operations are accepted by
+ * the remote node) and the instances can be distributed over several associations sent in parallel.
+ */
+class DicomStoreSender {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DicomStoreSender.class);
+
+    /**
+     * Number of parallel associations for sending the instances to a node. The default value is 1.
+     */
+    static final String ASSOCIATIONS = "weasis.dicom.send.associations"; //$NON-NLS-1$
+
+    // Maximum number of requests sent without waiting for their responses
+    private static final int MAX_OPS_INVOKED = 8;
+
+    interface ProgressListener {
+        void progress(int completed, int failed, int remaining);
+    }
+
+    private final String callingAet;
+    private final DefaultDicomNode node;
+    private final List<Instance> instances = new ArrayList<>();
+    private final Set<String> iuids = new HashSet<>();
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String errorMessage;
+    private File tempDir;
+
+    DicomStoreSender(String callingAet, DefaultDicomNode node) {
+        this.callingAet = callingAet;
+        this.node = node;
+    }
+
+    /**
+     * Adds an instance to send. A multiframe instance is added only once.
+     *
+     * @return false when the instance cannot be read or has already been added
+     */
+    boolean add(MediaElement media, String iuid) {
+        if (media == null || iuid == null || !iuids.add(iuid)) {
+            return false;
+        }
+        try {
+            Instance inst = buildInstance(media);
+            if (inst != null) {
+                instances.add(inst);
+                return true;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot read the DICOM instance {}", iuid, e); //$NON-NLS-1$
+        }
+        failed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds a DICOM file to send.
+     *
+     * @return false when the file cannot be read or the instance has already been added
+     */
+    boolean add(File file) {
+        try {
+            Instance inst = readInstance(file);
+            if (inst.iuid == null || !iuids.add(inst.iuid)) {
+                return false;
+            }
+            instances.add(inst);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Cannot read the DICOM file {}", file, e); //$NON-NLS-1$
+        }
+        failed.incrementAndGet();
+        return false;
+    }
+
+    private Instance buildInstance(MediaElement media) throws IOException {
+        MediaReader reader = media.getMediaReader();
+        if (reader instanceof DicomMediaIO) {
+            DicomMediaIO dicomReader = (DicomMediaIO) reader;
+            FileCache cache = dicomReader.getFileCache();
+            if (dicomReader.isEditableDicom()) {
+                // Object built in memory (e.g. KO or PR)
+                Attributes dcm = dicomReader.getDicomObject();
+                return dcm == null ? null : new Instance(dcm);
+            }
+            File file = cache.isElementInMemory() ? null : cache.getFinalFile();
+            if (file != null && file.canRead()) {
+                return readInstance(file);
+            }
+        }
+
+        // Not a DICOM file (e.g. an image built from other images)
+        if (tempDir == null) {
+            File baseDir = AppProperties.buildAccessibleTempDirectory("tmp", "send"); //$NON-NLS-1$ //$NON-NLS-2$
+            tempDir = FileUtil.createTempDir(baseDir);
+        }
+        File file = new File(tempDir, String.valueOf(instances.size()));
+        if (!media.saveToFile(file)) {
+            return null;
+        }
+        return readInstance(file);
+    }
+
+    private static Instance readInstance(File file) throws IOException {
+        try (DicomInputStream dis = new DicomInputStream(file)) {
+            Attributes fmi = dis.readFileMetaInformation();
+            if (fmi == null) {
+                // No file meta information, the data set is read and encoded again
+                dis.setIncludeBulkData(IncludeBulkData.YES);
+                return new Instance(dis.readDataset(-1, -1));
+            }
+            return new Instance(fmi.getString(Tag.MediaStorageSOPClassUID),
+                fmi.getString(Tag.MediaStorageSOPInstanceUID), fmi.getString(Tag.TransferSyntaxUID), file,
+                dis.getPosition());
+        }
+    }
+
+    int getNumberOfInstances() {
+        return instances.size();
+    }
+
+    int getNumberOfFailures() {
+        return failed.get();
+    }
+
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Sends all the instances and blocks until the last response is received.
+     *
+     * @param nbAssociations
+     *            the maximum number of parallel associations
+     * @param listener
+     *            notified after each response, can be null
+     * @param cancel
+     *            stops sending the next instances when true
+     */
+    void send(int nbAssociations, ProgressListener listener, BooleanSupplier cancel) {
+        int total = instances.size() + failed.get();
+        int nb = Math.max(1, Math.min(nbAssociations, instances.size()));
+        List<List<Instance>> partitions = new ArrayList<>(nb);
+        for (int i = 0; i < nb; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < instances.size(); i++) {
+            partitions.get(i % nb).add(instances.get(i));
+        }
+
+        long start = System.nanoTime();
+        if (nb == 1) {
+            sendInstances(partitions.get(0), total, listener, cancel);
+        } else {
+            ExecutorService executor = ThreadUtil.buildNewFixedThreadExecutor(nb, "DICOM Send"); //$NON-NLS-1$
+            for (List<Instance> list : partitions) {
+                executor.execute(() -> sendInstances(list, total, listener, cancel));
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long time = System.nanoTime() - start;
+        double mb = bytes.get() / 1048576.0;
+        LOGGER.info("DICOM send to {}: {} instances sent, {} failed, {} MB in {} ms ({} MB/s)", //$NON-NLS-1$
+            node.getAeTitle(), completed.get(), failed.get(), String.format("%.1f", mb), //$NON-NLS-1$
+            TimeUnit.NANOSECONDS.toMillis(time),
+            String.format("%.1f", time <= 0 ? 0.0 : mb * TimeUnit.SECONDS.toNanos(1) / time)); //$NON-NLS-1$
+    }
+
+    private void sendInstances(List<Instance> list, int total, ProgressListener listener, BooleanSupplier cancel) {
+        if (list.isEmpty()) {
+            return;
+        }
+        Device device = new Device(callingAet);
+        ApplicationEntity ae = new ApplicationEntity(callingAet);
+        Connection conn = new Connection();
+        conn.setMaxOpsInvoked(MAX_OPS_INVOKED);
+        conn.setMaxOpsPerformed(1);
+
+        Connection remoteConn = new Connection();
+        remoteConn.setPort(node.getPort());
+        remoteConn.setHostname(node.getHostname());
+        remoteConn.setSocketCloseDelay(90);
+
+        device.addConnection(conn);
+        device.addApplicationEntity(ae);
+        ae.addConnection(conn);
+        ae.setAssociationInitiator(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCallingAET(callingAet);
+        rq.setCalledAET(node.getAeTitle());
+        for (Instance inst : list) {
+            addPresentationContexts(rq, inst);
+        }
+
+        int next = 0;
+        boolean cancelled = false;
+        try {
+            Association as = ae.connect(remoteConn, rq);
+            try {
+                for (; next < list.size(); next++) {
+                    if (cancel != null && cancel.getAsBoolean()) {
+                        cancelled = true;
+                        break;
+                    }
+                    send(as, list.get(next), total, listener);
+                }
+            } finally {
+                as.waitForOutstandingRSP();
+                as.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setError(cancelled ? 0 : list.size() - next, e);
+        } catch (Exception e) {
+            // The association cannot be used anymore: the instance in progress and the next ones are failed
+            setError(cancelled ? 0 : list.size() - next, e);
+        } finally {
+            executor.shutdown();
+            scheduledExecutor.shutdown();
+            notifyProgress(total, listener);
+        }
+    }
+
+    /**
+     * Sends one instance. An instance which cannot be read is counted as failed without interrupting the association,
+     * the exceptions thrown are errors of the association.
+     */
+    private void send(Association as, Instance inst, int total, ProgressListener listener)
+        throws IOException, InterruptedException {
+        String ts = selectTransferSyntax(as, inst);
+        if (ts == null) {
+            LOGGER.error("No presentation context accepted for {} ({})", inst.iuid, inst.cuid); //$NON-NLS-1$
+            setFailed("Transfer syntax not accepted by the destination", total, listener); //$NON-NLS-1$
+            return;
+        }
+
+        InputStream in = null;
+        DataWriter writer;
+        try {
+            if (inst.file != null && ts.equals(inst.tsuid)) {
+                // Stream the data set of the file without parsing it
+                in = new FileInputStream(inst.file);
+                skipFully(in, inst.fmiEndPos);
+                writer = new InputStreamDataWriter(in);
+            } else {
+                writer = buildDataWriter(inst);
+            }
+        } catch (IOException e) {
+            FileUtil.safeClose(in);
+            LOGGER.error("Cannot read the DICOM instance {}", inst.iuid, e); //$NON-NLS-1$
+            setFailed(e.getMessage(), total, listener);
+            return;
+        }
+
+        DimseRSPHandler rspHandler = new DimseRSPHandler(as.nextMessageID()) {
+            @Override
+            public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
+                super.onDimseRSP(as, cmd, data);
+                int status = cmd.getInt(Tag.Status, -1);
+                // Warnings (coercion of data elements...) are not errors
+                if (status == Status.Success || (status & 0xF000) == 0xB000) {
+                    completed.incrementAndGet();
+                    bytes.addAndGet(inst.length);
+                    notifyProgress(total, listener);
+                } else {
+                    String msg = cmd.getString(Tag.ErrorComment,
+                        String.format("C-STORE error status: %04XH", status)); //$NON-NLS-1$
+                    LOGGER.error("Cannot send {}: {}", inst.iuid, msg); //$NON-NLS-1$
+                    setFailed(msg, total, listener);
+                }
+            }
+        };
+
+        try {
+            as.cstore(inst.cuid, inst.iuid, Priority.NORMAL, writer, ts, rspHandler);
+        } finally {
+            FileUtil.safeClose(in);
+        }
+    }
+
+    private static DataWriter buildDataWriter(Instance inst) throws IOException {
+        if (inst.dataset != null) {
+            return new DataWriterAdapter(inst.dataset);
+        }
+        // The uncompressed data set is encoded with another transfer syntax
+        try (DicomInputStream dis = new DicomInputStream(inst.file)) {
+            dis.setIncludeBulkData(IncludeBulkData.YES);
+            dis.readFileMetaInformation();
+            return new DataWriterAdapter(dis.readDataset(-1, -1));
+        }
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of file"); //$NON-NLS-1$
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void addPresentationContexts(AAssociateRQ rq, Instance inst) {
+        if (inst.tsuid != null) {
+            addPresentationContext(rq, inst.cuid, inst.tsuid);
+        }
+        // The uncompressed data can be sent with the default transfer syntaxes
+        if (inst.tsuid == null || isUncompressed(inst.tsuid)) {
+            addPresentationContext(rq, inst.cuid, UID.ExplicitVRLittleEndian);
+            addPresentationContext(rq, inst.cuid, UID.ImplicitVRLittleEndian);
+        }
+    }
+
+    private static void addPresentationContext(AAssociateRQ rq, String cuid, String ts) {
+        // Maximum of 128 presentation contexts (odd IDs from 1 to 255)
+        if (!rq.containsPresentationContextFor(cuid, ts) && rq.getNumberOfPresentationContexts() < 128) {
+            rq.addPresentationContext(
+                new PresentationContext(2 * rq.getNumberOfPresentationContexts() + 1, cuid, ts));
+        }
+    }
+
+    private static String selectTransferSyntax(Association as, Instance inst) {
+        Set<String> tss = as.getTransferSyntaxesFor(inst.cuid);
+        if (inst.tsuid != null && tss.contains(inst.tsuid)) {
+            return inst.tsuid;
+        }
+        if (inst.tsuid == null || isUncompressed(inst.tsuid)) {
+            if (tss.contains(UID.ExplicitVRLittleEndian)) {
+                return UID.ExplicitVRLittleEndian;
+            }
+            if (tss.contains(UID.ImplicitVRLittleEndian)) {
+                return UID.ImplicitVRLittleEndian;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUncompressed(String tsuid) {
+        return UID.ImplicitVRLittleEndian.equals(tsuid) || UID.ExplicitVRLittleEndian.equals(tsuid)
+            || UID.ExplicitVRBigEndianRetired.equals(tsuid);
+    }
+
+    private void setError(int nbFailed, Exception e) {
+        LOGGER.error("DICOM send to {}", node.getAeTitle(), e); //$NON-NLS-1$
+        failed.addAndGet(nbFailed);
+        errorMessage = e.getMessage();
+    }
+
+    private void setFailed(String message, int total, ProgressListener listener) {
+        failed.incrementAndGet();
+        errorMessage = message;
+        notifyProgress(total, listener);
+    }
+
+    private void notifyProgress(int total, ProgressListener listener) {
+        if (listener != null) {
+            int c = completed.get();
+            int f = failed.get();
+            listener.progress(c, f, Math.max(0, total - c - f));
+        }
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    void dispose() {
+        if (tempDir != null) {
+            FileUtil.recursiveDelete(tempDir);
+            tempDir = null;
+        }
+    }
+
+    private static class Instance {
+        final String cuid;
+        final String iuid;
+        // Null when the data set is in memory
+        final String tsuid;
+        final File file;
+        final long fmiEndPos;
+        final long length;
+        final Attributes dataset;
+
+        Instance(Attributes dataset) {
+            this.cuid = dataset.getString(Tag.SOPClassUID);
+            this.iuid = dataset.getString(Tag.SOPInstanceUID);
+            this.tsuid = null;
+            this.file = null;
+            this.fmiEndPos = 0L;
+            this.length = 0L;
+            this.dataset = dataset;
+        }
+
+        Instance(String cuid, String iuid, String tsuid, File file, long fmiEndPos) {
+            this.cuid = cuid;
+            this.iuid = iuid;
+            this.tsuid = tsuid;
+            this.file = file;
+            this.fmiEndPos = fmiEndPos;
+            this.length = file.length() - fmiEndPos;
+            this.dataset = null;
+        }
+    }
+}
@@ -12,10 +12,7 @@ package org.weasis.dicom;
 
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.swing.ComboBoxModel;
 import javax.swing.JComboBox;
@@ -27,35 +24,25 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
 
 import org.dcm4che3.data.Tag;
-import org.dcm4che3.net.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.task.CircularProgressBar;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
-import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.media.data.MediaElement;
 import org.weasis.core.api.service.BundleTools;
-import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.api.util.StringUtil;
-import org.weasis.dicom.codec.DicomImageElement;
-import org.weasis.dicom.codec.DicomSpecialElement;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.explorer.CheckTreeModel;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ExplorerTask;
 import org.weasis.dicom.explorer.ExportDicom;
 import org.weasis.dicom.explorer.ExportTree;
-import org.weasis.dicom.explorer.LocalExport;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode.UsageType;
 import org.weasis.dicom.explorer.pref.node.DefaultDicomNode;
 import org.weasis.dicom.explorer.pref.node.DicomWebNode;
-import org.weasis.dicom.op.CStore;
-import org.weasis.dicom.param.DicomNode;
-import org.weasis.dicom.param.DicomProgress;
-import org.weasis.dicom.param.DicomState;
 
 public class SendDicomView extends AbstractItemDialogPage implements ExportDicom {
 
@@ -157,109 +144,54 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
     private boolean sendDicomFiles(final CheckTreeModel model, final ExplorerTask t) throws IOException {
         dicomModel
             .firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.LOADING_START, dicomModel, null, t));
-        File exportDir = FileUtil.createTempDir(AppProperties.buildAccessibleTempDirectory("tmp", "send"));
-        try {
-            writeDicom(t, exportDir, model);
-
-            if (t.isCancelled()) {
-                return false;
-            }
 
+        Object selectedItem = comboNode.getSelectedItem();
+        if (selectedItem instanceof DefaultDicomNode) {
+            final DefaultDicomNode node = (DefaultDicomNode) selectedItem;
             String weasisAet = BundleTools.SYSTEM_PREFERENCES.getProperty("weasis.aet", "WEASIS_AE"); //$NON-NLS-1$ //$NON-NLS-2$
-
-            List<String> files = new ArrayList<>();
-            files.add(exportDir.getAbsolutePath());
-
-            final CircularProgressBar progressBar = t.getBar();
-            DicomProgress dicomProgress = new DicomProgress();
-            dicomProgress.addProgressListener(p -> {
+            DicomStoreSender sender = new DicomStoreSender(weasisAet, node);
+            try {
+                addInstances(t, sender, model);
                 if (t.isCancelled()) {
-                    p.cancel();
+                    return false;
                 }
-                GuiExecutor.instance().execute(() -> {
-                    int c = p.getNumberOfCompletedSuboperations() + p.getNumberOfFailedSuboperations();
-                    int r = p.getNumberOfRemainingSuboperations();
-                    progressBar.setValue((c * 100) / (c + r));
-                });
-            });
-
-            Object selectedItem = comboNode.getSelectedItem();
-            if (selectedItem instanceof DefaultDicomNode) {
-                final DefaultDicomNode node = (DefaultDicomNode) comboNode.getSelectedItem();
-                final DicomState state =
-                    CStore.process(new DicomNode(weasisAet), node.getDicomNode(), files, dicomProgress);
-                if (state.getStatus() != Status.Success) {
-                    LOGGER.error("Dicom send error: {}", state.getMessage());
-                    GuiExecutor.instance().execute(() -> JOptionPane.showOptionDialog(exportTree, state.getMessage(),
-                        null, JOptionPane.DEFAULT_OPTION, JOptionPane.ERROR_MESSAGE, null, null, null));
+
+                final CircularProgressBar progressBar = t.getBar();
+                int nbAssociations = BundleTools.SYSTEM_PREFERENCES.getIntProperty(DicomStoreSender.ASSOCIATIONS, 1);
+                sender.send(nbAssociations, (c, f, r) -> GuiExecutor.instance().execute(() -> {
+                    int done = c + f;
+                    progressBar.setValue(done + r == 0 ? 100 : (done * 100) / (done + r));
+                }), t::isCancelled);
+
+                if (sender.getNumberOfFailures() > 0) {
+                    final String message = String.format("%d DICOM instance(s) not sent: %s", //$NON-NLS-1$
+                        sender.getNumberOfFailures(), sender.getErrorMessage());
+                    LOGGER.error("Dicom send error: {}", message); //$NON-NLS-1$
+                    GuiExecutor.instance().execute(() -> JOptionPane.showOptionDialog(exportTree, message, null,
+                        JOptionPane.DEFAULT_OPTION, JOptionPane.ERROR_MESSAGE, null, null, null));
                 }
-            } else if (selectedItem instanceof DicomWebNode) {
-                // TODO to implement
+            } finally {
+                sender.dispose();
             }
-        } finally {
-            FileUtil.recursiveDelete(exportDir);
+        } else if (selectedItem instanceof DicomWebNode) {
+            // TODO to implement
         }
 
         return true;
     }
 
-    private void writeDicom(ExplorerTask task, File writeDir, CheckTreeModel model) throws IOException {
+    private void addInstances(ExplorerTask task, DicomStoreSender sender, CheckTreeModel model) {
         synchronized (model) {
-            ArrayList<String> uids = new ArrayList<>();
             TreePath[] paths = model.getCheckingPaths();
             for (TreePath treePath : paths) {
                 if (task.isCancelled()) {
                     return;
                 }
                 DefaultMutableTreeNode node = (DefaultMutableTreeNode) treePath.getLastPathComponent();
-
-                if (node.getUserObject() instanceof DicomImageElement) {
-                    DicomImageElement img = (DicomImageElement) node.getUserObject();
-                    String iuid = TagD.getTagValue(img, Tag.SOPInstanceUID, String.class);
-                    int index = uids.indexOf(iuid);
-                    if (index == -1) {
-                        uids.add(iuid);
-                    } else {
-                        // Write only once the file for multiframe
-                        continue;
-                    }
-
-                    String path = LocalExport.buildPath(img, false, false, false, node);
-                    File destinationDir = new File(writeDir, path);
-                    destinationDir.mkdirs();
-
-                    File destinationFile = new File(destinationDir, iuid);
-                    if (img.saveToFile(destinationFile)) {
-                        // if (writeGraphics) {
-                        // // TODO remove me and use PR
-                        // DefaultSerializer.writeMeasurementGraphics(img, destinationFile);
-                        // }
-                    } else {
-                        LOGGER.error("Cannot export DICOM file: {}", img.getFile()); //$NON-NLS-1$
-                    }
-                } else if (node.getUserObject() instanceof DicomSpecialElement) {
-                    DicomSpecialElement dcm = (DicomSpecialElement) node.getUserObject();
-                    String iuid = TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class);
-                    String path = LocalExport.buildPath(dcm, false, false, false, node);
-                    File destinationDir = new File(writeDir, path);
-                    destinationDir.mkdirs();
-
-                    File destinationFile = new File(destinationDir, iuid);
-                    if (!dcm.saveToFile(destinationFile)) {
-                        // LOGGER.error("Cannot export DICOM file: {}", img.getFile()); //$NON-NLS-1$
-                    }
-                } else if (node.getUserObject() instanceof MediaElement) {
+                if (node.getUserObject() instanceof MediaElement) {
                     MediaElement dcm = (MediaElement) node.getUserObject();
-                    String iuid = TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class);
-
-                    String path = LocalExport.buildPath(dcm, false, false, false, node);
-                    File destinationDir = new File(writeDir, path);
-                    destinationDir.mkdirs();
-
-                    File destinationFile = new File(destinationDir, iuid);
-                    if (!dcm.saveToFile(destinationFile)) {
-                        // LOGGER.error("Cannot export DICOM file: {}", img.getFile()); //$NON-NLS-1$
-                    }
+                    // A multiframe is sent only once
+                    sender.add(dcm, TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class));
                 }
             }
         }
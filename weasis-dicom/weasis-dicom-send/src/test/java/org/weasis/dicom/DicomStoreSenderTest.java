@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.PDVInputStream;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.dicom.explorer.pref.node.AbstractDicomNode.UsageType;
+import org.weasis.dicom.explorer.pref.node.DefaultDicomNode;
+
+/**
+ * Sends the instances to a minimal storage SCP (like storescp) running on the local host.
+ */
+public class DicomStoreSenderTest {
+    private static final String SCP_AET = "STORESCP";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Set<String> received = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger progressCalls = new AtomicInteger();
+    private Device device;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private int port;
+
+    @Before
+    public void startScp() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        device = new Device("storescp");
+        ApplicationEntity ae = new ApplicationEntity(SCP_AET);
+        Connection conn = new Connection();
+        conn.setHostname("localhost");
+        conn.setPort(port);
+        device.addConnection(conn);
+        device.addApplicationEntity(ae);
+        ae.addConnection(conn);
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, "*", TransferCapability.Role.SCP, "*"));
+
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        serviceRegistry.addDicomService(new BasicCStoreSCP("*") {
+            @Override
+            protected void store(Association as, PresentationContext pc, Attributes rq, PDVInputStream data,
+                Attributes rsp) throws IOException {
+                Attributes dataset = data.readDataset(pc.getTransferSyntax());
+                received.add(dataset.getString(Tag.SOPInstanceUID));
+            }
+        });
+        device.setDimseRQHandler(serviceRegistry);
+
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        device.bindConnections();
+    }
+
+    @After
+    public void stopScp() {
+        device.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testSendFiles() throws Exception {
+        DicomStoreSender sender = buildSender();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(sender.add(writeInstance(i))).isTrue();
+        }
+        // An instance is added only once
+        assertThat(sender.add(writeInstance(1))).isFalse();
+
+        int[] last = new int[3];
+        sender.send(2, (completed, failed, remaining) -> {
+            progressCalls.incrementAndGet();
+            last[0] = completed;
+            last[1] = failed;
+            last[2] = remaining;
+        }, null);
+
+        assertThat(sender.getNumberOfFailures()).isZero();
+        assertThat(received).containsOnly("1.2.3.1", "1.2.3.2", "1.2.3.3", "1.2.3.4", "1.2.3.5");
+        assertThat(progressCalls.get()).isPositive();
+        assertThat(last).containsExactly(5, 0, 0);
+    }
+
+    @Test
+    public void testMissingFileDoesNotAbortTheAssociation() throws Exception {
+        DicomStoreSender sender = buildSender();
+        File missing = writeInstance(2);
+        assertThat(sender.add(writeInstance(1))).isTrue();
+        assertThat(sender.add(missing)).isTrue();
+        assertThat(sender.add(writeInstance(3))).isTrue();
+        assertThat(missing.delete()).isTrue();
+
+        int[] last = new int[3];
+        sender.send(1, (completed, failed, remaining) -> {
+            last[0] = completed;
+            last[1] = failed;
+            last[2] = remaining;
+        }, null);
+
+        assertThat(sender.getNumberOfFailures()).isEqualTo(1);
+        assertThat(sender.getErrorMessage()).isNotNull();
+        assertThat(received).containsOnly("1.2.3.1", "1.2.3.3");
+        assertThat(last).containsExactly(2, 1, 0);
+    }
+
+    @Test
+    public void testUnreachableNode() throws Exception {
+        device.unbindConnections();
+        DicomStoreSender sender = buildSender();
+        assertThat(sender.add(writeInstance(1))).isTrue();
+        assertThat(sender.add(writeInstance(2))).isTrue();
+
+        sender.send(1, null, null);
+
+        // All the instances of the association are failed
+        assertThat(sender.getNumberOfFailures()).isEqualTo(2);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        DicomStoreSender sender = buildSender();
+        assertThat(sender.add(writeInstance(1))).isTrue();
+        assertThat(sender.add(writeInstance(2))).isTrue();
+
+        sender.send(1, null, () -> true);
+
+        // The instances not sent are neither completed nor failed
+        assertThat(sender.getNumberOfFailures()).isZero();
+        assertThat(received).isEmpty();
+    }
+
+    private DicomStoreSender buildSender() {
+        return new DicomStoreSender("STORESCU",
+            new DefaultDicomNode("Test", SCP_AET, "localhost", port, UsageType.STORAGE));
+    }
+
+    private File writeInstance(int index) throws IOException {
+        Attributes dataset = new Attributes();
+        dataset.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+        dataset.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + index);
+        dataset.setString(Tag.PatientID, VR.LO, "ID" + index);
+        dataset.setString(Tag.PatientName, VR.PN, "Test^Send");
+        File file = new File(folder.getRoot(), index + ".dcm");
+        try (DicomOutputStream dos = new DicomOutputStream(file)) {
+            dos.writeDataset(dataset.createFileMetaInformation(UID.ExplicitVRLittleEndian), dataset);
+        }
+        return file;
+    }
+}
@@ -259,10 +259,15 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
                     if (series != null) {
                         // Model contains display value, value-1 is the index value of a sequence
                         int index = model.getValue() - 1;
-                        image = series.getMedia(index,
-                            (Filter<DicomImageElement>) view2d.getActionValue(ActionW.FILTERED_SERIES.cmd()),
-                            view2d.getCurrentSortComparator());
+                        Filter<DicomImageElement> filter =
+                            (Filter<DicomImageElement>) view2d.getActionValue(ActionW.FILTERED_SERIES.cmd());
+                        image = series.getMedia(index, filter, view2d.getCurrentSortComparator());
                         mediaEvent = new SynchCineEvent(view2d, image, index);
+                        if (series instanceof DicomSeries) {
+                            // Decode in background the next images in the scrolling direction
+                            DicomSeries.startPreloading((DicomSeries) series, filter,
+                                view2d.getCurrentSortComparator(), index, isCining() ? getSpeed() : 0);
+                        }
                         // Ensure to load image before calling the default preset (requires pixel min and max)
                         if (image != null && !image.isImageAvailable()) {
                             image.getImage();
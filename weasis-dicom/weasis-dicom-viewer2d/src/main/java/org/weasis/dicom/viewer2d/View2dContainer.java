@@ -258,10 +258,8 @@ public class View2dContainer extends ImageViewerPlugin<DicomImageElement> implem
         if (viewCanvas != null && viewCanvas.getSeries() instanceof DicomSeries) {
             DicomSeries series = (DicomSeries) viewCanvas.getSeries();
             DicomSeries.startPreloading(series,
-                series.copyOfMedias(
-                    (Filter<DicomImageElement>) viewCanvas.getActionValue(ActionW.FILTERED_SERIES.cmd()),
-                    viewCanvas.getCurrentSortComparator()),
-                viewCanvas.getFrameIndex());
+                (Filter<DicomImageElement>) viewCanvas.getActionValue(ActionW.FILTERED_SERIES.cmd()),
+                viewCanvas.getCurrentSortComparator(), viewCanvas.getFrameIndex(), 0);
         }
     }
 
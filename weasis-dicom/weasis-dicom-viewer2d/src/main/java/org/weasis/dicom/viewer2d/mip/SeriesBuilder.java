@@ -11,6 +11,7 @@
 package org.weasis.dicom.viewer2d.mip;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
@@ -22,7 +23,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
 import javax.media.jai.JAI;
@@ -34,6 +34,8 @@ import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.util.UIDUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.task.TaskInterruptionException;
 import org.weasis.core.api.gui.task.TaskMonitor;
 import org.weasis.core.api.gui.util.ActionState;
@@ -45,6 +47,7 @@ import org.weasis.core.api.gui.util.SliderCineListener;
 import org.weasis.core.api.image.op.MaxCollectionZprojection;
 import org.weasis.core.api.image.op.MeanCollectionZprojection;
 import org.weasis.core.api.image.op.MinCollectionZprojection;
+import org.weasis.core.api.image.op.SlabZprojection;
 import org.weasis.core.api.image.util.ImageToolkit;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaSeries;
@@ -62,6 +65,8 @@ import org.weasis.dicom.viewer2d.mip.MipView.Type;
 import org.weasis.dicom.viewer2d.mpr.RawImageIO;
 
 public class SeriesBuilder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesBuilder.class);
+
     public static final File MPR_CACHE_DIR =
         AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "mip"); //$NON-NLS-1$
 
@@ -72,14 +77,13 @@ public class SeriesBuilder {
         final MediaSeries<DicomImageElement> series, List<DicomImageElement> dicoms, Type mipType, Integer extend,
         boolean fullSeries) {
 
-        PlanarImage curImage = null;
         if (series != null) {
 
             SeriesComparator sort = (SeriesComparator) view.getActionValue(ActionW.SORTSTACK.cmd());
             Boolean reverse = (Boolean) view.getActionValue(ActionW.INVERSESTACK.cmd());
             Comparator sortFilter = (reverse != null && reverse) ? sort.getReversOrderComparator() : sort;
             Filter filter = (Filter) view.getActionValue(ActionW.FILTERED_SERIES.cmd());
-            Iterable<DicomImageElement> medias = series.copyOfMedias(filter, sortFilter);
+            final List<DicomImageElement> medias = series.copyOfMedias(filter, sortFilter);
 
             int curImg = extend - 1;
             ActionState sequence = view.getEventManager().getAction(ActionW.SCROLL_SERIES);
@@ -88,13 +92,13 @@ public class SeriesBuilder {
                 curImg = cineAction.getSliderValue() - 1;
             }
 
-            int minImg = fullSeries ? extend : curImg;
+            final int minImg = fullSeries ? extend : curImg;
             int maxImg = fullSeries ? series.size(filter) - extend : curImg;
             if (fullSeries) {
                 taskMonitor.setMaximum(maxImg - minImg);
             }
 
-            DicomImageElement img = series.getMedia(MediaSeries.MEDIA_POSITION.MIDDLE, filter, sortFilter);
+            final DicomImageElement img = series.getMedia(MediaSeries.MEDIA_POSITION.MIDDLE, filter, sortFilter);
             final Attributes attributes = ((DcmMediaReader) img.getMediaReader()).getDicomObject();
             final int[] COPIED_ATTRS = { Tag.SpecificCharacterSet, Tag.PatientID, Tag.PatientName, Tag.PatientBirthDate,
                 Tag.PatientBirthTime, Tag.PatientSex, Tag.IssuerOfPatientID, Tag.IssuerOfAccessionNumberSequence,
@@ -112,142 +116,154 @@ public class SeriesBuilder {
             final Attributes cpTags = new Attributes(attributes, COPIED_ATTRS);
             cpTags.setString(Tag.SeriesDescription, VR.LO, attributes.getString(Tag.SeriesDescription, "") + " [MIP]"); //$NON-NLS-1$ //$NON-NLS-2$
             cpTags.setString(Tag.ImageType, VR.CS, new String[] { "DERIVED", "SECONDARY", "PROJECTION IMAGE" }); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            String seriesUID = UIDUtils.createUID();
+            final String seriesUID = UIDUtils.createUID();
 
-            for (int index = minImg; index <= maxImg; index++) {
-                Iterator<DicomImageElement> iter = medias.iterator();
-                final List<ImageElement> sources = new ArrayList<>();
-                int startIndex = index - extend;
-                if (startIndex < 0) {
-                    startIndex = 0;
+            if (fullSeries) {
+                /*
+                 * Slide the window along the stack: each source image is read only once and each slab is computed
+                 * incrementally from the previous one.
+                 */
+                PlanarImage first = medias.isEmpty() ? null : medias.get(0).getImage(null, false);
+                if (first == null) {
+                    return;
                 }
-                int stopIndex = index + extend;
-                int k = 0;
-                while (iter.hasNext()) {
-                    DicomImageElement dcm = iter.next();
-                    if (k >= startIndex) {
-                        sources.add(dcm);
-                    }
-
-                    if (k >= stopIndex) {
-                        break;
+                final ColorModel colorModel = first.getColorModel();
+                SlabZprojection op = new SlabZprojection(getSlabMode(mipType), extend, taskMonitor);
+                taskMonitor.setShowProgression(true);
+                op.compute(medias, minImg, maxImg, (index, firstIndex, lastIndex, raster) -> {
+                    if (lastIndex > firstIndex) {
+                        BufferedImage mip = new BufferedImage(colorModel, raster, false, null);
+                        if (addMipImage(dicoms, mip, img, medias.get(firstIndex + (lastIndex - firstIndex + 1) / 2),
+                            medias.get(firstIndex), medias.get(lastIndex), cpTags, seriesUID, index)) {
+                            updateProgress(taskMonitor, index - minImg);
+                        }
                     }
-                    k++;
+                });
+            } else {
+                final List<ImageElement> sources = new ArrayList<>();
+                int startIndex = Math.max(0, curImg - extend);
+                int stopIndex = Math.min(medias.size() - 1, curImg + extend);
+                for (int k = startIndex; k <= stopIndex; k++) {
+                    sources.add(medias.get(k));
                 }
 
                 if (sources.size() > 1) {
-                    if (fullSeries) {
-                        taskMonitor.setShowProgression(false);
+                    PlanarImage curImage = addCollectionOperation(mipType, sources, taskMonitor);
+                    if (curImage != null) {
+                        addMipImage(dicoms, curImage.getAsBufferedImage(), img,
+                            (DicomImageElement) sources.get(sources.size() / 2), sources.get(0),
+                            sources.get(sources.size() - 1), cpTags, seriesUID, curImg);
                     }
-                    curImage = addCollectionOperation(mipType, sources, taskMonitor);
-                } else {
-                    curImage = null;
                 }
+            }
+        }
+    }
 
-                if (fullSeries) {
-                    taskMonitor.setShowProgression(true);
-                }
+    private static SlabZprojection.Mode getSlabMode(Type mipType) {
+        if (Type.MIN.equals(mipType)) {
+            return SlabZprojection.Mode.MIN;
+        }
+        if (Type.MEAN.equals(mipType)) {
+            return SlabZprojection.Mode.MEAN;
+        }
+        return SlabZprojection.Mode.MAX;
+    }
 
-                final DicomImageElement dicom;
-                if (curImage != null) {
-
-                    DicomImageElement imgRef = (DicomImageElement) sources.get(sources.size() / 2);
-                    RawImage raw = null;
-                    try {
-                        File mipDir =
-                            AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "mip"); //$NON-NLS-1$
-                        raw = new RawImage(File.createTempFile("mip_", ".raw", mipDir));//$NON-NLS-1$ //$NON-NLS-2$
-                        writeRasterInRaw(curImage.getAsBufferedImage(), raw.getOutputStream());
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    } finally {
-                        if (raw != null) {
-                            raw.disposeOutputStream();
-                        }
-                    }
-                    if (raw == null) {
-                        return;
-                    }
-                    RawImageIO rawIO = new RawImageIO(raw.getFile().toURI(), null);
-                    rawIO.setBaseAttributes(cpTags);
-
-                    // Tags with same values for all the Series
-                    rawIO.setTag(TagD.get(Tag.TransferSyntaxUID), UID.ImplicitVRLittleEndian);
-                    rawIO.setTag(TagD.get(Tag.Columns), curImage.getWidth());
-                    rawIO.setTag(TagD.get(Tag.Rows), curImage.getHeight());
-                    rawIO.setTag(TagD.get(Tag.BitsAllocated), imgRef.getBitsAllocated());
-                    rawIO.setTag(TagD.get(Tag.BitsStored), imgRef.getBitsStored());
-
-                    rawIO.setTag(TagD.get(Tag.SliceThickness),
-                        getThickness(sources.get(0), sources.get(sources.size() - 1)));
-                    double[] loc = (double[]) imgRef.getTagValue(TagW.SlicePosition);
-                    if (loc != null) {
-                        rawIO.setTag(TagW.SlicePosition, loc);
-                        rawIO.setTag(TagD.get(Tag.SliceLocation), loc[0] + loc[1] + loc[2]);
-                    }
+    private static boolean addMipImage(List<DicomImageElement> dicoms, BufferedImage mip, DicomImageElement img,
+        DicomImageElement imgRef, ImageElement firstDcm, ImageElement lastDcm, Attributes cpTags, String seriesUID,
+        int index) {
+        RawImage raw = null;
+        try {
+            File mipDir =
+                AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "mip"); //$NON-NLS-1$
+            raw = new RawImage(File.createTempFile("mip_", ".raw", mipDir));//$NON-NLS-1$ //$NON-NLS-2$
+            writeRasterInRaw(mip, raw.getOutputStream());
+        } catch (Exception e) {
+            LOGGER.error("Cannot write the MIP image", e); //$NON-NLS-1$
+        } finally {
+            if (raw != null) {
+                raw.disposeOutputStream();
+            }
+        }
+        if (raw == null) {
+            return false;
+        }
+        RawImageIO rawIO = new RawImageIO(raw.getFile().toURI(), null);
+        rawIO.setBaseAttributes(cpTags);
+
+        // Tags with same values for all the Series
+        rawIO.setTag(TagD.get(Tag.TransferSyntaxUID), UID.ImplicitVRLittleEndian);
+        rawIO.setTag(TagD.get(Tag.Columns), mip.getWidth());
+        rawIO.setTag(TagD.get(Tag.Rows), mip.getHeight());
+        rawIO.setTag(TagD.get(Tag.BitsAllocated), imgRef.getBitsAllocated());
+        rawIO.setTag(TagD.get(Tag.BitsStored), imgRef.getBitsStored());
+
+        rawIO.setTag(TagD.get(Tag.SliceThickness), getThickness(firstDcm, lastDcm));
+        double[] loc = (double[]) imgRef.getTagValue(TagW.SlicePosition);
+        if (loc != null) {
+            rawIO.setTag(TagW.SlicePosition, loc);
+            rawIO.setTag(TagD.get(Tag.SliceLocation), loc[0] + loc[1] + loc[2]);
+        }
 
-                    rawIO.setTag(TagD.get(Tag.SeriesInstanceUID), seriesUID);
-
-                    // Mandatory tags
-                    TagW[] mtagList =
-                        TagD.getTagFromIDs(Tag.PatientID, Tag.PatientName, Tag.PatientBirthDate, Tag.StudyInstanceUID,
-                            Tag.StudyID, Tag.SOPClassUID, Tag.StudyDate, Tag.StudyTime, Tag.AccessionNumber);
-                    rawIO.copyTags(mtagList, img, true);
-                    rawIO.setTag(TagW.PatientPseudoUID, img.getTagValue(TagW.PatientPseudoUID));
-
-                    TagW[] tagList = TagD.getTagFromIDs(Tag.PhotometricInterpretation, Tag.PixelRepresentation,
-                        Tag.Units, Tag.SamplesPerPixel, Tag.Modality);
-                    rawIO.copyTags(tagList, img, true);
-                    rawIO.setTag(TagW.MonoChrome, img.getTagValue(TagW.MonoChrome));
-
-                    TagW[] tagList2 = { TagW.ModalityLUTData, TagW.ModalityLUTType, TagW.ModalityLUTExplanation,
-                        TagW.VOILUTsData, TagW.VOILUTsExplanation };
-                    rawIO.copyTags(tagList2, img, false);
-
-                    tagList2 = TagD.getTagFromIDs(Tag.ImageOrientationPatient, Tag.ImagePositionPatient,
-                        Tag.RescaleSlope, Tag.RescaleIntercept, Tag.RescaleType, Tag.PixelPaddingValue,
-                        Tag.PixelPaddingRangeLimit, Tag.WindowWidth, Tag.WindowCenter, Tag.WindowCenterWidthExplanation,
-                        Tag.VOILUTFunction, Tag.PixelSpacing, Tag.ImagerPixelSpacing, Tag.NominalScannedPixelSpacing,
-                        Tag.PixelSpacingCalibrationDescription, Tag.PixelAspectRatio);
-                    rawIO.copyTags(tagList2, imgRef, false);
-
-                    // Image specific tags
-                    rawIO.setTag(TagD.get(Tag.SOPInstanceUID), UIDUtils.createUID());
-                    rawIO.setTag(TagD.get(Tag.InstanceNumber), index + 1);
-
-                    dicom = new DicomImageElement(rawIO, 0) {
-                        @Override
-                        public boolean saveToFile(File output) {
-                            RawImageIO reader = (RawImageIO) getMediaReader();
-                            return FileUtil.nioCopyFile(reader.getDicomFile(), output);
-                        }
-                    };
+        rawIO.setTag(TagD.get(Tag.SeriesInstanceUID), seriesUID);
+
+        // Mandatory tags
+        TagW[] mtagList = TagD.getTagFromIDs(Tag.PatientID, Tag.PatientName, Tag.PatientBirthDate,
+            Tag.StudyInstanceUID, Tag.StudyID, Tag.SOPClassUID, Tag.StudyDate, Tag.StudyTime, Tag.AccessionNumber);
+        rawIO.copyTags(mtagList, img, true);
+        rawIO.setTag(TagW.PatientPseudoUID, img.getTagValue(TagW.PatientPseudoUID));
+
+        TagW[] tagList = TagD.getTagFromIDs(Tag.PhotometricInterpretation, Tag.PixelRepresentation, Tag.Units,
+            Tag.SamplesPerPixel, Tag.Modality);
+        rawIO.copyTags(tagList, img, true);
+        rawIO.setTag(TagW.MonoChrome, img.getTagValue(TagW.MonoChrome));
+
+        TagW[] tagList2 = { TagW.ModalityLUTData, TagW.ModalityLUTType, TagW.ModalityLUTExplanation,
+            TagW.VOILUTsData, TagW.VOILUTsExplanation };
+        rawIO.copyTags(tagList2, img, false);
+
+        tagList2 = TagD.getTagFromIDs(Tag.ImageOrientationPatient, Tag.ImagePositionPatient, Tag.RescaleSlope,
+            Tag.RescaleIntercept, Tag.RescaleType, Tag.PixelPaddingValue, Tag.PixelPaddingRangeLimit,
+            Tag.WindowWidth, Tag.WindowCenter, Tag.WindowCenterWidthExplanation, Tag.VOILUTFunction,
+            Tag.PixelSpacing, Tag.ImagerPixelSpacing, Tag.NominalScannedPixelSpacing,
+            Tag.PixelSpacingCalibrationDescription, Tag.PixelAspectRatio);
+        rawIO.copyTags(tagList2, imgRef, false);
+
+        // Image specific tags
+        rawIO.setTag(TagD.get(Tag.SOPInstanceUID), UIDUtils.createUID());
+        rawIO.setTag(TagD.get(Tag.InstanceNumber), index + 1);
+
+        DicomImageElement dicom = new DicomImageElement(rawIO, 0) {
+            @Override
+            public boolean saveToFile(File output) {
+                RawImageIO reader = (RawImageIO) getMediaReader();
+                return FileUtil.nioCopyFile(reader.getDicomFile(), output);
+            }
+        };
 
-                    dicoms.add(dicom);
+        dicoms.add(dicom);
+        return true;
+    }
 
-                    if (taskMonitor != null && taskMonitor.isCanceled()) {
-                        throw new TaskInterruptionException("Rebuilding MIP series has been canceled!"); //$NON-NLS-1$
-                    }
-                    final int progress = index - minImg;
-                    GuiExecutor.instance().execute(new Runnable() {
-
-                        @Override
-                        public void run() {
-                            if (taskMonitor != null) {
-                                taskMonitor.setProgress(progress);
-                                StringBuilder buf = new StringBuilder(Messages.getString("SeriesBuilder.image")); //$NON-NLS-1$
-                                buf.append(StringUtil.COLON_AND_SPACE);
-                                buf.append(progress);
-                                buf.append("/"); //$NON-NLS-1$
-                                buf.append(taskMonitor.getMaximum());
-                                taskMonitor.setNote(buf.toString());
-                            }
-                        }
-                    });
+    private static void updateProgress(final TaskMonitor taskMonitor, final int progress) {
+        if (taskMonitor != null && taskMonitor.isCanceled()) {
+            throw new TaskInterruptionException("Rebuilding MIP series has been canceled!"); //$NON-NLS-1$
+        }
+        GuiExecutor.instance().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (taskMonitor != null) {
+                    taskMonitor.setProgress(progress);
+                    StringBuilder buf = new StringBuilder(Messages.getString("SeriesBuilder.image")); //$NON-NLS-1$
+                    buf.append(StringUtil.COLON_AND_SPACE);
+                    buf.append(progress);
+                    buf.append("/"); //$NON-NLS-1$
+                    buf.append(taskMonitor.getMaximum());
+                    taskMonitor.setNote(buf.toString());
                 }
-
             }
-        }
+        });
     }
 
     static double getThickness(ImageElement firstDcm, ImageElement lastDcm) {
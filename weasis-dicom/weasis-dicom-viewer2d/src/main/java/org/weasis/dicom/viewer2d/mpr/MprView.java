@@ -130,6 +130,17 @@ public class MprView extends View2d {
         }
     }
 
+    /**
+     * Reloads the displayed image, required when the pixel data of the image has been updated.
+     */
+    public void refreshImage() {
+        if (imageLayer.getSourceImage() != null) {
+            imageLayer.getDisplayOpManager().setFirstNode(imageLayer.getSourceRenderedImage());
+            imageLayer.updateDisplayOperations();
+        }
+        repaint();
+    }
+
     public void setProgressBar(JProgressBar bar) {
         this.progressBar = bar;
     }
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.viewer2d.mpr;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Voxel grid of a reconstructed series stored in a single memory-mapped file. The slices are contiguous (little
+ * endian) and the file is mapped by chunks of whole slices to handle volumes larger than 2 GB.
+ *
+ * The volume is filled row by row: each source image of the original stack provides one row of every slice. The
+ * rows can be written concurrently and the slices can be read while the volume is filled (the unfilled rows are
+ * zeros). The mapped memory is never exposed: the slices are copied, so the mapping can be released by
+ * {@link #dispose()} once the pending reads and writes are finished.
+ */
+public class MprVolume {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MprVolume.class);
+
+    private final File file;
+    private final int nbSlices;
+    private final int rowsBySlice;
+    private final int elementsByRow;
+    private final int elementSize;
+    private final int rowLength;
+    private final int sliceLength;
+    private final int slicesByChunk;
+
+    // The read lock is held while the mapping is accessed, the write lock for releasing it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MappedByteBuffer[] chunks;
+
+    /**
+     * Creates and maps the file of the volume.
+     *
+     * @param file
+     *            the file of the volume
+     * @param nbSlices
+     *            the number of slices of the volume
+     * @param rowsBySlice
+     *            the number of rows of each slice (the number of images of the original stack)
+     * @param elementsByRow
+     *            the number of data elements of a row (width x samples per pixel)
+     * @param dataType
+     *            the data type of the elements (see {@link DataBuffer})
+     * @throws IOException
+     */
+    public MprVolume(File file, int nbSlices, int rowsBySlice, int elementsByRow, int dataType) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null"); //$NON-NLS-1$
+        }
+        this.file = file;
+        this.nbSlices = nbSlices;
+        this.rowsBySlice = rowsBySlice;
+        this.elementsByRow = elementsByRow;
+        this.elementSize = DataBuffer.getDataTypeSize(dataType) / 8;
+        this.rowLength = elementsByRow * elementSize;
+        long length = (long) rowLength * rowsBySlice;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The slice of the volume is too large: " + length); //$NON-NLS-1$
+        }
+        this.sliceLength = (int) length;
+        this.slicesByChunk = Math.max(1, Integer.MAX_VALUE / Math.max(1, sliceLength));
+        this.chunks = map();
+    }
+
+    private MappedByteBuffer[] map() throws IOException {
+        int nbChunks = (nbSlices + slicesByChunk - 1) / slicesByChunk;
+        MappedByteBuffer[] buffers = new MappedByteBuffer[nbChunks];
+        // The mapping remains valid after closing the channel
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+                        FileChannel channel = raf.getChannel()) {
+            for (int i = 0; i < nbChunks; i++) {
+                int slices = Math.min(slicesByChunk, nbSlices - i * slicesByChunk);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slicesByChunk * sliceLength,
+                    (long) slices * sliceLength);
+            }
+        }
+        return buffers;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getNumberOfSlices() {
+        return nbSlices;
+    }
+
+    public int getElementsByRow() {
+        return elementsByRow;
+    }
+
+    /**
+     * Returns a view of the bytes of a slice (no copy), the position is set to the beginning of the slice. Must be
+     * called with the read lock.
+     */
+    private ByteBuffer getSlice(int index) {
+        MappedByteBuffer[] buffers = chunks;
+        if (buffers == null) {
+            throw new IllegalStateException("The volume has been disposed"); //$NON-NLS-1$
+        }
+        if (index < 0 || index >= nbSlices) {
+            throw new IndexOutOfBoundsException("Slice index: " + index); //$NON-NLS-1$
+        }
+        ByteBuffer buf = buffers[index / slicesByChunk].duplicate();
+        int start = (index % slicesByChunk) * sliceLength;
+        buf.limit(start + sliceLength);
+        buf.position(start);
+        return buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes each row of the data in a different slice: the row i of the data goes to the slice i.
+     *
+     * @param dataBuffer
+     *            the data of an image having the number of slices as height
+     * @param row
+     *            the index of the row in the slices
+     */
+    public void writeRows(DataBuffer dataBuffer, int row) throws IOException {
+        checkRows(dataBuffer, row);
+        byte[] bytes = getByteData(dataBuffer);
+        short[] shorts = getShortData(dataBuffer);
+        int[] ints = getIntData(dataBuffer);
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < nbSlices; i++) {
+                ByteBuffer slice = getSlice(i);
+                slice.position(row * rowLength);
+                int offset = i * elementsByRow;
+                if (bytes != null) {
+                    slice.put(bytes, offset, elementsByRow);
+                } else if (shorts != null) {
+                    slice.asShortBuffer().put(shorts, offset, elementsByRow);
+                } else {
+                    slice.asIntBuffer().put(ints, offset, elementsByRow);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #writeRows(DataBuffer, int)} but the slices are rotated by 90 degrees clockwise: the row of the
+     * data goes to the column <code>rowsBySlice - 1 - row</code> of the slice.
+     *
+     * @param samplesPerPixel
+     *            the number of data elements by pixel
+     */
+    public void writeRotatedRows(DataBuffer dataBuffer, int row, int samplesPerPixel) throws IOException {
+        checkRows(dataBuffer, row);
+        int width = elementsByRow / samplesPerPixel;
+        // Number of pixels of a row of the rotated slice
+        int rotatedWidth = rowsBySlice;
+        int column = rotatedWidth - 1 - row;
+        byte[] bytes = getByteData(dataBuffer);
+        short[] shorts = getShortData(dataBuffer);
+        int[] ints = getIntData(dataBuffer);
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < nbSlices; i++) {
+                ByteBuffer slice = getSlice(i);
+                int offset = i * elementsByRow;
+                // The pixels of the data row are in the same column of the slice: one bulk put by pixel
+                if (bytes != null) {
+                    for (int x = 0; x < width; x++) {
+                        slice.position((x * rotatedWidth + column) * samplesPerPixel);
+                        slice.put(bytes, offset + x * samplesPerPixel, samplesPerPixel);
+                    }
+                } else if (shorts != null) {
+                    ShortBuffer buf = slice.asShortBuffer();
+                    for (int x = 0; x < width; x++) {
+                        buf.position((x * rotatedWidth + column) * samplesPerPixel);
+                        buf.put(shorts, offset + x * samplesPerPixel, samplesPerPixel);
+                    }
+                } else {
+                    IntBuffer buf = slice.asIntBuffer();
+                    for (int x = 0; x < width; x++) {
+                        buf.position((x * rotatedWidth + column) * samplesPerPixel);
+                        buf.put(ints, offset + x * samplesPerPixel, samplesPerPixel);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static byte[] getByteData(DataBuffer dataBuffer) {
+        return dataBuffer instanceof DataBufferByte ? ((DataBufferByte) dataBuffer).getData() : null;
+    }
+
+    private static short[] getShortData(DataBuffer dataBuffer) {
+        if (dataBuffer instanceof DataBufferShort) {
+            return ((DataBufferShort) dataBuffer).getData();
+        }
+        return dataBuffer instanceof DataBufferUShort ? ((DataBufferUShort) dataBuffer).getData() : null;
+    }
+
+    private static int[] getIntData(DataBuffer dataBuffer) {
+        return dataBuffer instanceof DataBufferInt ? ((DataBufferInt) dataBuffer).getData() : null;
+    }
+
+    private void checkRows(DataBuffer dataBuffer, int row) throws IOException {
+        if (row < 0 || row >= rowsBySlice) {
+            throw new IndexOutOfBoundsException("Row index: " + row); //$NON-NLS-1$
+        }
+        if (dataBuffer == null || dataBuffer.getSize() != nbSlices * elementsByRow
+            || DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8 != elementSize) {
+            throw new IOException("The image does not match with the volume"); //$NON-NLS-1$
+        }
+        if (!(dataBuffer instanceof DataBufferByte || dataBuffer instanceof DataBufferShort
+            || dataBuffer instanceof DataBufferUShort || dataBuffer instanceof DataBufferInt)) {
+            throw new IOException("Unsupported data buffer: " + dataBuffer.getClass().getName()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads a slice into a new data buffer of the given type (a single bulk copy from the mapped file).
+     */
+    public DataBuffer readSlice(int index, int dataType) {
+        lock.readLock().lock();
+        try {
+            return readSlice(getSlice(index), dataType);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private DataBuffer readSlice(ByteBuffer slice, int dataType) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE: {
+                byte[] data = new byte[sliceLength];
+                slice.get(data);
+                return new DataBufferByte(data, data.length);
+            }
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT: {
+                short[] data = new short[sliceLength / 2];
+                slice.asShortBuffer().get(data);
+                return dataType == DataBuffer.TYPE_SHORT ? new DataBufferShort(data, data.length)
+                    : new DataBufferUShort(data, data.length);
+            }
+            case DataBuffer.TYPE_INT: {
+                int[] data = new int[sliceLength / 4];
+                slice.asIntBuffer().get(data);
+                return new DataBufferInt(data, data.length);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Replaces the content of a slice, the data buffer must have the same size as the slice.
+     */
+    public void writeSlice(int index, DataBuffer dataBuffer) {
+        lock.readLock().lock();
+        try {
+            ByteBuffer slice = getSlice(index);
+            if (dataBuffer instanceof DataBufferByte) {
+                slice.put(((DataBufferByte) dataBuffer).getData(), 0, sliceLength);
+            } else if (dataBuffer instanceof DataBufferShort) {
+                slice.asShortBuffer().put(((DataBufferShort) dataBuffer).getData(), 0, sliceLength / 2);
+            } else if (dataBuffer instanceof DataBufferUShort) {
+                slice.asShortBuffer().put(((DataBufferUShort) dataBuffer).getData(), 0, sliceLength / 2);
+            } else if (dataBuffer instanceof DataBufferInt) {
+                slice.asIntBuffer().put(((DataBufferInt) dataBuffer).getData(), 0, sliceLength / 4);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a copy of the bytes of the slice (little endian)
+     */
+    public byte[] getSliceBytes(int index) {
+        lock.readLock().lock();
+        try {
+            ByteBuffer slice = getSlice(index);
+            byte[] bytes = new byte[sliceLength];
+            slice.get(bytes);
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the mapping and deletes the file. It waits for the pending reads and writes, the next ones throw an
+     * IllegalStateException.
+     */
+    public void dispose() {
+        lock.writeLock().lock();
+        try {
+            if (chunks != null) {
+                for (MappedByteBuffer buffer : chunks) {
+                    unmap(buffer);
+                }
+                chunks = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!file.delete()) {
+            // The mapping could not be released (see unmap), the file is deleted after the garbage collection
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Releases the memory mapped by the buffer without waiting for the garbage collection, which is required for
+     * deleting the file on Windows. There is no public API for unmapping a buffer: the cleaner of the buffer is invoked
+     * by reflection (Java 8), otherwise the mapping is released when the buffer is garbage collected.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean"); //$NON-NLS-1$
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Cannot unmap the volume, released by the garbage collector", e); //$NON-NLS-1$
+        }
+    }
+}
@@ -14,16 +14,20 @@ import java.awt.Dimension;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
 import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -80,12 +84,52 @@ public class RawImageIO implements DcmMediaReader {
     private final Codec codec;
     private ImageInputStream imageStream;
     private Attributes attributes;
+    // Null when the slice is read from its own file, guarded by this
+    private MprVolume volume;
+    private final int sliceIndex;
 
     public RawImageIO(URI media, Codec codec) {
         this.uri = Objects.requireNonNull(media);
         this.fileCache = new FileCache(this);
         this.tags = new HashMap<>();
         this.codec = codec;
+        this.volume = null;
+        this.sliceIndex = 0;
+    }
+
+    /**
+     * Reader of a slice stored in a volume file
+     */
+    public RawImageIO(MprVolume volume, int sliceIndex, Codec codec) {
+        this.volume = Objects.requireNonNull(volume);
+        this.sliceIndex = sliceIndex;
+        this.uri = volume.getFile().toURI();
+        this.fileCache = new FileCache(this);
+        this.tags = new HashMap<>();
+        this.codec = codec;
+    }
+
+    public int getSliceIndex() {
+        return sliceIndex;
+    }
+
+    /**
+     * Copies the slice into its own raw file. Afterwards the slice is no longer read from the volume, which can be
+     * disposed.
+     */
+    public synchronized void copySliceToFile(File file) throws IOException {
+        if (volume != null) {
+            Files.write(file.toPath(), volume.getSliceBytes(sliceIndex));
+            fileCache.setTransformedFile(file);
+            volume = null;
+        }
+    }
+
+    /**
+     * @return the slice read from the volume or null when the slice has been copied into its own file
+     */
+    private synchronized DataBuffer readSliceFromVolume(int dataType) {
+        return volume == null ? null : volume.readSlice(sliceIndex, dataType);
     }
 
     public void setBaseAttributes(Attributes attributes) {
@@ -97,9 +141,15 @@ public class RawImageIO implements DcmMediaReader {
 
         DicomOutputStream out = null;
         try {
-            File file = new File(uri);
-            BulkData bdl = new BulkData(uri.toString(), 0, (int) file.length(), false);
-            dcm.setValue(Tag.PixelData, VR.OW, bdl);
+            synchronized (this) {
+                if (volume == null) {
+                    File file = fileCache.getFinalFile();
+                    BulkData bdl = new BulkData(file.toURI().toString(), 0, (int) file.length(), false);
+                    dcm.setValue(Tag.PixelData, VR.OW, bdl);
+                } else {
+                    dcm.setBytes(Tag.PixelData, VR.OW, volume.getSliceBytes(sliceIndex));
+                }
+            }
             File tmpFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, dcm.getString(Tag.SOPInstanceUID));
             out = new DicomOutputStream(tmpFile);
             out.writeDataset(dcm.createFileMetaInformation(UID.ImplicitVRLittleEndian), dcm);
@@ -138,11 +188,22 @@ public class RawImageIO implements DcmMediaReader {
             Integer rows = TagD.getTagValue(media, Tag.Rows, Integer.class);
             Integer columns = TagD.getTagValue(media, Tag.Columns, Integer.class);
             ImageParameters h = new ImageParameters(rows, columns, allocated, sample, false);
-            // RawImageReader doesn't need to be disposed
-            ImageReader reader = initRawImageReader(imageStream = ImageIO.createImageInputStream(media.getFile()), h, 1,
-                0, false, TagD.getTagValue(media, Tag.PixelRepresentation, Integer.class));
-
-            RenderedImage buffer = reader.readAsRenderedImage(0, null);
+            Integer pixelRepresentation = TagD.getTagValue(media, Tag.PixelRepresentation, Integer.class);
+
+            RenderedImage buffer;
+            // Read directly the slice from the mapped volume (no file to open)
+            ImageTypeSpecifier type = createImageTypeSpecifier(h, false, pixelRepresentation);
+            SampleModel sm = type.getSampleModel();
+            DataBuffer dataBuffer = readSliceFromVolume(sm.getDataType());
+            if (dataBuffer == null) {
+                // RawImageReader doesn't need to be disposed
+                ImageReader reader = initRawImageReader(imageStream = ImageIO.createImageInputStream(media.getFile()),
+                    h, 1, 0, false, pixelRepresentation);
+                buffer = reader.readAsRenderedImage(0, null);
+            } else {
+                WritableRaster raster = Raster.createWritableRaster(sm, dataBuffer, null);
+                buffer = new BufferedImage(type.getColorModel(), raster, false, null);
+            }
             PlanarImage img = null;
             if (buffer != null) {
                 if (ImageUtil.isBinary(buffer.getSampleModel())) {
@@ -14,36 +14,24 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.DataBufferInt;
-import java.awt.image.DataBufferShort;
-import java.awt.image.DataBufferUShort;
 import java.awt.image.RenderedImage;
-import java.awt.image.SampleModel;
-import java.awt.image.WritableRaster;
 import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.IIOException;
 import javax.media.jai.Interpolation;
 import javax.media.jai.JAI;
 import javax.media.jai.PlanarImage;
-import javax.media.jai.RasterFactory;
 import javax.media.jai.RenderedOp;
 import javax.media.jai.operator.TranslateDescriptor;
 import javax.media.jai.operator.TransposeDescriptor;
@@ -57,10 +45,7 @@ import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
-import org.dcm4che3.image.PhotometricInterpretation;
 import org.dcm4che3.util.UIDUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.explorer.model.TreeModel;
@@ -75,6 +60,7 @@ import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.TagW.TagType;
 import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.dicom.codec.DcmMediaReader;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.DicomSeries;
@@ -84,16 +70,18 @@ import org.weasis.dicom.codec.geometry.GeometryOfSlice;
 import org.weasis.dicom.codec.utils.DicomMediaUtils;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.viewer2d.Messages;
-import org.weasis.dicom.viewer2d.RawImage;
 import org.weasis.dicom.viewer2d.mpr.MprView.SliceOrientation;
 
 public class SeriesBuilder {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesBuilder.class);
-
     static TagW SeriesReferences = new TagW("series.builder.refs", TagType.STRING, 2, 2);
     public static final File MPR_CACHE_DIR =
         AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "mpr"); //$NON-NLS-1$
 
+    private static final ExecutorService BUILD_EXECUTOR = ThreadUtil.buildNewFixedThreadExecutor(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1), "MPR Builder"); //$NON-NLS-1$
+    // Minimum time (in milliseconds) between two refreshes of the views while building
+    private static final long REFRESH_DELAY = 300;
+
     private SeriesBuilder() {
     }
 
@@ -259,52 +247,57 @@ public class SeriesBuilder {
                                 SortSeriesStack.slicePosition);
                             final Attributes attributes = ((DcmMediaReader) img.getMediaReader()).getDicomObject();
 
-                            for (int i = 0; i < 2; i++) {
-                                if (needBuild[i]) {
-                                    final MprView mprView = recView[i];
-                                    final ViewParameter viewParams = recParams[i];
-
-                                    Iterable<DicomImageElement> medias = series.copyOfMedias(filter,
-                                        viewParams.reverseSeriesOrder
-                                            ? SortSeriesStack.slicePosition.getReversOrderComparator()
-                                            : SortSeriesStack.slicePosition);
-                                    double origPixSize = img.getPixelSize();
-
-                                    RawImage[] secSeries = new RawImage[i == 0 ? height : width];
-                                    /*
-                                     * Write the new image by tacking the lines (from first to last) of all the images
-                                     * of the original series stack
-                                     */
-                                    double sPixSize = writeBlock(secSeries, series, medias, viewParams, mprView, thread,
-                                        abort, seriesID);
-
-                                    if (thread.isInterrupted()) {
-                                        return;
-                                    }
-                                    /*
-                                     * Reconstruct dicom files, adapt position, orientation, pixel spacing, instance
-                                     * number and UIDs.
-                                     */
-                                    final DicomSeries dicomSeries =
-                                        buildDicomSeriesFromRaw(secSeries, new Dimension(i == 0 ? width : height, size),
-                                            img, viewParams, origPixSize, sPixSize, geometry, mprView, attributes);
-
-                                    if (dicomSeries != null && dicomSeries.size(null) > 0) {
-                                        ((DcmMediaReader) dicomSeries.getMedia(0, null, null).getMediaReader())
-                                            .writeMetaData(dicomSeries);
+                            List<DicomImageElement> medias = series.copyOfMedias(filter, SortSeriesStack.slicePosition);
+                            double sPixSize = getSliceSpacing(medias, view, abort);
+                            double origPixSize = img.getPixelSize();
+                            int samplesPerPixel = TagD.getTagValue(img, Tag.SamplesPerPixel, Integer.class);
+                            int dataType = getDataType(img, attributes, samplesPerPixel);
+
+                            final MprVolume[] volumes = new MprVolume[2];
+                            final DicomSeries[] dicomSeries = new DicomSeries[2];
+                            boolean completed = false;
+                            try {
+                                for (int i = 0; i < 2; i++) {
+                                    if (needBuild[i]) {
+                                        final MprView mprView = recView[i];
+                                        final ViewParameter viewParams = recParams[i];
+                                        int rowWidth = i == 0 ? width : height;
+
+                                        File volumeDir = new File(MPR_CACHE_DIR, viewParams.seriesUID);
+                                        volumeDir.mkdirs();
+                                        File volumeFile = new File(volumeDir, "volume"); //$NON-NLS-1$
+                                        volumes[i] = new MprVolume(volumeFile, i == 0 ? height : width, size,
+                                            rowWidth * samplesPerPixel, dataType);
+                                        /*
+                                         * Reconstruct dicom files, adapt position, orientation, pixel spacing, instance
+                                         * number and UIDs. The pixel data are read from the volume which is filled
+                                         * afterwards.
+                                         */
+                                        final DicomSeries newSeries = buildDicomSeriesFromRaw(volumes[i],
+                                            new Dimension(rowWidth, size), img, viewParams, origPixSize, sPixSize,
+                                            geometry, attributes);
+                                        if (newSeries.size(null) == 0) {
+                                            volumes[i].dispose();
+                                            volumes[i] = null;
+                                            continue;
+                                        }
+                                        dicomSeries[i] = newSeries;
+
+                                        ((DcmMediaReader) newSeries.getMedia(0, null, null).getMediaReader())
+                                            .writeMetaData(newSeries);
                                         if (study != null && treeModel != null) {
-                                            dicomSeries.setTag(TagW.ExplorerModel, model);
-                                            treeModel.addHierarchyNode(study, dicomSeries);
+                                            newSeries.setTag(TagW.ExplorerModel, model);
+                                            treeModel.addHierarchyNode(study, newSeries);
                                             if (treeModel instanceof DicomModel) {
                                                 DicomModel dicomModel = (DicomModel) treeModel;
                                                 dicomModel.firePropertyChange(new ObservableEvent(
-                                                    ObservableEvent.BasicAction.ADD, dicomModel, null, dicomSeries));
+                                                    ObservableEvent.BasicAction.ADD, dicomModel, null, newSeries));
                                             }
                                         }
 
+                                        // Display the series while it is filled
                                         GuiExecutor.instance().execute(() -> {
-                                            mprView.setProgressBar(null);
-                                            mprView.setSeries(dicomSeries);
+                                            mprView.setSeries(newSeries);
                                             // Copy the synch values from the main view
                                             for (String action : MPRContainer.DEFAULT_MPR.getSynchData().getActions()
                                                 .keySet()) {
@@ -316,6 +309,21 @@ public class SeriesBuilder {
                                         });
                                     }
                                 }
+
+                                /*
+                                 * Write the new images by tacking the lines (from first to last) of all the images of
+                                 * the original series stack
+                                 */
+                                writeBlocks(volumes, dicomSeries, medias, recParams, recView, thread,
+                                    samplesPerPixel);
+                                if (!thread.isInterrupted()) {
+                                    releaseVolumes(volumes, dicomSeries);
+                                    completed = true;
+                                }
+                            } finally {
+                                if (!completed) {
+                                    removeSeries(volumes, dicomSeries, recView, treeModel);
+                                }
                             }
                         }
                     }
@@ -324,48 +332,64 @@ public class SeriesBuilder {
         }
     }
 
-    private static DicomSeries buildDicomSeriesFromRaw(final RawImage[] newSeries, Dimension dim, DicomImageElement img,
-        ViewParameter params, double origPixSize, double sPixSize, GeometryOfSlice geometry, final MprView view,
-        final Attributes attributes) throws Exception {
-
+    private static int getDataType(DicomImageElement img, Attributes attributes, int samplesPerPixel) {
         int bitsAllocated = img.getBitsAllocated();
-        int bitsStored = img.getBitsStored();
-        double[] pixSpacing = new double[] { sPixSize, origPixSize };
-
-        int dataType = 0;
-        ColorModel cm = null;
-        SampleModel sampleModel = null;
-        final JProgressBar bar = view.getProgressBar();
+        int pixelRepresentation = DicomMediaUtils.getIntegerFromDicomElement(attributes, Tag.PixelRepresentation, 0);
+        int dataType = bitsAllocated <= 8 ? DataBuffer.TYPE_BYTE
+            : pixelRepresentation != 0 ? DataBuffer.TYPE_SHORT : DataBuffer.TYPE_USHORT;
+        if (bitsAllocated > 16 && samplesPerPixel == 1) {
+            dataType = DataBuffer.TYPE_INT;
+        }
+        return dataType;
+    }
 
-        if (params.rotateOutputImg) {
-            if (bar != null) {
-                GuiExecutor.instance().execute(() -> {
-                    bar.setMaximum(newSeries.length);
-                    bar.setValue(0);
-                    // Force to reset the progress bar (substance)
-                    bar.updateUI();
-                    view.repaint();
-                });
+    /**
+     * Copies each slice into its own file and disposes the volumes, so the mapping is not kept until the garbage
+     * collection.
+     */
+    private static void releaseVolumes(MprVolume[] volumes, DicomSeries[] dicomSeries) throws IOException {
+        for (int i = 0; i < volumes.length; i++) {
+            if (volumes[i] != null && dicomSeries[i] != null) {
+                File volumeDir = volumes[i].getFile().getParentFile();
+                for (DicomImageElement dcm : dicomSeries[i].copyOfMedias(null, null)) {
+                    RawImageIO rawIO = (RawImageIO) dcm.getMediaReader();
+                    rawIO.copySliceToFile(new File(volumeDir, "mpr_" + (rawIO.getSliceIndex() + 1))); //$NON-NLS-1$
+                }
+                volumes[i].dispose();
+                volumes[i] = null;
             }
+        }
+    }
 
-            pixSpacing = new double[] { origPixSize, sPixSize };
-
-            int samplesPerPixel = TagD.getTagValue(img, Tag.SamplesPerPixel, Integer.class);
-            boolean banded = samplesPerPixel > 1
-                && DicomMediaUtils.getIntegerFromDicomElement(attributes, Tag.PlanarConfiguration, 0) != 0;
-            int pixelRepresentation =
-                DicomMediaUtils.getIntegerFromDicomElement(attributes, Tag.PixelRepresentation, 0);
-            dataType = bitsAllocated <= 8 ? DataBuffer.TYPE_BYTE
-                : pixelRepresentation != 0 ? DataBuffer.TYPE_SHORT : DataBuffer.TYPE_USHORT;
-            if (bitsAllocated > 16 && samplesPerPixel == 1) {
-                dataType = DataBuffer.TYPE_INT;
+    private static void removeSeries(MprVolume[] volumes, DicomSeries[] dicomSeries, MprView[] views,
+        TreeModel treeModel) {
+        for (int i = 0; i < volumes.length; i++) {
+            if (dicomSeries[i] != null && treeModel instanceof DicomModel) {
+                ((DicomModel) treeModel).removeSeries(dicomSeries[i]);
+            }
+            if (volumes[i] != null) {
+                volumes[i].dispose();
             }
+            final MprView mprView = views[i];
+            GuiExecutor.instance().execute(() -> {
+                mprView.setProgressBar(null);
+                mprView.repaint();
+            });
+        }
+    }
 
-            String photometricInterpretation = TagD.getTagValue(img, Tag.PhotometricInterpretation, String.class);
-            PhotometricInterpretation pmi = PhotometricInterpretation.fromString(photometricInterpretation);
-            cm = pmi.createColorModel(bitsStored, dataType, attributes);
-            sampleModel = pmi.createSampleModel(dataType, dim.width, dim.height, samplesPerPixel, banded);
+    private static DicomSeries buildDicomSeriesFromRaw(final MprVolume volume, Dimension dim, DicomImageElement img,
+        ViewParameter params, double origPixSize, double sPixSize, GeometryOfSlice geometry,
+        final Attributes attributes) {
+        final int nbSlices = volume.getNumberOfSlices();
 
+        int bitsAllocated = img.getBitsAllocated();
+        int bitsStored = img.getBitsStored();
+        double[] pixSpacing = new double[] { sPixSize, origPixSize };
+
+        if (params.rotateOutputImg) {
+            // The slices are rotated when writing the volume
+            pixSpacing = new double[] { origPixSize, sPixSize };
             int tmp = dim.width;
             dim.width = dim.height;
             dim.height = tmp;
@@ -389,84 +413,11 @@ public class SeriesBuilder {
         cpTags.setString(Tag.ImageType, VR.CS, new String[] { "DERIVED", "SECONDARY", "MPR" }); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         cpTags.setString(Tag.FrameOfReferenceUID, VR.UI, params.frameOfReferenceUID);
 
-        int last = newSeries.length;
+        int last = nbSlices;
         List<DicomImageElement> dcms = new ArrayList<>();
 
-        for (int i = 0; i < newSeries.length; i++) {
-            File inFile = newSeries[i].getFile();
-            if (params.rotateOutputImg) {
-
-                ByteBuffer byteBuffer = getBytesFromFile(inFile);
-                DataBuffer dataBuffer = null;
-                if (dataType == DataBuffer.TYPE_BYTE) {
-                    dataBuffer = new DataBufferByte(byteBuffer.array(), byteBuffer.limit());
-                } else if (dataType <= DataBuffer.TYPE_SHORT) {
-                    ShortBuffer sBuffer = byteBuffer.asShortBuffer();
-                    short[] data;
-                    if (sBuffer.hasArray()) {
-                        data = sBuffer.array();
-                    } else {
-                        data = new short[byteBuffer.limit() / 2];
-                        for (int k = 0; k < data.length; k++) {
-                            if (byteBuffer.hasRemaining()) {
-                                data[k] = byteBuffer.getShort();
-                            }
-                        }
-                    }
-                    dataBuffer = dataType == DataBuffer.TYPE_SHORT ? new DataBufferShort(data, data.length)
-                        : new DataBufferUShort(data, data.length);
-                } else if (dataType == DataBuffer.TYPE_INT) {
-                    IntBuffer sBuffer = byteBuffer.asIntBuffer();
-                    int[] data;
-                    if (sBuffer.hasArray()) {
-                        data = sBuffer.array();
-                    } else {
-                        data = new int[byteBuffer.limit() / 4];
-                        for (int k = 0; k < data.length; k++) {
-                            if (byteBuffer.hasRemaining()) {
-                                data[k] = byteBuffer.getInt();
-                            }
-                        }
-                    }
-                    dataBuffer = new DataBufferInt(data, data.length);
-                }
-
-                WritableRaster raster = RasterFactory.createWritableRaster(sampleModel, dataBuffer, null);
-                BufferedImage bufImg = new BufferedImage(cm, raster, false, null);
-                bufImg = getImage(bufImg, TransposeDescriptor.ROTATE_90);
-
-                dataBuffer = bufImg.getRaster().getDataBuffer();
-                if (dataBuffer instanceof DataBufferByte) {
-                    byteBuffer = ByteBuffer.wrap(((DataBufferByte) dataBuffer).getData());
-                    writToFile(inFile, byteBuffer);
-                } else if (dataBuffer instanceof DataBufferShort || dataBuffer instanceof DataBufferUShort) {
-                    short[] data = dataBuffer instanceof DataBufferShort ? ((DataBufferShort) dataBuffer).getData()
-                        : ((DataBufferUShort) dataBuffer).getData();
-
-                    byteBuffer = ByteBuffer.allocate(data.length * 2);
-                    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-                    ShortBuffer shortBuffer = byteBuffer.asShortBuffer();
-                    shortBuffer.put(data);
-
-                    writToFile(inFile, byteBuffer);
-                } else if (dataBuffer instanceof DataBufferInt) {
-                    int[] data = ((DataBufferInt) dataBuffer).getData();
-
-                    byteBuffer = ByteBuffer.allocate(data.length * 4);
-                    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-                    IntBuffer intBuffer = byteBuffer.asIntBuffer();
-                    intBuffer.put(data);
-
-                    writToFile(inFile, byteBuffer);
-                }
-                if (bar != null) {
-                    GuiExecutor.instance().execute(() -> {
-                        bar.setValue(bar.getValue() + 1);
-                        view.repaint();
-                    });
-                }
-            }
-            RawImageIO rawIO = new RawImageIO(inFile.toURI(), null);
+        for (int i = 0; i < nbSlices; i++) {
+            RawImageIO rawIO = new RawImageIO(volume, i, null);
             rawIO.setBaseAttributes(cpTags);
 
             // Tags with same values for all the Series
@@ -528,130 +479,171 @@ public class SeriesBuilder {
             if (loc != null) {
                 rawIO.setTag(TagD.get(Tag.SliceLocation), loc[0] + loc[1] + loc[2]);
             }
-            DicomImageElement dcm = new DicomImageElement(rawIO, 0) {
-                @Override
-                public boolean saveToFile(File output) {
-                    RawImageIO reader = (RawImageIO) getMediaReader();
-                    return FileUtil.nioCopyFile(reader.getDicomFile(), output);
-                }
-            };
-            dcms.add(dcm);
+            dcms.add(new MprImageElement(rawIO));
         }
         return new DicomSeries(params.seriesUID, dcms, DicomModel.series.getTagView());
     }
 
-    private static double writeBlock(RawImage[] newSeries, MediaSeries<DicomImageElement> series,
-        Iterable<DicomImageElement> medias, ViewParameter params, final MprView view, Thread thread,
-        final boolean[] abort, String seriesID) throws IOException {
-
+    private static double getSliceSpacing(List<DicomImageElement> medias, MprView view, boolean[] abort) {
         // TODO should return the more frequent space!
-        final JProgressBar bar = view.getProgressBar();
-        try {
-            File dir = new File(MPR_CACHE_DIR, params.seriesUID);
-            dir.mkdirs();
-            for (int i = 0; i < newSeries.length; i++) {
-                newSeries[i] = new RawImage(new File(dir, "mpr_" + (i + 1)));//$NON-NLS-1$
-            }
-            double epsilon = 1e-3;
-            double lastPos = 0.0;
-            double lastSpace = 0.0;
-            int index = 0;
-            Iterator<DicomImageElement> iter = medias.iterator();
-            while (iter.hasNext()) {
-                if (thread.isInterrupted()) {
-                    return lastSpace;
-                }
-                DicomImageElement dcm = iter.next();
-                double[] sp = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                if (sp == null && !abort[1]) {
+        double epsilon = 1e-3;
+        double lastPos = 0.0;
+        double lastSpace = 0.0;
+        int index = 0;
+        for (DicomImageElement dcm : medias) {
+            double[] sp = (double[]) dcm.getTagValue(TagW.SlicePosition);
+            if (sp == null) {
+                if (!abort[1]) {
                     confirmMessage(view, Messages.getString("SeriesBuilder.space_missing"), abort); //$NON-NLS-1$
-                } else {
-                    double pos = sp[0] + sp[1] + sp[2];
-                    if (index > 0) {
-                        double space = Math.abs(pos - lastPos);
-                        if (!abort[1]
-                            && (MathUtil.isEqualToZero(space) || (index > 1 && lastSpace - space > epsilon))) {
-                            confirmMessage(view, Messages.getString("SeriesBuilder.space"), abort); //$NON-NLS-1$
-                        }
-                        lastSpace = space;
-                    }
-                    lastPos = pos;
-                    index++;
-                    if (bar != null) {
-                        GuiExecutor.instance().execute(() -> {
-                            bar.setValue(bar.getValue() + 1);
-                            view.repaint();
-                        });
+                }
+            } else {
+                double pos = sp[0] + sp[1] + sp[2];
+                if (index > 0) {
+                    double space = Math.abs(pos - lastPos);
+                    if (!abort[1] && (MathUtil.isEqualToZero(space) || (index > 1 && lastSpace - space > epsilon))) {
+                        confirmMessage(view, Messages.getString("SeriesBuilder.space"), abort); //$NON-NLS-1$
                     }
+                    lastSpace = space;
                 }
-                // TODO do not open more than 512 files (Limitation to open 1024 in the same time on Ubuntu)
-                PlanarImage image = dcm.getImage();
-                if (image == null) {
-                    abort[0] = true;
-                    throw new IIOException("Cannot read an image!"); //$NON-NLS-1$
+                lastPos = pos;
+                index++;
+            }
+        }
+        return lastSpace;
+    }
+
+    /**
+     * Decodes the images of the original stack in parallel and writes each image only once in all the volumes. The
+     * views are refreshed periodically to display the slices while they are filled.
+     */
+    private static void writeBlocks(final MprVolume[] volumes, final DicomSeries[] dicomSeries,
+        final List<DicomImageElement> medias, final ViewParameter[] params, final MprView[] views, Thread thread,
+        final int samplesPerPixel) throws Exception {
+        final int size = medias.size();
+        // Read by the tasks of the executor, set when a task fails
+        final AtomicBoolean abort = new AtomicBoolean(false);
+        final List<List<MprImageElement>> slices = new ArrayList<>(views.length);
+        for (DicomSeries series : dicomSeries) {
+            List<MprImageElement> list = new ArrayList<>();
+            if (series != null) {
+                for (DicomImageElement dcm : series.copyOfMedias(null, null)) {
+                    list.add((MprImageElement) dcm);
                 }
+            }
+            slices.add(list);
+        }
+        List<Future<?>> tasks = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            final int index = k;
+            tasks.add(BUILD_EXECUTOR.submit(() -> {
+                if (!abort.get()) {
+                    writeImage(medias.get(index), index, size, volumes, params, samplesPerPixel);
+                }
+                return null;
+            }));
+        }
 
-                if (MathUtil.isDifferent(dcm.getRescaleX(), dcm.getRescaleY())) {
-                    ParameterBlock pb = new ParameterBlock();
-                    pb.addSource(image);
-                    pb.add((float) dcm.getRescaleX()).add((float) dcm.getRescaleY()).add(0.0f).add(0.0f);
-                    pb.add(Interpolation.getInstance(Interpolation.INTERP_BILINEAR));
-                    image = JAI.create("scale", pb, ImageToolkit.NOCACHE_HINT); //$NON-NLS-1$
+        try {
+            long lastRefresh = System.currentTimeMillis();
+            for (int k = 0; k < size; k++) {
+                try {
+                    // The tasks are started in the order of the stack
+                    tasks.get(k).get();
+                } catch (InterruptedException e) {
+                    // Restore the interrupted status for the caller
+                    thread.interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    abort.set(true);
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+                long time = System.currentTimeMillis();
+                if (time - lastRefresh > REFRESH_DELAY || k == size - 1) {
+                    lastRefresh = time;
+                    refreshViews(slices, views, k + 1, k == size - 1);
                 }
-                writeRasterInRaw(getImage(image, params.transposeImage), newSeries);
             }
-            return lastSpace;
         } finally {
-            for (int i = 0; i < newSeries.length; i++) {
-                if (newSeries[i] != null) {
-                    newSeries[i].disposeOutputStream();
-                    if (abort[0]) {
-                        newSeries[i].getFile().delete();
+            for (Future<?> f : tasks) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    private static void writeImage(DicomImageElement dcm, int index, int size, MprVolume[] volumes,
+        ViewParameter[] params, int samplesPerPixel) throws IOException {
+        PlanarImage image = dcm.getImage();
+        if (image == null) {
+            throw new IIOException("Cannot read an image!"); //$NON-NLS-1$
+        }
+
+        if (MathUtil.isDifferent(dcm.getRescaleX(), dcm.getRescaleY())) {
+            ParameterBlock pb = new ParameterBlock();
+            pb.addSource(image);
+            pb.add((float) dcm.getRescaleX()).add((float) dcm.getRescaleY()).add(0.0f).add(0.0f);
+            pb.add(Interpolation.getInstance(Interpolation.INTERP_BILINEAR));
+            image = JAI.create("scale", pb, ImageToolkit.NOCACHE_HINT); //$NON-NLS-1$
+        }
+
+        for (int i = 0; i < volumes.length; i++) {
+            MprVolume volume = volumes[i];
+            if (volume != null) {
+                BufferedImage bufImg = getImage(image, params[i].transposeImage);
+                if (bufImg != null && bufImg.getHeight() == volume.getNumberOfSlices()) {
+                    // Each line of the image goes to a different slice of the volume
+                    int row = params[i].reverseSeriesOrder ? size - 1 - index : index;
+                    DataBuffer dataBuffer = bufImg.getRaster().getDataBuffer();
+                    if (params[i].rotateOutputImg) {
+                        volume.writeRotatedRows(dataBuffer, row, samplesPerPixel);
+                    } else {
+                        volume.writeRows(dataBuffer, row);
                     }
                 }
             }
         }
     }
 
-    private static void writeRasterInRaw(BufferedImage image, RawImage[] newSeries) throws IOException {
-        if (newSeries != null && image != null && image.getHeight() == newSeries.length) {
-
-            DataBuffer dataBuffer = image.getRaster().getDataBuffer();
-            int width = image.getWidth();
-            int height = newSeries.length;
-            byte[] bytesOut;
-            if (dataBuffer instanceof DataBufferByte) {
-                bytesOut = ((DataBufferByte) dataBuffer).getData();
-                for (int j = 0; j < height; j++) {
-                    newSeries[j].getOutputStream().write(bytesOut, j * width, width);
-                }
-            } else if (dataBuffer instanceof DataBufferShort || dataBuffer instanceof DataBufferUShort) {
-                short[] data = dataBuffer instanceof DataBufferShort ? ((DataBufferShort) dataBuffer).getData()
-                    : ((DataBufferUShort) dataBuffer).getData();
-                bytesOut = new byte[data.length * 2];
-                for (int i = 0; i < data.length; i++) {
-                    bytesOut[i * 2] = (byte) (data[i] & 0xFF);
-                    bytesOut[i * 2 + 1] = (byte) ((data[i] >>> 8) & 0xFF);
-                }
-                width *= 2;
-                for (int j = 0; j < height; j++) {
-                    newSeries[j].getOutputStream().write(bytesOut, j * width, width);
-                }
-            } else if (dataBuffer instanceof DataBufferInt) {
-                int[] data = ((DataBufferInt) dataBuffer).getData();
-                bytesOut = new byte[data.length * 4];
-                for (int i = 0; i < data.length; i++) {
-                    bytesOut[i * 4] = (byte) (data[i] & 0xFF);
-                    bytesOut[i * 4 + 1] = (byte) ((data[i] >>> 8) & 0xFF);
-                    bytesOut[i * 4 + 2] = (byte) ((data[i] >>> 16) & 0xFF);
-                    bytesOut[i * 4 + 3] = (byte) ((data[i] >>> 24) & 0xFF);
-                }
-                width *= 4;
-                for (int j = 0; j < height; j++) {
-                    newSeries[j].getOutputStream().write(bytesOut, j * width, width);
+    /**
+     * Each image of the original stack writes one row in all the slices, so only the slices already decoded (displayed
+     * or prefetched) are obsolete. They are selected in the current thread, the event dispatch thread only resets them
+     * and refreshes the views displaying one of them.
+     */
+    private static void refreshViews(final List<List<MprImageElement>> slices, final MprView[] views,
+        final int progress, final boolean done) {
+        final List<List<MprImageElement>> decoded = new ArrayList<>(slices.size());
+        for (List<MprImageElement> list : slices) {
+            List<MprImageElement> obsolete = new ArrayList<>();
+            for (MprImageElement dcm : list) {
+                if (dcm.isDecoded()) {
+                    obsolete.add(dcm);
                 }
             }
+            decoded.add(obsolete);
         }
+        GuiExecutor.instance().execute(() -> {
+            for (int i = 0; i < views.length; i++) {
+                if (!slices.get(i).isEmpty()) {
+                    // The decoded slices and their min and max values are obsolete
+                    for (MprImageElement dcm : decoded.get(i)) {
+                        dcm.reset();
+                    }
+                    JProgressBar bar = views[i].getProgressBar();
+                    if (bar != null) {
+                        bar.setValue(progress);
+                    }
+                    if (done) {
+                        views[i].setProgressBar(null);
+                    }
+                    if (done || !decoded.get(i).isEmpty()) {
+                        views[i].refreshImage();
+                    } else {
+                        // Only the progress bar has changed
+                        views[i].repaint();
+                    }
+                }
+            }
+        });
     }
 
     private static BufferedImage getImage(PlanarImage source, TransposeType rotate) {
@@ -661,13 +653,6 @@ public class SeriesBuilder {
         return getRotatedImage(source, rotate);
     }
 
-    private static BufferedImage getImage(BufferedImage source, TransposeType rotate) {
-        if (rotate == null) {
-            return source == null ? null : source;
-        }
-        return getRotatedImage(source, rotate);
-    }
-
     private static BufferedImage getRotatedImage(RenderedImage source, TransposeType rotate) {
         RenderedOp result;
         if (source instanceof BufferedImage) {
@@ -695,38 +680,6 @@ public class SeriesBuilder {
             + vSrc.z * Math.cos(angle) + (-axis.y * vSrc.x + axis.x * vSrc.y) * Math.sin(angle);
     }
 
-    public static ByteBuffer getBytesFromFile(File file) {
-        FileInputStream is = null;
-        try {
-            ByteBuffer byteBuffer = ByteBuffer.allocate((int) file.length());
-            byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-            is = new FileInputStream(file);
-            FileChannel in = is.getChannel();
-            in.read(byteBuffer);
-            byteBuffer.flip();
-            return byteBuffer;
-        } catch (Exception e) {
-            LOGGER.error("Get bytes", e);
-        } finally {
-            FileUtil.safeClose(is);
-        }
-        return null;
-    }
-
-    public static void writToFile(File file, ByteBuffer byteBuffer) {
-        FileOutputStream os = null;
-        try {
-            byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-            os = new FileOutputStream(file);
-            FileChannel out = os.getChannel();
-            out.write(byteBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Write bytes", e);
-        } finally {
-            FileUtil.safeClose(os);
-        }
-    }
-
     public static void confirmMessage(final Component view, final String message, final boolean[] abort) {
         GuiExecutor.instance().invokeAndWait(() -> {
             int usrChoice = JOptionPane.showConfirmDialog(view, message + Messages.getString("SeriesBuilder.add_warn"), //$NON-NLS-1$
@@ -743,6 +696,41 @@ public class SeriesBuilder {
         }
     }
 
+    /**
+     * Slice of a reconstructed series, the pixel data are read from the volume and can be updated while building.
+     * Once built, they are read from the file of the slice.
+     */
+    static class MprImageElement extends DicomImageElement {
+
+        MprImageElement(RawImageIO mediaIO) {
+            super(mediaIO, 0);
+        }
+
+        @Override
+        public boolean saveToFile(File output) {
+            RawImageIO reader = (RawImageIO) getMediaReader();
+            return FileUtil.nioCopyFile(reader.getDicomFile(), output);
+        }
+
+        /**
+         * @return true when the pixel data or the min and max values have been read from the volume
+         */
+        boolean isDecoded() {
+            return minPixelValue != null || isImageInCache();
+        }
+
+        /**
+         * Forces to read again the pixel data from the volume.
+         */
+        void reset() {
+            if (isImageInCache()) {
+                removeImageFromCache();
+            }
+            minPixelValue = null;
+            maxPixelValue = null;
+        }
+    }
+
     static class ViewParameter {
         final String seriesUID;
         final SliceOrientation sliceOrientation;
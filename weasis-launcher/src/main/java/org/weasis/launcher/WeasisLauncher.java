@@ -243,6 +243,12 @@ public class WeasisLauncher {
         // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6653241
         setJnlpSystemProperties();
 
+        // Keep an idle HTTP connection for each concurrent image download (the JVM default is 5 by host). The value is
+        // read only at the first connection, so it must be set before downloading anything.
+        if (System.getProperty("http.maxConnections") == null) { //$NON-NLS-1$
+            System.setProperty("http.maxConnections", "12"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
         for (int i = 0; i < argv.length; i++) {
             // @Deprecated : use properties with the prefix "jnlp.weasis" instead
             if (argv[i].startsWith("-VMP") && argv[i].length() > 4) { //$NON-NLS-1$